@@ -0,0 +1,361 @@
+package com.memorise.gallery;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * BinarySnapshotFormat class for the compact Photos.bin layout
+ * Columns are stored one after another so the file can be memory-mapped and
+ * read lazily: type and folder are dictionary-encoded, dateTime is stored as
+ * epoch milliseconds, isFavourite as a bitset and names in one shared UTF-8 heap.
+ *
+ * Layout (little endian):
+ * header (HEADER_SIZE bytes): magic, version, counts, section offsets, CRC32 of the body
+ * type dictionary, folder dictionary: [int length][UTF-8 bytes] per entry
+ * ids: int[count], type codes: int[count], folder codes: int[count]
+ * dateTimes: long[count] (epoch millis of the "yyyy-MM-dd HH:mm:ss" wall time read as UTC)
+ * favourites: long[(count + 63) / 64] bitset
+ * name offsets: int[count + 1] into the name heap, name heap: UTF-8 bytes
+ * raw dates: [int record][int length][UTF-8 bytes] for dateTime values that are
+ * not in the canonical format, so that converting back to text is lossless
+ */
+class BinarySnapshotFormat extends SingleFileSnapshotFormat {
+
+    static final int MAGIC = 0x4247504D; // "MPGB" read as little endian
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 128;
+
+    // Marks a dateTime that is only available from the raw dates section
+    static final long NO_EPOCH = Long.MIN_VALUE;
+
+    // Header field positions
+    private static final int POS_COUNT = 8;
+    private static final int POS_TYPE_DICT_COUNT = 12;
+    private static final int POS_FOLDER_DICT_COUNT = 16;
+    private static final int POS_RAW_DATE_COUNT = 20;
+    private static final int POS_TYPE_DICT = 24;
+    private static final int POS_FOLDER_DICT = 32;
+    private static final int POS_IDS = 40;
+    private static final int POS_TYPE_CODES = 48;
+    private static final int POS_FOLDER_CODES = 56;
+    private static final int POS_DATE_TIMES = 64;
+    private static final int POS_FAVOURITES = 72;
+    private static final int POS_NAME_OFFSETS = 80;
+    private static final int POS_NAME_HEAP = 88;
+    private static final int POS_RAW_DATES = 96;
+    private static final int POS_LENGTH = 104;
+    private static final int POS_CHECKSUM = 112;
+
+    @Override
+    public String fileName() {
+        return "Photos.bin";
+    }
+
+    @Override
+    public PhotoLoader.Result load(File file) throws IOException {
+        long start = System.nanoTime();
+        PhotoLoader.Result result = new PhotoLoader.Result();
+        try (Reader reader = open(file)) {
+            reader.verifyChecksum();
+            for (int i = 0; i < reader.size(); i++) {
+                result.photos.add(reader.get(i));
+            }
+        }
+        result.bytes = file.length();
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    @Override
+    void write(List<Photo> photos, OutputStream out) throws IOException {
+        int count = photos.size();
+
+        // Build the dictionaries and the name heap
+        Map<String, Integer> typeCodes = new LinkedHashMap<>();
+        Map<String, Integer> folderCodes = new LinkedHashMap<>();
+        ByteArrayOutputStream nameHeap = new ByteArrayOutputStream();
+        int[] nameOffsets = new int[count + 1];
+        long[] favourites = new long[(count + 63) / 64];
+        long[] epochs = new long[count];
+        Map<Integer, String> rawDates = new LinkedHashMap<>();
+
+        for (int i = 0; i < count; i++) {
+            Photo p = photos.get(i);
+            typeCodes.putIfAbsent(p.type, typeCodes.size());
+            folderCodes.putIfAbsent(p.folder, folderCodes.size());
+
+            byte[] name = p.name.getBytes(StandardCharsets.UTF_8);
+            nameHeap.write(name);
+            nameOffsets[i + 1] = nameOffsets[i] + name.length;
+
+            if (p.isFavourite) {
+                favourites[i >>> 6] |= 1L << i;
+            }
+
+            // Values that do not print back identically (other layouts, Feb 30) are kept raw so they round-trip
+            String canonical = DateTimes.formatCanonical(p.dateTimeMillis);
+            epochs[i] = canonical != null && canonical.equals(p.dateTime) ? p.dateTimeMillis : NO_EPOCH;
+            if (epochs[i] == NO_EPOCH) {
+                rawDates.put(i, p.dateTime);
+            }
+        }
+
+        // Lay out the body section by section and remember where each one starts
+        ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(bodyBytes);
+        long[] offsets = new long[10];
+
+        offsets[0] = HEADER_SIZE + body.size();
+        for (String type : typeCodes.keySet()) {
+            writeString(body, type);
+        }
+        offsets[1] = HEADER_SIZE + body.size();
+        for (String folder : folderCodes.keySet()) {
+            writeString(body, folder);
+        }
+        offsets[2] = HEADER_SIZE + body.size();
+        for (Photo p : photos) {
+            body.writeInt(Integer.reverseBytes(p.id));
+        }
+        offsets[3] = HEADER_SIZE + body.size();
+        for (Photo p : photos) {
+            body.writeInt(Integer.reverseBytes(typeCodes.get(p.type)));
+        }
+        offsets[4] = HEADER_SIZE + body.size();
+        for (Photo p : photos) {
+            body.writeInt(Integer.reverseBytes(folderCodes.get(p.folder)));
+        }
+        offsets[5] = HEADER_SIZE + body.size();
+        for (long epoch : epochs) {
+            body.writeLong(Long.reverseBytes(epoch));
+        }
+        offsets[6] = HEADER_SIZE + body.size();
+        for (long word : favourites) {
+            body.writeLong(Long.reverseBytes(word));
+        }
+        offsets[7] = HEADER_SIZE + body.size();
+        for (int offset : nameOffsets) {
+            body.writeInt(Integer.reverseBytes(offset));
+        }
+        offsets[8] = HEADER_SIZE + body.size();
+        nameHeap.writeTo(body);
+        offsets[9] = HEADER_SIZE + body.size();
+        for (Map.Entry<Integer, String> raw : rawDates.entrySet()) {
+            body.writeInt(Integer.reverseBytes(raw.getKey()));
+            writeString(body, raw.getValue());
+        }
+        body.flush();
+
+        byte[] bodyArray = bodyBytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bodyArray);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putInt(POS_COUNT, count);
+        header.putInt(POS_TYPE_DICT_COUNT, typeCodes.size());
+        header.putInt(POS_FOLDER_DICT_COUNT, folderCodes.size());
+        header.putInt(POS_RAW_DATE_COUNT, rawDates.size());
+        for (int i = 0; i < offsets.length; i++) {
+            header.putLong(POS_TYPE_DICT + i * 8, offsets[i]);
+        }
+        header.putLong(POS_LENGTH, HEADER_SIZE + (long) bodyArray.length);
+        header.putLong(POS_CHECKSUM, crc.getValue());
+
+        out.write(header.array());
+        out.write(bodyArray);
+        out.flush();
+    }
+
+    @Override
+    public LazySnapshot openLazy(File file) throws IOException {
+        return LazySnapshot.openBinary(file);
+    }
+
+    /**
+     * Memory-map a binary snapshot for lazy, random access
+     * Only the header and the two small dictionaries are decoded up front
+     *
+     * @param file Binary snapshot file
+     * @return Reader over the mapped file
+     * @throws IOException If the file cannot be mapped or has an invalid header
+     */
+    static Reader open(File file) throws IOException {
+        return new Reader(file);
+    }
+
+    /**
+     * Write a length-prefixed UTF-8 string
+     *
+     * @param out   Destination
+     * @param value String to write
+     * @throws IOException If writing fails
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(Integer.reverseBytes(bytes.length));
+        out.write(bytes);
+    }
+
+    /**
+     * Reader class giving lazy, random access to a memory-mapped binary snapshot
+     */
+    static class Reader implements Closeable {
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int count;
+        private final String[] types;
+        private final String[] folders;
+        private final Map<Integer, String> rawDates = new HashMap<>();
+
+        private Reader(File file) throws IOException {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                    throw new IOException(file.getName() + " is not a valid binary snapshot (size " + size + ")");
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+                if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                    throw new IOException(file.getName() + " has an unknown header");
+                }
+                if (buffer.getLong(POS_LENGTH) != size) {
+                    throw new IOException(file.getName() + " is truncated");
+                }
+
+                count = buffer.getInt(POS_COUNT);
+                types = readStrings((int) buffer.getLong(POS_TYPE_DICT), buffer.getInt(POS_TYPE_DICT_COUNT));
+                folders = readStrings((int) buffer.getLong(POS_FOLDER_DICT), buffer.getInt(POS_FOLDER_DICT_COUNT));
+
+                int pos = (int) buffer.getLong(POS_RAW_DATES);
+                for (int i = 0; i < buffer.getInt(POS_RAW_DATE_COUNT); i++) {
+                    int record = buffer.getInt(pos);
+                    int len = buffer.getInt(pos + 4);
+                    rawDates.put(record, string(pos + 8, len));
+                    pos += 8 + len;
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Check the body against the CRC32 stored in the header
+         *
+         * @throws IOException If the checksum does not match
+         */
+        void verifyChecksum() throws IOException {
+            CRC32 crc = new CRC32();
+            ByteBuffer body = buffer.duplicate();
+            body.position(HEADER_SIZE);
+            crc.update(body);
+            if (crc.getValue() != buffer.getLong(POS_CHECKSUM)) {
+                throw new IOException("Checksum mismatch in binary snapshot");
+            }
+        }
+
+        /**
+         * Get the number of photo records
+         *
+         * @return Record count
+         */
+        int size() {
+            return count;
+        }
+
+        /**
+         * Get the id of a record without decoding the rest
+         *
+         * @param index Record index
+         * @return Photo id
+         */
+        int id(int index) {
+            return buffer.getInt(column(POS_IDS, index, 4));
+        }
+
+        /**
+         * Decode one record into a Photo
+         *
+         * @param index Record index
+         * @return Decoded photo
+         */
+        Photo get(int index) {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException("Record " + index + " of " + count);
+            }
+
+            int nameStart = buffer.getInt(column(POS_NAME_OFFSETS, index, 4));
+            int nameEnd = buffer.getInt(column(POS_NAME_OFFSETS, index + 1, 4));
+            String name = string((int) buffer.getLong(POS_NAME_HEAP) + nameStart, nameEnd - nameStart);
+
+            String type = types[buffer.getInt(column(POS_TYPE_CODES, index, 4))];
+            String folder = folders[buffer.getInt(column(POS_FOLDER_CODES, index, 4))];
+
+            long epoch = buffer.getLong(column(POS_DATE_TIMES, index, 8));
+            String dateTime = epoch == NO_EPOCH ? rawDates.get(index) : DateTimes.formatCanonical(epoch);
+
+            long word = buffer.getLong(column(POS_FAVOURITES, index >>> 6, 8));
+            boolean isFavourite = (word & (1L << index)) != 0;
+
+            return new Photo(id(index), name, type, folder, dateTime, isFavourite);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        /**
+         * Get the byte position of an element inside a column
+         *
+         * @param headerPos Header position holding the column offset
+         * @param index     Element index
+         * @param width     Element width in bytes
+         * @return Byte position in the file
+         */
+        private int column(int headerPos, int index, int width) {
+            return (int) buffer.getLong(headerPos) + index * width;
+        }
+
+        /**
+         * Read a dictionary of length-prefixed strings
+         *
+         * @param pos   Start of the dictionary
+         * @param count Number of entries
+         * @return Entries in code order
+         */
+        private String[] readStrings(int pos, int count) {
+            String[] values = new String[count];
+            for (int i = 0; i < count; i++) {
+                int len = buffer.getInt(pos);
+                values[i] = string(pos + 4, len);
+                pos += 4 + len;
+            }
+            return values;
+        }
+
+        /**
+         * Decode UTF-8 bytes from the mapped file
+         *
+         * @param pos Start position
+         * @param len Number of bytes
+         * @return Decoded string
+         */
+        private String string(int pos, int len) {
+            byte[] bytes = new byte[len];
+            buffer.get(pos, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
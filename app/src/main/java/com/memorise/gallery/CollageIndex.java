@@ -0,0 +1,224 @@
+package com.memorise.gallery;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * CollageIndex class keeping all collages in memory with id-based membership
+ * Each collage stores the ids of its photos, and a reverse map from photo id to
+ * collages lets a deleted photo be dropped from exactly the collages holding it.
+ * Names are resolved through the store when shown, so renames need no update.
+ *
+ * collage.txt lines: "Collage: title → 3:sky, 7:vacation" (id:name per member;
+ * the name is informational). Older lines without ids are resolved by name on
+ * load. Photo ids are never reused, so members whose photo no longer exists are
+ * simply dropped on load and deletes never rewrite the file. A later line with
+ * the same title replaces an earlier one.
+ */
+class CollageIndex implements PhotoStore.Listener {
+    private static final String PREFIX = "Collage: ";
+    private static final String ARROW = " → ";
+
+    /**
+     * Collage class holding a title and its member photo ids in order
+     */
+    static class Collage {
+        final String title;
+        final Set<Integer> photoIds = new LinkedHashSet<>();
+
+        /**
+         * Create an empty collage
+         *
+         * @param title Collage title
+         */
+        Collage(String title) {
+            this.title = title;
+        }
+    }
+
+    private final File file;
+    private final PhotoStore store;
+    private final Map<String, Collage> byTitle = new LinkedHashMap<>();
+    private final Map<Integer, Set<Collage>> byPhotoId = new HashMap<>();
+
+    /**
+     * Create the index and subscribe to store changes
+     *
+     * @param fileName Name of the collage file
+     * @param store    Store holding the photos
+     */
+    CollageIndex(String fileName, PhotoStore store) {
+        this.file = new File(fileName);
+        this.store = store;
+        store.addListener(this);
+    }
+
+    /**
+     * Read all collages from file
+     * Must run after the photos were loaded so that members can be resolved
+     */
+    void load() {
+        load(store::findById, store::findByName);
+    }
+
+    /**
+     * Read all collages from file, resolving members through the given lookups
+     * Used while the photos are not in the store yet
+     *
+     * @param byId   Lookup by photo id
+     * @param byName Lookup by photo name, for older lines without ids
+     */
+    void load(IntFunction<Photo> byId, Function<String, Photo> byName) {
+        byTitle.clear();
+        byPhotoId.clear();
+        if (!file.exists()) {
+            return;
+        }
+
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                int arrow = line.indexOf(ARROW);
+                if (!line.startsWith(PREFIX) || arrow < 0) {
+                    continue;
+                }
+                Collage collage = new Collage(line.substring(PREFIX.length(), arrow).trim());
+                for (String member : line.substring(arrow + ARROW.length()).split(",")) {
+                    Photo p = resolve(member.trim(), byId, byName);
+                    if (p != null) {
+                        collage.photoIds.add(p.id);
+                    }
+                }
+                put(collage);
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading " + file.getName() + ": " + e.getMessage());
+        }
+        MetricsRegistry.global().read(file.getName(), file.length());
+    }
+
+    /**
+     * Create or replace a collage and append it to the file
+     *
+     * @param title  Collage title
+     * @param photos Member photos in order
+     * @return true if the collage was saved, false otherwise
+     */
+    boolean create(String title, List<Photo> photos) {
+        Collage collage = new Collage(title);
+        StringJoiner members = new StringJoiner(", ");
+        for (Photo p : photos) {
+            if (collage.photoIds.add(p.id)) {
+                members.add(p.id + ":" + p.name);
+            }
+        }
+
+        String line = PREFIX + title + ARROW + members;
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file, true), StandardCharsets.UTF_8))) {
+            writer.write(line);
+            writer.newLine();
+        } catch (IOException e) {
+            System.out.println("Error saving collage: " + e.getMessage());
+            return false;
+        }
+        MetricsRegistry.global().written(file.getName(), line.getBytes(StandardCharsets.UTF_8).length + System.lineSeparator().length());
+
+        put(collage);
+        return true;
+    }
+
+    /**
+     * Get the titles of all collages containing a photo
+     *
+     * @param p Photo to look up
+     * @return Collage titles, empty if the photo is in no collage
+     */
+    List<String> collagesOf(Photo p) {
+        Set<Collage> collages = byPhotoId.get(p.id);
+        if (collages == null) {
+            return Collections.emptyList();
+        }
+        List<String> titles = new ArrayList<>();
+        for (Collage c : collages) {
+            titles.add(c.title);
+        }
+        return titles;
+    }
+
+    @Override
+    public void photoAdded(Photo p) {
+        // New photos belong to no collage
+    }
+
+    @Override
+    public void photoRemoved(Photo p) {
+        Set<Collage> collages = byPhotoId.remove(p.id);
+        if (collages != null) {
+            for (Collage c : collages) {
+                c.photoIds.remove(p.id);
+            }
+        }
+    }
+
+    @Override
+    public void beforeUpdate(Photo p) {
+        // Membership is by id, which never changes
+    }
+
+    @Override
+    public void afterUpdate(Photo p) {
+        // Names are resolved when shown, so renames need no update
+    }
+
+    @Override
+    public void favouriteChanged(Photo p) {
+        // Membership does not depend on the flag
+    }
+
+    /**
+     * Register a collage, replacing one with the same title
+     *
+     * @param collage Collage to register
+     */
+    private void put(Collage collage) {
+        Collage old = byTitle.remove(collage.title);
+        if (old != null) {
+            for (int id : old.photoIds) {
+                Set<Collage> collages = byPhotoId.get(id);
+                collages.remove(old);
+                if (collages.isEmpty()) {
+                    byPhotoId.remove(id);
+                }
+            }
+        }
+        byTitle.put(collage.title, collage);
+        for (int id : collage.photoIds) {
+            byPhotoId.computeIfAbsent(id, k -> new LinkedHashSet<>()).add(collage);
+        }
+    }
+
+    /**
+     * Resolve one member entry of a collage line
+     *
+     * @param member "id:name", or just a name in older lines
+     * @param byId   Lookup by photo id
+     * @param byName Lookup by photo name
+     * @return Photo the entry refers to, or null if it no longer exists
+     */
+    private static Photo resolve(String member, IntFunction<Photo> byId, Function<String, Photo> byName) {
+        int colon = member.indexOf(':');
+        if (colon > 0 && member.substring(0, colon).chars().allMatch(Character::isDigit)) {
+            try {
+                return byId.apply(Integer.parseInt(member.substring(0, colon)));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return member.isEmpty() ? null : byName.apply(member);
+    }
+}
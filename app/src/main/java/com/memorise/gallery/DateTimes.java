@@ -0,0 +1,230 @@
+package com.memorise.gallery;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+
+/**
+ * DateTimes class with a lenient multi-format parser for photo timestamps
+ * Photos.txt mixes formats such as "2025-05-09 17:23:33" and "12-11-2005";
+ * all of them are normalized to epoch milliseconds of the wall time read as UTC
+ */
+class DateTimes {
+
+    // Marks a dateTime that matched none of the known formats
+    static final long UNKNOWN = Long.MIN_VALUE;
+
+    // Accepted layouts with a time of day, tried in order
+    private static final DateTimeFormatter[] DATE_TIME_FORMATS = {
+            strict("uuuu-MM-dd HH:mm:ss"),
+            strict("uuuu-MM-dd'T'HH:mm:ss"),
+            strict("uuuu-MM-dd HH:mm"),
+            strict("dd-MM-uuuu HH:mm:ss"),
+            strict("dd-MM-uuuu HH:mm"),
+            strict("dd/MM/uuuu HH:mm:ss"),
+            strict("uuuu/MM/dd HH:mm:ss"),
+    };
+
+    // Accepted date-only layouts (start of day), tried in order
+    private static final DateTimeFormatter[] DATE_FORMATS = {
+            strict("uuuu-MM-dd"),
+            strict("dd-MM-uuuu"),
+            strict("dd/MM/uuuu"),
+            strict("uuuu/MM/dd"),
+            strict("dd.MM.uuuu"),
+    };
+
+    private DateTimes() {
+    }
+
+    /**
+     * Parse a timestamp in any of the known formats
+     *
+     * @param value Date or date-time string
+     * @return Epoch millis, or UNKNOWN if no format matches
+     */
+    static long parse(String value) {
+        if (value == null) {
+            return UNKNOWN;
+        }
+        String s = value.trim();
+
+        long fast = parseCanonical(s);
+        if (fast != UNKNOWN) {
+            return fast;
+        }
+
+        for (DateTimeFormatter format : DATE_TIME_FORMATS) {
+            try {
+                return LocalDateTime.parse(s, format).toInstant(ZoneOffset.UTC).toEpochMilli();
+            } catch (DateTimeParseException e) {
+                // Try the next format
+            }
+        }
+        for (DateTimeFormatter format : DATE_FORMATS) {
+            try {
+                return LocalDate.parse(s, format).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+            } catch (DateTimeParseException e) {
+                // Try the next format
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Parse the end of the period a value names: the last millisecond of the day
+     * for date-only values, the value itself otherwise
+     *
+     * @param value Date or date-time string
+     * @return Epoch millis, or UNKNOWN if no format matches
+     */
+    static long parseUpperBound(String value) {
+        long millis = parse(value);
+        if (millis != UNKNOWN && isDateOnly(value)) {
+            millis += 24L * 60 * 60 * 1000 - 1;
+        }
+        return millis;
+    }
+
+    /**
+     * Order two parsed timestamps, placing UNKNOWN after every known time
+     *
+     * @param a First timestamp
+     * @param b Second timestamp
+     * @return Negative, zero or positive as for Comparator.compare
+     */
+    static int compare(long a, long b) {
+        if (a == b) {
+            return 0;
+        }
+        if (a == UNKNOWN) {
+            return 1;
+        }
+        if (b == UNKNOWN) {
+            return -1;
+        }
+        return Long.compare(a, b);
+    }
+
+    /**
+     * Format epoch millis in the canonical "yyyy-MM-dd HH:mm:ss" layout
+     * Inverse of parse for canonical values; used to avoid storing such strings
+     *
+     * @param millis Epoch millis of a wall time read as UTC
+     * @return Canonical text, or null for UNKNOWN or a time outside years 0-9999
+     */
+    static String formatCanonical(long millis) {
+        if (millis == UNKNOWN) {
+            return null;
+        }
+        LocalDateTime t = LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L), 0, ZoneOffset.UTC);
+        if (t.getYear() < 0 || t.getYear() > 9999 || millis % 1000 != 0) {
+            return null;
+        }
+        char[] c = "0000-00-00 00:00:00".toCharArray();
+        put(c, 0, 4, t.getYear());
+        put(c, 5, 7, t.getMonthValue());
+        put(c, 8, 10, t.getDayOfMonth());
+        put(c, 11, 13, t.getHour());
+        put(c, 14, 16, t.getMinute());
+        put(c, 17, 19, t.getSecond());
+        return new String(c);
+    }
+
+    /**
+     * Write a zero-padded decimal number into a character range
+     *
+     * @param c     Target characters
+     * @param from  Start index (inclusive)
+     * @param to    End index (exclusive)
+     * @param value Non-negative value that fits the range
+     */
+    private static void put(char[] c, int from, int to, int value) {
+        for (int i = to - 1; i >= from; i--) {
+            c[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    /**
+     * Check whether a value parses as a date without a time of day
+     *
+     * @param value Date or date-time string
+     * @return true for date-only values
+     */
+    private static boolean isDateOnly(String value) {
+        String s = value.trim();
+        for (DateTimeFormatter format : DATE_FORMATS) {
+            try {
+                LocalDate.parse(s, format);
+                return true;
+            } catch (DateTimeParseException e) {
+                // Try the next format
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Allocation-free fast path for the canonical "yyyy-MM-dd HH:mm:ss" layout
+     * written by the gallery itself
+     *
+     * @param s Trimmed value
+     * @return Epoch millis, or UNKNOWN if the value is not canonical
+     */
+    private static long parseCanonical(String s) {
+        if (s.length() != 19 || s.charAt(4) != '-' || s.charAt(7) != '-' || s.charAt(10) != ' '
+                || s.charAt(13) != ':' || s.charAt(16) != ':') {
+            return UNKNOWN;
+        }
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 7);
+        int day = digits(s, 8, 10);
+        int hour = digits(s, 11, 13);
+        int minute = digits(s, 14, 16);
+        int second = digits(s, 17, 19);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return UNKNOWN;
+        }
+        if (day > LocalDate.of(year, month, 1).lengthOfMonth()) {
+            return UNKNOWN;
+        }
+
+        long days = LocalDate.of(year, month, day).toEpochDay();
+        return ((days * 24 + hour) * 60 + minute) * 60_000L + second * 1000L;
+    }
+
+    /**
+     * Read a run of decimal digits
+     *
+     * @param s    Source string
+     * @param from Start index (inclusive)
+     * @param to   End index (exclusive)
+     * @return Parsed value, or -1 if a character is not a digit
+     */
+    private static int digits(String s, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Build a formatter that rejects impossible dates such as Feb 30
+     *
+     * @param pattern Formatter pattern
+     * @return Strict formatter
+     */
+    private static DateTimeFormatter strict(String pattern) {
+        return DateTimeFormatter.ofPattern(pattern).withResolverStyle(ResolverStyle.STRICT);
+    }
+}
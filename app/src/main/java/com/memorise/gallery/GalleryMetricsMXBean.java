@@ -0,0 +1,65 @@
+package com.memorise.gallery;
+
+import java.util.Map;
+
+/**
+ * GalleryMetricsMXBean interface exposing the gallery metrics over JMX
+ * Registered as com.memorise.gallery:type=Metrics; JMX requires this interface
+ * to be public. Latencies are reported in milliseconds per operation name.
+ */
+public interface GalleryMetricsMXBean {
+
+    /**
+     * Get how often each operation ran
+     *
+     * @return Count by operation
+     */
+    Map<String, Long> getOperationCounts();
+
+    /**
+     * Get the median latency of each operation
+     *
+     * @return p50 in milliseconds by operation
+     */
+    Map<String, Double> getP50Millis();
+
+    /**
+     * Get the 99th percentile latency of each operation
+     *
+     * @return p99 in milliseconds by operation
+     */
+    Map<String, Double> getP99Millis();
+
+    /**
+     * Get the largest latency of each operation
+     *
+     * @return Maximum in milliseconds by operation
+     */
+    Map<String, Double> getMaxMillis();
+
+    /**
+     * Get the bytes read from each data file
+     *
+     * @return Bytes by file name
+     */
+    Map<String, Long> getBytesRead();
+
+    /**
+     * Get the bytes written to each data file
+     *
+     * @return Bytes by file name
+     */
+    Map<String, Long> getBytesWritten();
+
+    /**
+     * Get the full metrics report as text
+     *
+     * @return Report as printed by the dump command
+     */
+    String getReport();
+
+    /**
+     * Clear all latencies and byte counters
+     */
+    void reset();
+}
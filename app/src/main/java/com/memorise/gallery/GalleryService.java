@@ -0,0 +1,1067 @@
+package com.memorise.gallery;
+
+import java.io.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * GalleryService class exposing all gallery operations without any console I/O
+ * Owns the photo store with its indexes, the journal and the collage and hidden
+ * lists. Invalid input is reported with an IllegalArgumentException carrying the
+ * message to show; lookups that find nothing return null or false. The
+ * interactive menu and the script runner are both thin clients of this class.
+ *
+ * Safe for concurrent sessions: lookups and searches share a read lock and run
+ * in parallel, changes take the write lock one at a time. Every change touches
+ * the shared indexes and the single journal, so writes are serialized rather
+ * than striped. Each change ends by publishing a new PhotoCatalog version;
+ * listings iterate such a version without any lock, so long scans never hold
+ * up changes. Changes to a photo obtained earlier fail if it was deleted in
+ * the meantime.
+ */
+class GalleryService {
+
+    // Constants for photo name validation
+    private static final int MAX_PHOTO_NAME_LENGTH = 50;
+    private static final Pattern PHOTO_NAME_PATTERN =
+            Pattern.compile("^[a-zA-Z0-9\\s_-]{1,50}$");
+
+    // Constants for folder name validation
+    private static final Pattern FOLDER_NAME_PATTERN =
+            Pattern.compile("^[a-zA-Z0-9\\s-/]{1,100}$");
+
+    // Constants for collage validation
+    static final int MAX_COLLAGE_PHOTOS = 10;
+    private static final int MAX_COLLAGE_TITLE_LENGTH = 50;
+
+    // "true" opens only an index of the snapshot at startup and reads photos on first use;
+    // "table" reads the snapshot into a compact columnar PhotoTable instead,
+    // "offheap" into an OffHeapPhotoTable mapped from Photos.records on later starts
+    private static final String LAZY_MODE = System.getProperty("gallery.lazy", "false").trim().toLowerCase();
+    private static final boolean LAZY_LOAD = LAZY_MODE.equals("true") || LAZY_MODE.equals("table") || LAZY_MODE.equals("offheap");
+
+    private static final Pattern DATE_TIME_PATTERN = Pattern.compile("^\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}$");
+
+    // Splits an attribute query such as "type:png folder:travel/2020" into its terms
+    private static final Pattern ATTRIBUTE_TERMS = Pattern.compile("\\s*(?=\\b(?:type|folder):)");
+
+    private final PhotoStore store = new PhotoStore(); // Linked list of photos plus lookup indexes
+    private final SortedPhotoViews sortedViews = new SortedPhotoViews(store); // Photos kept sorted by date for range searches
+    private final File dir; // Directory holding the data files
+    private final SnapshotFormat snapshotFormat; // Photos.txt, or Photos.bin / Photos.manifest with -Dgallery.format=binary|segments
+    private final PhotoJournal journal; // Append-only log of changes since the last save
+    private final HiddenPhotoIndex hiddenPhotos; // In-memory hidden state
+    private final TrigramIndex searchIndex = new TrigramIndex(store); // Substring index over names and folders
+    private final CollageIndex collages; // Collage membership by photo id
+    private volatile SortedPhotoViews.Order displayOrder = null; // Ordering chosen with sort, null for insertion order
+    private final MetricsRegistry metrics = MetricsRegistry.global(); // Operation latencies and data file traffic
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(); // Guards the store and all indexes
+    private final PhotoCatalog catalog; // Published copies of the photos for lock-free listings
+    private volatile LazySnapshot lazySnapshot = null; // Snapshot read on demand until the photos are loaded in full
+    private final ThumbnailService thumbnails; // Preview images generated in the background
+
+    /**
+     * Create a service over the data files in the working directory
+     *
+     * @param snapshotFormat Format of the photo snapshot file
+     */
+    GalleryService(SnapshotFormat snapshotFormat) {
+        this(snapshotFormat, new File("."));
+    }
+
+    /**
+     * Create a service over the data files in a directory
+     *
+     * @param snapshotFormat Format of the photo snapshot file
+     * @param dir            Directory holding Photos.txt, hidden_images.txt and collage.txt;
+     *                       images are looked up in images/ below it unless -Dgallery.images is set
+     */
+    GalleryService(SnapshotFormat snapshotFormat, File dir) {
+        this.dir = dir;
+        this.snapshotFormat = snapshotFormat;
+        this.journal = new PhotoJournal(snapshotFormat, store, dir);
+        this.hiddenPhotos = new HiddenPhotoIndex(new File(dir, "hidden_images.txt").getPath(), store);
+        this.collages = new CollageIndex(new File(dir, "collage.txt").getPath(), store);
+        this.catalog = new PhotoCatalog(store, hiddenPhotos);
+        this.thumbnails = new ThumbnailService(new File(System.getProperty("gallery.images", new File(dir, "images").getPath())),
+                new File(dir, "thumbnails"));
+    }
+
+    /**
+     * Checks a photo name
+     * Safe to call from several threads, e.g. during a bulk import
+     *
+     * @param name Photo name to validate
+     * @return Error message, or null if the name is valid
+     */
+    static String photoNameError(String name) {
+        if (name == null || name.isEmpty()) {
+            return "Photo name cannot be empty.";
+        }
+
+        if (name.length() > MAX_PHOTO_NAME_LENGTH) {
+            return "Photo name cannot exceed " + MAX_PHOTO_NAME_LENGTH + " characters.";
+        }
+
+        // Check name against pattern requirements
+        Matcher matcher = PHOTO_NAME_PATTERN.matcher(name);
+        if (!matcher.matches()) {
+            return "Photo name can only contain letters, numbers, spaces, underscores, and hyphens.";
+        }
+
+        return null;
+    }
+
+    /**
+     * Checks a folder name
+     *
+     * @param folder Folder name to validate
+     * @return Error message, or null if the folder name is valid
+     */
+    static String folderNameError(String folder) {
+        if (folder == null || folder.isEmpty()) {
+            return "Folder name cannot be empty.";
+        }
+
+        // Check folder name against pattern requirements
+        Matcher matcher = FOLDER_NAME_PATTERN.matcher(folder);
+        if (!matcher.matches()) {
+            return "Folder name can only contain letters, numbers, spaces, underscores, hyphens, and forward slashes.";
+        }
+
+        return null;
+    }
+
+    /**
+     * Checks a photo type
+     *
+     * @param type Photo type to validate
+     * @return Error message, or null if the type is valid
+     */
+    static String photoTypeError(String type) {
+        if (type == null || type.isEmpty()) {
+            return "Photo type cannot be empty.";
+        }
+
+        // Convert to lowercase for case-insensitive comparison
+        type = type.toLowerCase();
+        if (!type.equals("png") && !type.equals("jpg")) {
+            return "Only 'png' and 'jpg' types are allowed.";
+        }
+
+        return null;
+    }
+
+    /**
+     * Get current date and time formatted as string
+     *
+     * @return Formatted date and time string
+     */
+    static String getCurrentDateTime() {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        return LocalDateTime.now().format(formatter);
+    }
+
+    /**
+     * Loads the photo gallery from the snapshot file and replays the change journal on top
+     * Load diagnostics are printed, as they concern the data files rather than an operation
+     * In lazy mode (-Dgallery.lazy=true) only an index of the snapshot is opened, as
+     * long as the journal holds no unsaved changes; the photos are then loaded by the
+     * first operation that needs all of them. -Dgallery.lazy=table holds the snapshot
+     * in a columnar PhotoTable until then, -Dgallery.lazy=offheap in an OffHeapPhotoTable.
+     */
+    void load() {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            hiddenPhotos.load(); // Read hidden_images.txt once; photos are marked as they are added
+
+            File file = new File(dir, snapshotFormat.fileName());
+            if (!file.exists()) {
+                System.out.println(file.getName() + " not found. Starting with empty gallery.");
+            } else if (LAZY_LOAD && !journal.hasPendingChanges() && openLazy(file)) {
+                LazySnapshot lazy = lazySnapshot;
+                collages.load(lazy::findById, lazy.nameLookup()); // Membership is by id, so it survives the full load
+                return;
+            } else {
+                try {
+                    PhotoLoader.Result result = snapshotFormat.load(file);
+                    metrics.read(file.getName(), result.bytes);
+                    for (String message : result.messages) {
+                        System.out.println(message);
+                    }
+                    for (Photo photo : result.photos) {
+                        // Ids key every index, so a repeated id would shadow the earlier photo
+                        if (store.findById(photo.id) != null) {
+                            System.out.println("Skipping duplicate id " + photo.id + " in " + file.getName() + ": " + photo.name);
+                            continue;
+                        }
+                        store.add(photo);
+                    }
+                    System.out.println("Gallery loaded successfully.");
+                    System.out.println(result.report(file.getName()));
+                } catch (IOException e) {
+                    System.out.println("Error loading gallery: " + e.getMessage());
+                }
+            }
+
+            replayJournal();
+            collages.load(); // Members are resolved against the loaded photos
+            reportUndated();
+        } finally {
+            catalog.publish();
+            lock.writeLock().unlock();
+            metrics.record("load", start);
+        }
+    }
+
+    /**
+     * Open the snapshot for lazy access
+     *
+     * @param file Snapshot file
+     * @return true if the snapshot is served lazily, false if it has to be loaded in full
+     */
+    private boolean openLazy(File file) {
+        long start = System.nanoTime();
+        try {
+            boolean table = LAZY_MODE.equals("table");
+            boolean offHeap = LAZY_MODE.equals("offheap");
+            LazySnapshot lazy = table ? LazySnapshot.openTable(snapshotFormat, file)
+                    : offHeap ? LazySnapshot.openOffHeap(snapshotFormat, file, new File(dir, "Photos.records"))
+                    : snapshotFormat.openLazy(file);
+            for (String message : lazy.messages) {
+                System.out.println(message);
+            }
+            lazySnapshot = lazy;
+            System.out.println("Gallery loaded successfully.");
+            System.out.println(String.format(table
+                            ? "Read %,d photos from %s into a compact table in %.1f ms."
+                            : offHeap ? "Opened %,d photos of %s off the heap in %.1f ms."
+                            : "Indexed %,d photos in %s in %.1f ms; photos are read on first use.",
+                    lazy.size(), file.getName(), (System.nanoTime() - start) / 1_000_000.0));
+            return true;
+        } catch (IOException e) {
+            System.out.println("Cannot open " + file.getName() + " lazily (" + e.getMessage() + "). Loading all photos.");
+            return false;
+        }
+    }
+
+    /**
+     * Load all photos of a lazily opened snapshot into the store
+     * Called by every operation that needs the whole gallery; does nothing once loaded
+     */
+    private void ensureLoaded() {
+        if (lazySnapshot == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            LazySnapshot lazy = lazySnapshot;
+            if (lazy == null) {
+                return; // Another session loaded it meanwhile
+            }
+            lazySnapshot = null;
+            try (LazySnapshot closing = lazy) {
+                for (int i = 0; i < closing.size(); i++) {
+                    store.add(closing.decode(i)); // Fresh photos; cached ones may still be held by readers
+                }
+            } catch (IOException | UncheckedIOException e) {
+                System.out.println("Error loading gallery: " + e.getMessage());
+            }
+            replayJournal(); // Restores the id high-water mark
+            reportUndated();
+        } finally {
+            catalog.publish();
+            lock.writeLock().unlock();
+            metrics.record("load", start);
+        }
+    }
+
+    /**
+     * Apply changes made since the last full save
+     */
+    private void replayJournal() {
+        int replayed = journal.replay();
+        if (replayed > 0) {
+            System.out.println("Replayed " + replayed + " unsaved changes from the journal.");
+        }
+    }
+
+    /**
+     * Print the photos whose date could not be parsed
+     */
+    private void reportUndated() {
+        int undated = 0;
+        for (Photo photo : store) {
+            if (photo.dateTimeMillis == DateTimes.UNKNOWN) {
+                if (undated < 5) {
+                    System.out.println("Unrecognised date for photo " + photo.id + " (" + photo.name + "): " + photo.dateTime);
+                }
+                undated++;
+            }
+        }
+        if (undated > 5) {
+            System.out.println("... " + (undated - 5) + " more photos with unrecognised dates; they sort last by date.");
+        }
+    }
+
+    /**
+     * Saves the full photo gallery to the snapshot file and clears the change journal
+     * A lazily opened snapshot has no changes, so there is nothing to write
+     *
+     * @throws IOException If the snapshot cannot be written
+     */
+    void save() throws IOException {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            if (lazySnapshot == null) {
+                journal.checkpoint();
+            }
+        } finally {
+            catalog.publish();
+            lock.writeLock().unlock();
+            metrics.record("save", start);
+        }
+    }
+
+    /**
+     * Flush and close the journal and a lazily opened snapshot, and stop thumbnail generation
+     */
+    void close() {
+        lock.writeLock().lock();
+        try {
+            journal.close();
+            thumbnails.close();
+            LazySnapshot lazy = lazySnapshot;
+            if (lazy != null) {
+                lazySnapshot = null;
+                try {
+                    lazy.close();
+                } catch (IOException e) {
+                    System.out.println("Error closing " + snapshotFormat.fileName() + ": " + e.getMessage());
+                }
+            }
+        } finally {
+            catalog.publish();
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get the number of photos, hidden ones included
+     *
+     * @return Number of photos
+     */
+    int size() {
+        LazySnapshot lazy = lazySnapshot;
+        return lazy != null ? lazy.size() : catalog.current().size();
+    }
+
+    /**
+     * Check whether the gallery holds no photos
+     *
+     * @return true if the gallery is empty
+     */
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Get the thumbnail service
+     * Its methods take any photo handed out by this service and never block
+     *
+     * @return Thumbnail service keyed by photo id
+     */
+    ThumbnailService thumbnails() {
+        return thumbnails;
+    }
+
+    /**
+     * Get the current version of the catalog
+     * The version never changes, so it can be iterated for as long as needed,
+     * e.g. for an export, without holding up changes
+     *
+     * @return Current catalog version
+     */
+    PhotoCatalog.Version snapshot() {
+        ensureLoaded();
+        return catalog.current();
+    }
+
+    /**
+     * Look up a photo by id
+     * Returns a catalog copy, which later changes do not touch
+     *
+     * @param id Photo id
+     * @return The photo, or null if there is none
+     */
+    Photo findById(int id) {
+        lock.readLock().lock();
+        try {
+            LazySnapshot lazy = lazySnapshot;
+            return lazy != null ? lazy.findById(id) : catalog.published(store.findById(id));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Look up the first photo with a name, ignoring case
+     * Returns a catalog copy, which later changes do not touch
+     *
+     * @param name Photo name
+     * @return The photo, or null if there is none
+     */
+    Photo findByName(String name) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return catalog.published(store.findByName(name));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Add a new photo dated now
+     *
+     * @param name   Photo name
+     * @param type   png or jpg
+     * @param folder Folder name
+     * @return The added photo
+     * @throws IllegalArgumentException If a value is invalid or the folder already has a photo with that name
+     */
+    Photo addPhoto(String name, String type, String folder) {
+        long start = System.nanoTime();
+        ensureLoaded();
+        lock.writeLock().lock();
+        try {
+            check(photoNameError(name));
+            check(photoTypeError(type));
+            check(folderNameError(folder));
+
+            // Check for duplicate photo in same folder
+            if (store.findByNameAndFolder(name, folder) != null) {
+                throw new IllegalArgumentException("Photo with the same name already exists in this folder.");
+            }
+
+            Photo newPhoto = new Photo(store.allocateId(), name, type.toLowerCase(), folder, getCurrentDateTime(), false);
+            store.add(newPhoto);
+            journal.recordAdd(newPhoto); // Log the addition instead of rewriting Photos.txt
+            thumbnails.prefetch(newPhoto); // Queued only, so the lock is not held up
+            return newPhoto;
+        } finally {
+            catalog.publish();
+            lock.writeLock().unlock();
+            metrics.record("add", start);
+        }
+    }
+
+    /**
+     * Delete a photo; the ids of the other photos stay as they are
+     *
+     * @param p Photo to delete, may be null
+     * @return true if the photo was deleted, false if it was not in the gallery
+     */
+    boolean deletePhoto(Photo p) {
+        long start = System.nanoTime();
+        ensureLoaded();
+        lock.writeLock().lock();
+        try {
+            if (p == null || !store.remove(store.findById(p.id))) {
+                return false;
+            }
+            journal.recordDelete(p.id);
+            return true;
+        } finally {
+            catalog.publish();
+            lock.writeLock().unlock();
+            metrics.record("delete", start);
+        }
+    }
+
+    /**
+     * Change title, date and type of a photo
+     * Blank or null values keep the current value
+     *
+     * @param p        Photo to edit
+     * @param newTitle New title
+     * @param newDate  New date in the yyyy-MM-dd HH:mm:ss format
+     * @param newType  New type, png or jpg
+     * @throws IllegalArgumentException If a value is invalid or the photo was deleted; nothing is changed then
+     */
+    void editPhoto(Photo p, String newTitle, String newDate, String newType) {
+        long start = System.nanoTime();
+        ensureLoaded();
+        lock.writeLock().lock();
+        try {
+            p = live(p);
+            boolean title = newTitle != null && !newTitle.isEmpty();
+            boolean date = newDate != null && !newDate.isEmpty();
+            boolean type = newType != null && !newType.isEmpty();
+
+            if (title && photoNameError(newTitle) != null) {
+                throw new IllegalArgumentException(photoNameError(newTitle) + " Edit canceled.");
+            }
+            if (date && !DATE_TIME_PATTERN.matcher(newDate).matches()) {
+                throw new IllegalArgumentException("Invalid date format. Should be YYYY-MM-DD HH:MM:SS. Edit canceled.");
+            }
+            if (type && photoTypeError(newType) != null) {
+                throw new IllegalArgumentException(photoTypeError(newType) + " Edit canceled.");
+            }
+
+            if (title) store.rename(p, newTitle);
+            if (date) store.changeDate(p, newDate);
+            if (type) store.changeType(p, newType.toLowerCase());
+
+            journal.recordEdit(p);
+        } finally {
+            catalog.publish();
+            lock.writeLock().unlock();
+            metrics.record("edit", start);
+        }
+    }
+
+    /**
+     * Move a photo to another folder
+     *
+     * @param p         Photo to change
+     * @param newFolder New folder name
+     * @return true if the folder changed, false if the photo already is in that folder
+     * @throws IllegalArgumentException If the folder name is invalid or the photo was deleted
+     */
+    boolean changeFolder(Photo p, String newFolder) {
+        long start = System.nanoTime();
+        ensureLoaded();
+        lock.writeLock().lock();
+        try {
+            p = live(p);
+            check(folderNameError(newFolder));
+            if (newFolder.equalsIgnoreCase(p.folder)) {
+                return false;
+            }
+            store.changeFolder(p, newFolder);
+            journal.recordEdit(p);
+            return true;
+        } finally {
+            catalog.publish();
+            lock.writeLock().unlock();
+            metrics.record("folder", start);
+        }
+    }
+
+    /**
+     * Change the file type of a photo
+     *
+     * @param p       Photo to change
+     * @param newType New type
+     * @return true if the type changed, false if the photo already has that type
+     * @throws IllegalArgumentException If the type is not png or jpg or the photo was deleted
+     */
+    boolean changeType(Photo p, String newType) {
+        long start = System.nanoTime();
+        ensureLoaded();
+        lock.writeLock().lock();
+        try {
+            p = live(p);
+            check(photoTypeError(newType));
+            if (newType.equalsIgnoreCase(p.type)) {
+                return false;
+            }
+            store.changeType(p, newType.toLowerCase());
+            journal.recordEdit(p);
+            return true;
+        } finally {
+            catalog.publish();
+            lock.writeLock().unlock();
+            metrics.record("type", start);
+        }
+    }
+
+    /**
+     * Mark or unmark a photo as favourite
+     *
+     * @param p         Photo to change
+     * @param favourite New favourite flag
+     * @return true if the flag changed, false if it already had that value
+     * @throws IllegalArgumentException If the photo was deleted
+     */
+    boolean setFavourite(Photo p, boolean favourite) {
+        long start = System.nanoTime();
+        ensureLoaded();
+        lock.writeLock().lock();
+        try {
+            p = live(p);
+            if (p.isFavourite == favourite) {
+                return false;
+            }
+            store.setFavourite(p, favourite);
+            journal.recordFavourite(p);
+            return true;
+        } finally {
+            catalog.publish();
+            lock.writeLock().unlock();
+            metrics.record("favourite", start);
+        }
+    }
+
+    /**
+     * Hide all photos with a name
+     *
+     * @param name Photo name
+     * @return true if the name was newly hidden, false if it already was hidden or could not be saved
+     * @throws IllegalArgumentException If no photo has that name
+     */
+    boolean hide(String name) {
+        long start = System.nanoTime();
+        ensureLoaded();
+        lock.writeLock().lock();
+        try {
+            if (store.findByName(name) == null) {
+                throw new IllegalArgumentException("Photo titled '" + name + "' not found.");
+            }
+            return hiddenPhotos.hide(name);
+        } finally {
+            catalog.publish();
+            lock.writeLock().unlock();
+            metrics.record("hide", start);
+        }
+    }
+
+    /**
+     * Remove a name from the hidden list
+     *
+     * @param name Photo name
+     */
+    void unhide(String name) {
+        long start = System.nanoTime();
+        ensureLoaded();
+        lock.writeLock().lock();
+        try {
+            if (name == null || name.trim().isEmpty()) {
+                return; // Skip if name is null or empty
+            }
+            hiddenPhotos.unhide(name); // Rewrites hidden_images.txt only if the name was hidden
+        } finally {
+            catalog.publish();
+            lock.writeLock().unlock();
+            metrics.record("unhide", start);
+        }
+    }
+
+    /**
+     * Check whether a photo name is on the hidden list
+     *
+     * @param name Photo name
+     * @return true if the name is hidden
+     */
+    boolean isHiddenName(String name) {
+        lock.readLock().lock();
+        try {
+            return hiddenPhotos.isHiddenName(name);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Check whether any photo name is on the hidden list
+     *
+     * @return true if at least one name is hidden
+     */
+    boolean hasHiddenNames() {
+        lock.readLock().lock();
+        try {
+            return !hiddenPhotos.isEmpty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Search visible photos by name or folder, by a date range written as "from..to",
+     * or by exact type and folder written as "type:png folder:travel" (either term
+     * may be left out)
+     *
+     * @param query Search text, date range or attribute terms
+     * @return Matching visible photos in display order
+     * @throws IllegalArgumentException If the query is empty, the range has an unrecognised date or a term has no value
+     */
+    List<Photo> search(String query) {
+        long start = System.nanoTime();
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            String q = query == null ? "" : query.trim().toLowerCase();
+            if (q.isEmpty()) {
+                throw new IllegalArgumentException("Search query cannot be empty.");
+            }
+
+            List<Photo> matches;
+            int range = q.indexOf("..");
+            if (q.startsWith("type:") || q.startsWith("folder:")) {
+                matches = selectByAttributes(q);
+            } else if (range >= 0) {
+                long from = DateTimes.parse(q.substring(0, range));
+                long to = DateTimes.parseUpperBound(q.substring(range + 2));
+                if (from == DateTimes.UNKNOWN || to == DateTimes.UNKNOWN) {
+                    throw new IllegalArgumentException("Unrecognised date in range. Use a format like yyyy-MM-dd or dd-MM-yyyy.");
+                }
+                // Range lookup in the date-ordered view
+                matches = publishedCopies(sortedViews.between(from, to));
+            } else {
+                // Only photos sharing every trigram of the query are checked
+                matches = publishedCopies(searchIndex.search(q));
+            }
+            matches.removeIf(catalog.current()::isHidden); // Exclude hidden photos from search results
+            matches.sort(displayComparator());
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+            metrics.record("search", start);
+        }
+    }
+
+    /**
+     * Choose the order in which photos are listed
+     * Listings then use the catalog's sorted array for that order, which each
+     * version patches from the previous one; the stored list and the snapshot
+     * file keep their order
+     *
+     * @param order New display order
+     */
+    void sort(SortedPhotoViews.Order order) {
+        displayOrder = order;
+    }
+
+    /**
+     * Get all visible photos in display order
+     * Reads the current catalog version without taking a lock
+     *
+     * @return Photos that are not hidden
+     */
+    List<Photo> visiblePhotos() {
+        long start = System.nanoTime();
+        try {
+            ensureLoaded();
+            PhotoCatalog.Version version = catalog.current();
+            List<Photo> photos = new ArrayList<>();
+            for (Photo p : orderedPhotos(version)) {
+                if (!version.isHidden(p)) {
+                    photos.add(p);
+                }
+            }
+            return photos;
+        } finally {
+            metrics.record("list", start);
+        }
+    }
+
+    /**
+     * Get all visible favourite photos in display order
+     * Reads the current catalog version without taking a lock
+     *
+     * @return Favourite photos that are not hidden
+     */
+    List<Photo> favourites() {
+        long start = System.nanoTime();
+        try {
+            ensureLoaded();
+            PhotoCatalog.Version version = catalog.current();
+            List<Photo> photos = version.select(null, null, true);
+            photos.removeIf(version::isHidden); // Also exclude hidden from favorites view
+            if (displayOrder != null) {
+                photos.sort(displayComparator());
+            }
+            return photos;
+        } finally {
+            metrics.record("favourites", start);
+        }
+    }
+
+    /**
+     * Get all hidden photos in display order
+     * Reads the current catalog version without taking a lock
+     *
+     * @return Hidden photos
+     */
+    List<Photo> hiddenPhotos() {
+        long start = System.nanoTime();
+        try {
+            ensureLoaded();
+            PhotoCatalog.Version version = catalog.current();
+            List<Photo> photos = new ArrayList<>();
+            for (Photo p : orderedPhotos(version)) {
+                if (version.isHidden(p)) {
+                    photos.add(p);
+                }
+            }
+            return photos;
+        } finally {
+            metrics.record("hidden", start);
+        }
+    }
+
+    /**
+     * Get one page of the visible photos in display order
+     * Reads the current catalog version without taking a lock. Until the gallery
+     * is fully loaded, pages in list order are decoded straight from the snapshot.
+     *
+     * @param token    Resume token from an earlier page, or null for the first page
+     * @param pageSize Photos per page
+     * @return The page with the tokens of its neighbours
+     * @throws IllegalArgumentException If the token or the page size is invalid
+     */
+    PhotoCursor.Page pageVisible(String token, int pageSize) {
+        long start = System.nanoTime();
+        try {
+            if (displayOrder == null && lazySnapshot != null) {
+                lock.readLock().lock(); // Keeps the snapshot open and the hidden names unchanged
+                try {
+                    LazySnapshot lazy = lazySnapshot;
+                    if (lazy != null) {
+                        return new PhotoCursor(lazy.asList(), null, null, p -> !hiddenPhotos.isHiddenName(p.name))
+                                .page(token, pageSize);
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+            ensureLoaded();
+            PhotoCatalog.Version version = catalog.current();
+            return cursor(version, p -> !version.isHidden(p)).page(token, pageSize);
+        } finally {
+            metrics.record("page", start);
+        }
+    }
+
+    /**
+     * Get one page of the visible favourite photos in display order
+     * Reads the current catalog version without taking a lock
+     *
+     * @param token    Resume token from an earlier page, or null for the first page
+     * @param pageSize Photos per page
+     * @return The page with the tokens of its neighbours
+     * @throws IllegalArgumentException If the token or the page size is invalid
+     */
+    PhotoCursor.Page pageFavourites(String token, int pageSize) {
+        long start = System.nanoTime();
+        try {
+            ensureLoaded();
+            PhotoCatalog.Version version = catalog.current();
+            SortedPhotoViews.Order order = displayOrder;
+            List<Photo> photos = version.select(null, null, true); // Only the favourites are paged through
+            Comparator<Photo> comparator = order == null ? null : SortedPhotoViews.comparator(order);
+            if (comparator != null) {
+                photos.sort(comparator);
+            }
+            return new PhotoCursor(photos, order, comparator, p -> !version.isHidden(p)).page(token, pageSize);
+        } finally {
+            metrics.record("page", start);
+        }
+    }
+
+    /**
+     * Get one page of the search results
+     * The search runs again for every page; the token keeps the place
+     *
+     * @param query    Search text or date range, as for search
+     * @param token    Resume token from an earlier page, or null for the first page
+     * @param pageSize Photos per page
+     * @return The page with the tokens of its neighbours
+     * @throws IllegalArgumentException If the query, the token or the page size is invalid
+     */
+    PhotoCursor.Page pageSearch(String query, String token, int pageSize) {
+        SortedPhotoViews.Order order = displayOrder == null ? SortedPhotoViews.Order.ID : displayOrder;
+        Comparator<Photo> comparator = SortedPhotoViews.comparator(order);
+        List<Photo> matches = search(query);
+        matches.sort(comparator); // Already sorted unless the order changed meanwhile
+        return new PhotoCursor(matches, order, comparator, p -> true).page(token, pageSize);
+    }
+
+    /**
+     * Create a collage from photos given by name
+     *
+     * @param title      Collage title (1-50 characters)
+     * @param photoNames Names of the member photos (1-10)
+     * @return true if the collage was saved, false otherwise
+     * @throws IllegalArgumentException If the title or the number of photos is invalid, or a photo does not exist
+     */
+    boolean createCollage(String title, List<String> photoNames) {
+        long start = System.nanoTime();
+        ensureLoaded();
+        lock.writeLock().lock();
+        try {
+            if (title == null || title.isEmpty()) {
+                throw new IllegalArgumentException("Collage title cannot be empty.");
+            }
+            if (title.length() > MAX_COLLAGE_TITLE_LENGTH) {
+                throw new IllegalArgumentException("Collage title cannot exceed " + MAX_COLLAGE_TITLE_LENGTH + " characters.");
+            }
+            if (photoNames.isEmpty() || photoNames.size() > MAX_COLLAGE_PHOTOS) {
+                throw new IllegalArgumentException("Please enter a number between 1 and " + MAX_COLLAGE_PHOTOS + ".");
+            }
+
+            List<Photo> photos = new ArrayList<>();
+            for (String name : photoNames) {
+                Photo photo = store.findByName(name);
+                if (photo == null) {
+                    throw new IllegalArgumentException("Photo titled '" + name + "' not found.");
+                }
+                photos.add(photo); // Membership is kept by id
+            }
+            return collages.create(title, photos);
+        } finally {
+            catalog.publish();
+            lock.writeLock().unlock();
+            metrics.record("collage", start);
+        }
+    }
+
+    /**
+     * Get the titles of the collages containing a photo
+     *
+     * @param p Photo to look up
+     * @return Collage titles
+     */
+    List<String> collagesOf(Photo p) {
+        lock.readLock().lock();
+        try {
+            return collages.collagesOf(p);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Import photos in bulk from a CSV or NDJSON manifest
+     *
+     * @param file Manifest file
+     * @return Import result
+     * @throws IOException If the manifest cannot be read
+     */
+    PhotoImporter.Result importManifest(File file) throws IOException {
+        long start = System.nanoTime();
+        try {
+            ensureLoaded();
+            return new PhotoImporter(store, journal, lock.writeLock(), catalog).importManifest(file); // Locks per batch
+        } finally {
+            metrics.record("import", start);
+        }
+    }
+
+    /**
+     * Find photos by exact type and folder through the catalog's posting lists
+     *
+     * @param q Lower-cased query made of "type:" and "folder:" terms
+     * @return Matching photos in list order, hidden ones included
+     * @throws IllegalArgumentException If a term has no value
+     */
+    private List<Photo> selectByAttributes(String q) {
+        String type = null;
+        String folder = null;
+        for (String term : ATTRIBUTE_TERMS.split(q)) {
+            if (term.isEmpty()) {
+                continue;
+            }
+            int colon = term.indexOf(':');
+            String value = term.substring(colon + 1).trim();
+            if (value.isEmpty()) {
+                throw new IllegalArgumentException("Search term '" + term.trim() + "' needs a value.");
+            }
+            if (term.startsWith("type")) {
+                type = value;
+            } else {
+                folder = value;
+            }
+        }
+        return catalog.current().select(type, folder, false);
+    }
+
+    /**
+     * Replace stored photos by their copies in the current catalog version
+     * Results are read after the lock is released, so they must not be the
+     * stored photos that later changes update in place
+     *
+     * @param photos Stored photos; must be called under the lock
+     * @return Published copies of the photos
+     */
+    private List<Photo> publishedCopies(Collection<Photo> photos) {
+        List<Photo> copies = new ArrayList<>(photos.size());
+        for (Photo p : photos) {
+            copies.add(catalog.published(p));
+        }
+        return copies;
+    }
+
+    /**
+     * Get the photos of a catalog version in the current display order
+     *
+     * @param version Catalog version
+     * @return Photos in display order (list order until a sort was chosen)
+     */
+    private Iterable<Photo> orderedPhotos(PhotoCatalog.Version version) {
+        SortedPhotoViews.Order order = displayOrder;
+        return order == null ? version : version.sorted(order);
+    }
+
+    /**
+     * Create a cursor over a catalog version in the current display order
+     *
+     * @param version Catalog version
+     * @param filter  Photos to include
+     * @return Cursor over the version
+     */
+    private PhotoCursor cursor(PhotoCatalog.Version version, Predicate<Photo> filter) {
+        SortedPhotoViews.Order order = displayOrder;
+        return new PhotoCursor(version.sorted(order), order,
+                order == null ? null : SortedPhotoViews.comparator(order), filter);
+    }
+
+    /**
+     * Get the comparator matching the current display order
+     * Used to order result sets that do not come from a sorted view
+     *
+     * @return Comparator for the display order (by id until a sort was chosen)
+     */
+    private Comparator<Photo> displayComparator() {
+        SortedPhotoViews.Order order = displayOrder;
+        return SortedPhotoViews.comparator(order == null ? SortedPhotoViews.Order.ID : order);
+    }
+
+    /**
+     * Get the stored photo for a photo handed out earlier
+     * Another session may have deleted it since it was looked up, and listings
+     * hand out catalog copies rather than the stored photos
+     *
+     * @param p Photo from a lookup or a listing
+     * @return The stored photo with the same id
+     * @throws IllegalArgumentException If the photo is no longer in the gallery
+     */
+    private Photo live(Photo p) {
+        Photo stored = p == null ? null : store.findById(p.id);
+        if (stored == null) {
+            throw new IllegalArgumentException("Photo not found.");
+        }
+        return stored;
+    }
+
+    /**
+     * Throw a validation error if there is one
+     *
+     * @param error Error message, or null
+     * @throws IllegalArgumentException If error is not null
+     */
+    private static void check(String error) {
+        if (error != null) {
+            throw new IllegalArgumentException(error);
+        }
+    }
+}
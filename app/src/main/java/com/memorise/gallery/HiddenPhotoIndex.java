@@ -0,0 +1,218 @@
+package com.memorise.gallery;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * HiddenPhotoIndex class keeping the hidden state of photos in memory
+ * hidden_images.txt (one lower-cased photo name per line) is read once; after
+ * that a bitmap indexed by photo id answers visibility with a single bit test.
+ * The file is only written when a photo is hidden or removed from the list.
+ */
+class HiddenPhotoIndex implements PhotoStore.Listener {
+    private final File file;
+    private final PhotoStore store;
+
+    private final Set<String> hiddenNames = new LinkedHashSet<>(); // Lower-cased, in file order
+    private final BitSet hiddenIds = new BitSet();
+    private long modCount = 0; // Bumped whenever a bit of hiddenIds changes
+
+    /**
+     * Create the index and subscribe to store changes
+     *
+     * @param fileName Name of the hidden photos file
+     * @param store    Store holding the photos
+     */
+    HiddenPhotoIndex(String fileName, PhotoStore store) {
+        this.file = new File(fileName);
+        this.store = store;
+        store.addListener(this);
+    }
+
+    /**
+     * Read the hidden photo names from file and mark matching photos
+     * Creates the file if it does not exist yet
+     */
+    void load() {
+        hiddenNames.clear();
+        hiddenIds.clear();
+        modCount++;
+
+        if (!file.exists()) {
+            try {
+                file.createNewFile();
+                System.out.println("Created new " + file.getName() + " file.");
+            } catch (IOException e) {
+                System.out.println("Error creating " + file.getName() + " file: " + e.getMessage());
+            }
+        } else {
+            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.trim().isEmpty()) {
+                        hiddenNames.add(line.trim().toLowerCase());
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Error reading " + file.getName() + ": " + e.getMessage());
+            }
+            MetricsRegistry.global().read(file.getName(), file.length());
+        }
+
+        for (Photo p : store) {
+            photoAdded(p);
+        }
+    }
+
+    /**
+     * Check whether a photo is hidden
+     *
+     * @param p Photo to check
+     * @return true if the photo is hidden
+     */
+    boolean isHidden(Photo p) {
+        return p.id >= 0 ? hiddenIds.get(p.id) : hiddenNames.contains(p.name.toLowerCase());
+    }
+
+    /**
+     * Check whether a photo name is on the hidden list
+     *
+     * @param name Photo name
+     * @return true if the name is hidden
+     */
+    boolean isHiddenName(String name) {
+        return hiddenNames.contains(name.toLowerCase());
+    }
+
+    /**
+     * Get a change counter for the hidden bits
+     *
+     * @return Value that changes whenever a photo is hidden or shown
+     */
+    long modCount() {
+        return modCount;
+    }
+
+    /**
+     * Copy the ids of all hidden photos
+     *
+     * @return Independent copy of the hidden bitmap
+     */
+    BitSet copyOfHiddenIds() {
+        return (BitSet) hiddenIds.clone();
+    }
+
+    /**
+     * Check whether no photo names are hidden
+     *
+     * @return true if the hidden list is empty
+     */
+    boolean isEmpty() {
+        return hiddenNames.isEmpty();
+    }
+
+    /**
+     * Hide all photos with the given name and append the name to the file
+     *
+     * @param name Photo name
+     * @return true if the name was newly hidden and written, false otherwise
+     */
+    boolean hide(String name) {
+        String key = name.toLowerCase();
+        if (hiddenNames.contains(key)) {
+            return false;
+        }
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file, true))) {
+            writer.write(key); // Store in lowercase for consistent matching
+            writer.newLine();
+        } catch (IOException e) {
+            System.out.println("Error writing to " + file.getName() + ": " + e.getMessage());
+            return false;
+        }
+        MetricsRegistry.global().written(file.getName(), key.getBytes().length + System.lineSeparator().length());
+
+        hiddenNames.add(key);
+        for (Photo p : store.findAllByName(name)) {
+            mark(p);
+        }
+        return true;
+    }
+
+    /**
+     * Remove a name from the hidden list and rewrite the file
+     *
+     * @param name Photo name
+     */
+    void unhide(String name) {
+        String key = name.toLowerCase();
+        if (!hiddenNames.remove(key)) {
+            return;
+        }
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            for (String hidden : hiddenNames) {
+                writer.write(hidden);
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            System.out.println("Error updating " + file.getName() + ": " + e.getMessage());
+        }
+        MetricsRegistry.global().written(file.getName(), file.length());
+
+        for (Photo p : store.findAllByName(name)) {
+            unmark(p);
+        }
+    }
+
+    @Override
+    public void photoAdded(Photo p) {
+        if (hiddenNames.contains(p.name.toLowerCase())) {
+            mark(p);
+        }
+    }
+
+    @Override
+    public void photoRemoved(Photo p) {
+        unmark(p);
+    }
+
+    @Override
+    public void beforeUpdate(Photo p) {
+        unmark(p); // Name or id may change
+    }
+
+    @Override
+    public void afterUpdate(Photo p) {
+        photoAdded(p);
+    }
+
+    @Override
+    public void favouriteChanged(Photo p) {
+        // Hiding is by name
+    }
+
+    /**
+     * Set the hidden bit of a photo
+     *
+     * @param p Photo to mark
+     */
+    private void mark(Photo p) {
+        if (p.id >= 0 && !hiddenIds.get(p.id)) {
+            hiddenIds.set(p.id);
+            modCount++;
+        }
+    }
+
+    /**
+     * Clear the hidden bit of a photo
+     *
+     * @param p Photo to unmark
+     */
+    private void unmark(Photo p) {
+        if (p.id >= 0 && hiddenIds.get(p.id)) {
+            hiddenIds.clear(p.id);
+            modCount++;
+        }
+    }
+}
@@ -0,0 +1,688 @@
+package com.memorise.gallery;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * LazySnapshot class giving random access to the records of a snapshot file without loading it
+ * Only a compact index is held: the id of every record and, for the text format,
+ * the byte offset of its line. A record is decoded when it is first asked for and
+ * kept in a bounded LRU cache (gallery.lazy.cacheSize photos, default 4096), so
+ * startup time and heap stay roughly flat as the library grows.
+ *
+ * The text index is written next to the snapshot (Photos.idx) together with the
+ * snapshot's length and modification time, and mapped instead of rebuilt on the
+ * next start as long as the snapshot is unchanged. The binary format needs no
+ * extra file: its id column is mapped directly.
+ *
+ * Lookups by id binary-search the id column when ids ascend in file order, as
+ * they do in every file the gallery writes; otherwise a sorted (id, record)
+ * table of 8 bytes per record is built once.
+ *
+ * Lines the full loader would skip are reported when the index is built.
+ *
+ * A snapshot can instead be read once into a PhotoTable (openTable): photos are
+ * then held in compact columns rather than read from the file on each use. Or it
+ * is held outside the heap in an OffHeapPhotoTable (openOffHeap), saved to a store
+ * file that later starts map as long as the snapshot is unchanged.
+ *
+ * Photos.idx layout (little endian):
+ * header (INDEX_HEADER_SIZE bytes): magic, version, count, snapshot length, snapshot modification time
+ * line offsets: long[count], ids: int[count]
+ */
+abstract class LazySnapshot implements Closeable {
+
+    static final int CACHE_SIZE = Integer.getInteger("gallery.lazy.cacheSize", 4096);
+
+    private static final int INDEX_MAGIC = 0x4947504D; // "MPGI" read as little endian
+    private static final int INDEX_VERSION = 1;
+    private static final int INDEX_HEADER_SIZE = 32;
+
+    private final Map<Integer, Photo> cache = new LinkedHashMap<Integer, Photo>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Photo> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private long[] byId = null; // (id << 32 | record) in id order, null while ids ascend in record order
+    final List<String> messages = new ArrayList<>(); // Skipped-entry messages from building the index
+    final MetricsRegistry metrics = MetricsRegistry.global();
+
+    /**
+     * Get the number of records
+     *
+     * @return Record count
+     */
+    abstract int size();
+
+    /**
+     * Get the id of a record without decoding the rest
+     *
+     * @param record Record index
+     * @return Photo id
+     */
+    abstract int id(int record);
+
+    /**
+     * Decode one record, bypassing the cache
+     *
+     * @param record Record index
+     * @return Newly decoded photo
+     * @throws UncheckedIOException If the snapshot cannot be read
+     */
+    abstract Photo decode(int record);
+
+    /**
+     * Open a text snapshot, reading its index or building it if it is missing or stale
+     *
+     * @param file      Text snapshot file
+     * @param indexFile Index file next to the snapshot
+     * @return Lazy view of the snapshot
+     * @throws IOException If the snapshot cannot be read or holds a duplicate id
+     */
+    static LazySnapshot openText(File file, File indexFile) throws IOException {
+        TextSnapshot snapshot = new TextSnapshot(file, indexFile);
+        try {
+            snapshot.indexIds();
+            return snapshot;
+        } catch (IOException | RuntimeException e) {
+            snapshot.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open a binary snapshot
+     * The checksum is not verified here, as that would read the whole file
+     *
+     * @param file Binary snapshot file
+     * @return Lazy view of the snapshot
+     * @throws IOException If the snapshot cannot be mapped or holds a duplicate id
+     */
+    static LazySnapshot openBinary(File file) throws IOException {
+        BinarySnapshot snapshot = new BinarySnapshot(BinarySnapshotFormat.open(file), file.getName());
+        try {
+            snapshot.indexIds();
+            return snapshot;
+        } catch (IOException | RuntimeException e) {
+            snapshot.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Load a snapshot into a columnar table
+     * Works for every format, as it goes through the format's full loader
+     *
+     * @param format Format of the snapshot file
+     * @param file   Snapshot file
+     * @return Lazy view serving the photos from the table
+     * @throws IOException If the snapshot cannot be read or holds a duplicate id
+     */
+    static LazySnapshot openTable(SnapshotFormat format, File file) throws IOException {
+        PhotoLoader.Result result = format.load(file);
+        PhotoTable table = new PhotoTable();
+        for (Photo p : result.photos) {
+            table.add(p);
+        }
+        table.trimToSize();
+        TableSnapshot snapshot = new TableSnapshot(table);
+        snapshot.messages.addAll(result.messages);
+        snapshot.metrics.read(file.getName(), result.bytes);
+        snapshot.indexIds();
+        return snapshot;
+    }
+
+    /**
+     * Open a snapshot as an off-heap table
+     * Maps the store file if it was written for the current snapshot; otherwise
+     * loads the snapshot with the format's full loader, copies it off the heap
+     * and saves the store for the next start
+     *
+     * @param format    Format of the snapshot file
+     * @param file      Snapshot file
+     * @param storeFile Store file next to the snapshot
+     * @return Lazy view serving the photos from the table
+     * @throws IOException If the snapshot cannot be read or holds a duplicate id
+     */
+    static LazySnapshot openOffHeap(SnapshotFormat format, File file, File storeFile) throws IOException {
+        OffHeapPhotoTable table = OffHeapPhotoTable.map(storeFile, file);
+        if (table != null) {
+            OffHeapSnapshot snapshot = new OffHeapSnapshot(table);
+            snapshot.metrics.read(storeFile.getName(), table.bytes());
+            snapshot.indexIds();
+            return snapshot;
+        }
+
+        long length = file.length();
+        long modified = file.lastModified();
+        PhotoLoader.Result result = format.load(file);
+        table = OffHeapPhotoTable.allocate(result.photos, length, modified);
+        OffHeapSnapshot snapshot = new OffHeapSnapshot(table);
+        snapshot.messages.addAll(result.messages);
+        snapshot.metrics.read(file.getName(), result.bytes);
+        snapshot.indexIds(); // Before saving, so a store with a duplicate id is never written
+        try {
+            table.save(storeFile, new File(storeFile.getPath() + ".tmp"));
+            snapshot.metrics.written(storeFile.getName(), table.bytes());
+        } catch (IOException e) {
+            snapshot.messages.add("Cannot save " + storeFile.getName() + " (" + e.getMessage() + "); the next start loads the snapshot again.");
+        }
+        return snapshot;
+    }
+
+    /**
+     * Get a record through the cache
+     * Cached photos are shared between callers and must not be changed
+     *
+     * @param record Record index
+     * @return Decoded photo
+     */
+    Photo get(int record) {
+        synchronized (cache) {
+            Photo p = cache.get(record);
+            if (p != null) {
+                return p;
+            }
+        }
+        Photo p = decode(record); // Outside the lock, so readers decode in parallel
+        synchronized (cache) {
+            Photo raced = cache.putIfAbsent(record, p);
+            return raced != null ? raced : p;
+        }
+    }
+
+    /**
+     * Look up a photo by id
+     *
+     * @param id Photo id
+     * @return The photo, or null if there is none
+     */
+    Photo findById(int id) {
+        int record = recordOf(id);
+        return record < 0 ? null : get(record);
+    }
+
+    /**
+     * Get a lookup of the first photo with a name, ignoring case
+     * Only used for old collage lines without ids. The first call reads the name
+     * of every record once into an index held by the lookup; later calls are
+     * answered from it, so resolving many members costs one pass over the file
+     *
+     * @return Lookup returning the photo, or null if there is none
+     */
+    Function<String, Photo> nameLookup() {
+        Map<String, Integer> records = new HashMap<>();
+        return name -> {
+            if (records.isEmpty()) {
+                for (int i = 0; i < size(); i++) {
+                    records.putIfAbsent(name(i).toLowerCase(), i);
+                }
+            }
+            Integer record = records.get(name.toLowerCase());
+            return record == null ? null : decode(record); // Bypasses the cache, like the full load
+        };
+    }
+
+    /**
+     * Get the name of a record
+     * Decodes the whole record unless a subclass can read the name alone
+     *
+     * @param record Record index
+     * @return Photo name
+     */
+    String name(int record) {
+        return decode(record).name;
+    }
+
+    /**
+     * Get all records as a list in file order
+     *
+     * @return Read-only random-access list decoding through the cache
+     */
+    List<Photo> asList() {
+        return new LazyList();
+    }
+
+    /**
+     * Get the number of decoded photos held by the cache
+     *
+     * @return Cached photos
+     */
+    int cached() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Prepare lookups by id
+     * Nothing is built when ids ascend in record order
+     *
+     * @throws IOException If two records share an id
+     */
+    void indexIds() throws IOException {
+        int count = size();
+        boolean ascending = true;
+        for (int i = 1; i < count && ascending; i++) {
+            ascending = id(i - 1) < id(i);
+        }
+        if (ascending) {
+            return;
+        }
+
+        long[] pairs = new long[count];
+        for (int i = 0; i < count; i++) {
+            pairs[i] = ((long) id(i) << 32) | i;
+        }
+        Arrays.sort(pairs);
+        for (int i = 1; i < count; i++) {
+            if ((int) (pairs[i - 1] >> 32) == (int) (pairs[i] >> 32)) {
+                throw new IOException("duplicate id " + (int) (pairs[i] >> 32));
+            }
+        }
+        byId = pairs;
+    }
+
+    /**
+     * Find the record holding an id
+     *
+     * @param id Photo id
+     * @return Record index, or -1 if there is none
+     */
+    private int recordOf(int id) {
+        int lo = 0;
+        int hi = size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int midId = byId == null ? id(mid) : (int) (byId[mid] >> 32);
+            if (midId < id) {
+                lo = mid + 1;
+            } else if (midId > id) {
+                hi = mid - 1;
+            } else {
+                return byId == null ? mid : (int) byId[mid];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * LazyList class presenting the records as a list
+     */
+    private final class LazyList extends AbstractList<Photo> implements RandomAccess {
+        @Override
+        public Photo get(int index) {
+            return LazySnapshot.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return LazySnapshot.this.size();
+        }
+    }
+
+    /**
+     * TableSnapshot class serving the records from a PhotoTable
+     */
+    private static final class TableSnapshot extends LazySnapshot {
+        private final PhotoTable table;
+
+        /**
+         * Wrap a filled table
+         *
+         * @param table Table holding the photos in snapshot order
+         */
+        private TableSnapshot(PhotoTable table) {
+            this.table = table;
+        }
+
+        @Override
+        int size() {
+            return table.size();
+        }
+
+        @Override
+        int id(int record) {
+            return table.id(record);
+        }
+
+        @Override
+        Photo decode(int record) {
+            return table.get(record);
+        }
+
+        @Override
+        String name(int record) {
+            return table.name(record);
+        }
+
+        @Override
+        public void close() {
+            // Nothing is open; the table is dropped with the snapshot
+        }
+    }
+
+    /**
+     * OffHeapSnapshot class serving the records from an OffHeapPhotoTable
+     * Records are read through PhotoView flyweights; only returned photos are built
+     */
+    private static final class OffHeapSnapshot extends LazySnapshot {
+        private final OffHeapPhotoTable table;
+
+        /**
+         * Wrap a filled table
+         *
+         * @param table Table holding the photos in snapshot order
+         */
+        private OffHeapSnapshot(OffHeapPhotoTable table) {
+            this.table = table;
+        }
+
+        @Override
+        int size() {
+            return table.size();
+        }
+
+        @Override
+        int id(int record) {
+            return table.id(record);
+        }
+
+        @Override
+        Photo decode(int record) {
+            return table.get(record);
+        }
+
+        /**
+         * Build a record from a view, bypassing the cache
+         * The table already holds every record in memory, so lookups by id and
+         * pages read the fields in place and keep no decoded photos on the heap
+         *
+         * @param record Record index
+         * @return New photo detached from the table
+         */
+        @Override
+        Photo get(int record) {
+            return table.view().moveTo(record).toPhoto();
+        }
+
+        @Override
+        String name(int record) {
+            return table.view().moveTo(record).name(); // Only the name leaves the table
+        }
+
+        @Override
+        public void close() {
+            // The memory is released once the table is unreachable
+        }
+    }
+
+    /**
+     * TextSnapshot class reading single lines of Photos.txt by offset
+     */
+    private static final class TextSnapshot extends LazySnapshot {
+        private final File file;
+        private final FileChannel channel;
+        private final IntBuffer ids;
+        private final LongBuffer offsets;
+
+        /**
+         * Open the snapshot and map or build its index
+         *
+         * @param file      Text snapshot file
+         * @param indexFile Index file next to the snapshot
+         * @throws IOException If the snapshot cannot be read
+         */
+        private TextSnapshot(File file, File indexFile) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            try {
+                ByteBuffer index = mapIndex(indexFile);
+                if (index == null) {
+                    index = buildIndex(indexFile);
+                }
+                int count = index.getInt(8);
+                offsets = index.slice(INDEX_HEADER_SIZE, count * 8).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+                ids = index.slice(INDEX_HEADER_SIZE + count * 8, count * 4).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        @Override
+        int size() {
+            return ids.limit();
+        }
+
+        @Override
+        int id(int record) {
+            return ids.get(record);
+        }
+
+        @Override
+        Photo decode(int record) {
+            try {
+                long pos = offsets.get(record);
+                ByteBuffer line = ByteBuffer.allocate(256);
+                int len = 0;
+                while (true) {
+                    if (!line.hasRemaining()) {
+                        line = ByteBuffer.allocate(line.capacity() * 2).put(line.flip());
+                    }
+                    int read = channel.read(line, pos + line.position());
+                    int end = line.position();
+                    while (len < end && line.get(len) != '\n') {
+                        len++;
+                    }
+                    if (len < end || read < 0) {
+                        break;
+                    }
+                }
+                metrics.read(file.getName(), len + 1);
+                if (len > 0 && line.get(len - 1) == '\r') {
+                    len--;
+                }
+                return PhotoLoader.parsePhoto(line.array(), len, new int[PhotoLoader.FIELD_COUNT - 1]);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error reading " + file.getName() + ": " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        /**
+         * Map an index file written for the current snapshot
+         *
+         * @param indexFile Index file
+         * @return Mapped index, or null if it is missing, damaged or stale
+         */
+        private ByteBuffer mapIndex(File indexFile) {
+            if (!indexFile.exists()) {
+                return null;
+            }
+            try (FileChannel in = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+                long size = in.size();
+                if (size < INDEX_HEADER_SIZE || size > Integer.MAX_VALUE) {
+                    return null;
+                }
+                ByteBuffer index = in.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+                boolean current = index.getInt(0) == INDEX_MAGIC && index.getInt(4) == INDEX_VERSION
+                        && size == INDEX_HEADER_SIZE + 12L * index.getInt(8)
+                        && index.getLong(16) == file.length() && index.getLong(24) == file.lastModified();
+                if (current) {
+                    metrics.read(indexFile.getName(), size);
+                }
+                return current ? index : null; // The mapping outlives the channel
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Scan the snapshot for line offsets and ids and save them as an index file
+         * Lines the full loader would skip are left out and reported in messages
+         *
+         * @param indexFile Index file to write
+         * @return Index in the Photos.idx layout
+         * @throws IOException If the snapshot cannot be read
+         */
+        private ByteBuffer buildIndex(File indexFile) throws IOException {
+            long length = file.length();
+            long modified = file.lastModified();
+            long[] lineOffsets = new long[1024];
+            int[] lineIds = new int[1024];
+            int count = 0;
+
+            byte[] line = new byte[256]; // Reused line buffer, grown on demand
+            int[] separators = new int[PhotoLoader.FIELD_COUNT - 1];
+            byte[] block = new byte[1 << 16];
+            try (InputStream in = new FileInputStream(file)) {
+                long blockStart = 0;
+                long lineStart = 0;
+                int len = 0;
+                int read;
+                while ((read = in.read(block)) >= 0) {
+                    for (int i = 0; i < read; i++) {
+                        if (block[i] != '\n') {
+                            if (len == line.length) {
+                                line = Arrays.copyOf(line, line.length * 2);
+                            }
+                            line[len++] = block[i];
+                            continue;
+                        }
+                        if (count == lineIds.length) {
+                            lineIds = Arrays.copyOf(lineIds, count * 2);
+                            lineOffsets = Arrays.copyOf(lineOffsets, count * 2);
+                        }
+                        if (indexLine(line, len, separators, lineIds, count)) {
+                            lineOffsets[count++] = lineStart;
+                        }
+                        lineStart = blockStart + i + 1;
+                        len = 0;
+                    }
+                    blockStart += read;
+                }
+                if (len > 0) { // Last line without a line ending
+                    if (count == lineIds.length) {
+                        lineIds = Arrays.copyOf(lineIds, count + 1);
+                        lineOffsets = Arrays.copyOf(lineOffsets, count + 1);
+                    }
+                    if (indexLine(line, len, separators, lineIds, count)) {
+                        lineOffsets[count++] = lineStart;
+                    }
+                }
+            }
+            metrics.read(file.getName(), length);
+
+            ByteBuffer index = ByteBuffer.allocate(INDEX_HEADER_SIZE + 12 * count).order(ByteOrder.LITTLE_ENDIAN);
+            index.putInt(0, INDEX_MAGIC);
+            index.putInt(4, INDEX_VERSION);
+            index.putInt(8, count);
+            index.putLong(16, length);
+            index.putLong(24, modified);
+            for (int i = 0; i < count; i++) {
+                index.putLong(INDEX_HEADER_SIZE + i * 8, lineOffsets[i]);
+                index.putInt(INDEX_HEADER_SIZE + count * 8 + i * 4, lineIds[i]);
+            }
+            writeIndex(indexFile, index);
+            return index;
+        }
+
+        /**
+         * Parse the id of one line, or record why the line is skipped
+         *
+         * @param line       Line bytes, line ending excluded except for a trailing \r
+         * @param len        Number of valid bytes in the line
+         * @param separators Reusable array receiving the separator positions
+         * @param lineIds    Array receiving the id
+         * @param count      Position in lineIds to fill
+         * @return true if the line holds a photo, false if it is skipped
+         */
+        private boolean indexLine(byte[] line, int len, int[] separators, int[] lineIds, int count) {
+            int end = len > 0 && line[len - 1] == '\r' ? len - 1 : len;
+            try {
+                lineIds[count] = PhotoLoader.parseId(line, end, separators);
+                return true;
+            } catch (NumberFormatException e) {
+                messages.add("Skipping invalid entry in " + file.getName() + ": "
+                        + new String(line, 0, end, StandardCharsets.UTF_8));
+                return false;
+            }
+        }
+
+        /**
+         * Save an index file through a tmp file and an atomic move
+         * A failure only costs a rebuild on the next start
+         *
+         * @param indexFile Index file to write
+         * @param index     Index contents
+         */
+        private void writeIndex(File indexFile, ByteBuffer index) {
+            File tmp = new File(indexFile.getPath() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                out.write(index.array());
+            } catch (IOException e) {
+                System.out.println("Error writing " + indexFile.getName() + ": " + e.getMessage());
+                return;
+            }
+            try {
+                Files.move(tmp.toPath(), indexFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                metrics.written(indexFile.getName(), index.capacity());
+            } catch (IOException e) {
+                System.out.println("Error writing " + indexFile.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * BinarySnapshot class decoding records of Photos.bin through its mapped reader
+     */
+    private static final class BinarySnapshot extends LazySnapshot {
+        private final BinarySnapshotFormat.Reader reader;
+        private final String fileName;
+
+        /**
+         * Wrap an open reader
+         *
+         * @param reader   Reader over the mapped snapshot
+         * @param fileName Name of the snapshot file, for the metrics
+         */
+        private BinarySnapshot(BinarySnapshotFormat.Reader reader, String fileName) {
+            this.reader = reader;
+            this.fileName = fileName;
+        }
+
+        @Override
+        int size() {
+            return reader.size();
+        }
+
+        @Override
+        int id(int record) {
+            return reader.id(record);
+        }
+
+        @Override
+        Photo decode(int record) {
+            Photo p = reader.get(record);
+            metrics.read(fileName, 36 + p.name.length()); // Column values touched plus the name, exact for ASCII names
+            return p;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
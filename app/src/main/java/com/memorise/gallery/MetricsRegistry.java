@@ -0,0 +1,193 @@
+package com.memorise.gallery;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * MetricsRegistry class collecting operation latencies and data file traffic
+ * One process-wide registry: gallery operations record their latency under
+ * their name, and every component that reads or writes a data file adds the
+ * bytes under the file name. The registry can be dumped as text and is
+ * exposed as a platform MBean.
+ */
+class MetricsRegistry implements GalleryMetricsMXBean {
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+    private static final String OBJECT_NAME = "com.memorise.gallery:type=Metrics";
+
+    // Sorted maps keep the dump and the JMX tables in name order
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> bytesRead = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> bytesWritten = new ConcurrentSkipListMap<>();
+
+    /**
+     * Get the process-wide registry
+     *
+     * @return Registry shared by all components
+     */
+    static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Record the latency of an operation that started at the given time
+     *
+     * @param operation  Operation name, e.g. "add"
+     * @param startNanos System.nanoTime() taken when the operation started
+     */
+    void record(String operation, long startNanos) {
+        latencies.computeIfAbsent(operation, k -> new LatencyHistogram()).record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Count bytes read from a data file
+     *
+     * @param fileName Data file name
+     * @param bytes    Number of bytes
+     */
+    void read(String fileName, long bytes) {
+        bytesRead.computeIfAbsent(fileName, k -> new LongAdder()).add(bytes);
+    }
+
+    /**
+     * Count bytes written to a data file
+     *
+     * @param fileName Data file name
+     * @param bytes    Number of bytes
+     */
+    void written(String fileName, long bytes) {
+        bytesWritten.computeIfAbsent(fileName, k -> new LongAdder()).add(bytes);
+    }
+
+    /**
+     * Register the registry with the platform MBean server
+     * Does nothing if it is already registered
+     */
+    void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            System.out.println("Error registering metrics MBean: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Format all metrics as a text report
+     *
+     * @return Report with one line per operation and per data file
+     */
+    String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-14s %10s %10s %10s %10s %10s%n", "Operation", "Count", "Mean ms", "p50 ms", "p99 ms", "Max ms"));
+        for (Map.Entry<String, LatencyHistogram> e : latencies.entrySet()) {
+            LatencyHistogram h = e.getValue();
+            sb.append(String.format("%-14s %,10d %10.3f %10.3f %10.3f %10.3f%n", e.getKey(), h.count(),
+                    millis(h.meanNanos()), millis(h.percentileNanos(50)), millis(h.percentileNanos(99)), millis(h.maxNanos())));
+        }
+
+        Set<String> files = new TreeSet<>(bytesRead.keySet());
+        files.addAll(bytesWritten.keySet());
+        sb.append(String.format("%n%-22s %15s %15s%n", "Data file", "Bytes read", "Bytes written"));
+        for (String file : files) {
+            sb.append(String.format("%-22s %,15d %,15d%n", file, sum(bytesRead.get(file)), sum(bytesWritten.get(file))));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        latencies.forEach((op, h) -> counts.put(op, h.count()));
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getP50Millis() {
+        return latencyTable(h -> millis(h.percentileNanos(50)));
+    }
+
+    @Override
+    public Map<String, Double> getP99Millis() {
+        return latencyTable(h -> millis(h.percentileNanos(99)));
+    }
+
+    @Override
+    public Map<String, Double> getMaxMillis() {
+        return latencyTable(h -> millis(h.maxNanos()));
+    }
+
+    @Override
+    public Map<String, Long> getBytesRead() {
+        return byteTable(bytesRead);
+    }
+
+    @Override
+    public Map<String, Long> getBytesWritten() {
+        return byteTable(bytesWritten);
+    }
+
+    @Override
+    public String getReport() {
+        return dump();
+    }
+
+    @Override
+    public void reset() {
+        latencies.clear();
+        bytesRead.clear();
+        bytesWritten.clear();
+    }
+
+    /**
+     * Map every operation to one statistic of its histogram
+     *
+     * @param statistic Statistic to take
+     * @return Value by operation
+     */
+    private Map<String, Double> latencyTable(ToDoubleFunction<LatencyHistogram> statistic) {
+        Map<String, Double> table = new TreeMap<>();
+        latencies.forEach((op, h) -> table.put(op, statistic.applyAsDouble(h)));
+        return table;
+    }
+
+    /**
+     * Copy byte counters into a plain map
+     *
+     * @param counters Counters by file name
+     * @return Totals by file name
+     */
+    private static Map<String, Long> byteTable(Map<String, LongAdder> counters) {
+        Map<String, Long> table = new TreeMap<>();
+        counters.forEach((file, adder) -> table.put(file, adder.sum()));
+        return table;
+    }
+
+    /**
+     * Read a counter that may not exist
+     *
+     * @param adder Counter or null
+     * @return Sum, 0 for null
+     */
+    private static long sum(LongAdder adder) {
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /**
+     * Convert nanoseconds to milliseconds
+     *
+     * @param nanos Nanoseconds
+     * @return Milliseconds
+     */
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,389 @@
+package com.memorise.gallery;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * OffHeapPhotoTable class holding photos as fixed-width records outside the Java heap
+ * All data lives in one ByteBuffer: a header, one RECORD_SIZE record per photo
+ * and a string area. The buffer is either anonymous direct memory (allocate) or
+ * a read-only mapping of a store file (map), so the collector sees a handful of
+ * objects however many photos there are.
+ *
+ * The store file is written next to the snapshot together with the snapshot's
+ * length and modification time, like Photos.idx. A restart with an unchanged
+ * snapshot maps the file and is ready without parsing a single record; pages are
+ * read by the operating system as records are touched.
+ *
+ * Records are read through PhotoView flyweights, which carry only a row number
+ * and decode fields on demand; get() builds a detached Photo where the Photo API
+ * is needed. Type and folder strings are stored once and their decoded values
+ * shared. The whole store must fit one buffer (2 GB, about 40 million photos
+ * with typical names).
+ *
+ * Layout (little endian):
+ * header (HEADER_SIZE bytes): magic, version, count, string area size, snapshot length, snapshot modification time
+ * record (RECORD_SIZE bytes): id, flags, dateTimeMillis, name, type, folder, dateTime
+ * The last four are string area offsets; dateTime is -1 when the text is the
+ * canonical form of dateTimeMillis. Strings are a 2-byte length and UTF-8 bytes.
+ */
+class OffHeapPhotoTable {
+
+    static final int RECORD_SIZE = 32;
+
+    private static final int MAGIC = 0x4847504D; // "MPGH" read as little endian
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int FLAG_FAVOURITE = 1;
+    private static final int NO_STRING = -1;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int strings; // Offset of the string area
+    private final Map<Integer, String> shared = new ConcurrentHashMap<>(); // Decoded type and folder strings by offset
+
+    /**
+     * Wrap a filled buffer
+     *
+     * @param buffer Buffer holding header, records and strings, little endian
+     */
+    private OffHeapPhotoTable(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.count = buffer.getInt(8);
+        this.strings = HEADER_SIZE + count * RECORD_SIZE;
+    }
+
+    /**
+     * Copy photos into anonymous off-heap memory
+     *
+     * @param photos           Photos in snapshot order
+     * @param snapshotLength   Length of the snapshot the photos were read from
+     * @param snapshotModified Modification time of that snapshot
+     * @return Table holding the photos
+     * @throws IOException If the photos do not fit one buffer or a string is too long
+     */
+    static OffHeapPhotoTable allocate(List<Photo> photos, long snapshotLength, long snapshotModified) throws IOException {
+        // The first pass only sizes the string area; the second writes it in the same order
+        long stringBytes = new Writer(null).addAll(photos);
+        long total = HEADER_SIZE + (long) photos.size() * RECORD_SIZE + stringBytes;
+        if (total > Integer.MAX_VALUE) {
+            throw new IOException(photos.size() + " photos need " + total + " bytes, more than one buffer holds");
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) total).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, photos.size());
+        buffer.putInt(12, (int) stringBytes);
+        buffer.putLong(16, snapshotLength);
+        buffer.putLong(24, snapshotModified);
+        new Writer(buffer.slice(HEADER_SIZE, (int) total - HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)).addAll(photos);
+        return new OffHeapPhotoTable(buffer);
+    }
+
+    /**
+     * Map a store file written for the current snapshot
+     *
+     * @param storeFile Store file
+     * @param snapshot  Snapshot the store must have been written for
+     * @return Table backed by the mapping, or null if the file is missing, damaged or stale
+     */
+    static OffHeapPhotoTable map(File storeFile, File snapshot) {
+        if (!storeFile.exists()) {
+            return null;
+        }
+        try (FileChannel in = FileChannel.open(storeFile.toPath(), StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            ByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+            boolean current = buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION
+                    && size == HEADER_SIZE + (long) buffer.getInt(8) * RECORD_SIZE + buffer.getInt(12)
+                    && buffer.getLong(16) == snapshot.length() && buffer.getLong(24) == snapshot.lastModified();
+            return current ? new OffHeapPhotoTable(buffer) : null; // The mapping outlives the channel
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Write the table to a store file so the next start can map it
+     * Written to a temporary file first and moved into place in one step
+     *
+     * @param storeFile Store file
+     * @param tmpFile   Temporary file next to it
+     * @throws IOException If the file cannot be written
+     */
+    void save(File storeFile, File tmpFile) throws IOException {
+        try (FileChannel out = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer contents = buffer.duplicate().clear();
+            while (contents.hasRemaining()) {
+                out.write(contents);
+            }
+            out.force(true);
+        }
+        Files.move(tmpFile.toPath(), storeFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Get the number of records
+     *
+     * @return Number of photos in the table
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Get the number of bytes the table occupies outside the heap
+     *
+     * @return Buffer capacity
+     */
+    int bytes() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Get the id of a record
+     *
+     * @param row Record index
+     * @return Photo id
+     */
+    int id(int row) {
+        return buffer.getInt(HEADER_SIZE + row * RECORD_SIZE);
+    }
+
+    /**
+     * Get a flyweight positioned on the first record
+     * Views are cheap and not thread-safe; use one per thread
+     *
+     * @return New view
+     */
+    PhotoView view() {
+        return new PhotoView();
+    }
+
+    /**
+     * Build a Photo from a record
+     *
+     * @param row Record index
+     * @return New photo detached from the table
+     */
+    Photo get(int row) {
+        return view().moveTo(row).toPhoto();
+    }
+
+    /**
+     * Decode a string of the string area
+     *
+     * @param offset Offset inside the string area
+     * @return The string
+     */
+    private String string(int offset) {
+        int at = strings + offset;
+        int length = Short.toUnsignedInt(buffer.getShort(at));
+        byte[] bytes = new byte[length];
+        buffer.get(at + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decode a string held once for many records
+     *
+     * @param offset Offset inside the string area
+     * @return The string, shared by all records referring to it
+     */
+    private String sharedString(int offset) {
+        return shared.computeIfAbsent(offset, this::string);
+    }
+
+    /**
+     * PhotoView class reading the fields of one record in place
+     * Mirrors the fields and accessors of Photo; move it with moveTo
+     */
+    final class PhotoView {
+        private int base = HEADER_SIZE; // Offset of the current record
+
+        /**
+         * Position the view on a record
+         *
+         * @param row Record index
+         * @return This view
+         */
+        PhotoView moveTo(int row) {
+            Objects.checkIndex(row, count);
+            base = HEADER_SIZE + row * RECORD_SIZE;
+            return this;
+        }
+
+        /**
+         * Get the photo id
+         *
+         * @return Photo id
+         */
+        int id() {
+            return buffer.getInt(base);
+        }
+
+        /**
+         * Check whether the photo is a favourite
+         *
+         * @return true if the photo is marked as favourite
+         */
+        boolean isFavourite() {
+            return (buffer.getInt(base + 4) & FLAG_FAVOURITE) != 0;
+        }
+
+        /**
+         * Get the parsed date
+         *
+         * @return Epoch millis, or DateTimes.UNKNOWN
+         */
+        long dateTimeMillis() {
+            return buffer.getLong(base + 8);
+        }
+
+        /**
+         * Get the photo name
+         *
+         * @return Photo name
+         */
+        String name() {
+            return string(buffer.getInt(base + 16));
+        }
+
+        /**
+         * Get the file type
+         *
+         * @return Photo type; shared by all records of that type
+         */
+        String type() {
+            return sharedString(buffer.getInt(base + 20));
+        }
+
+        /**
+         * Get the folder
+         *
+         * @return Folder; shared by all records in that folder
+         */
+        String folder() {
+            return sharedString(buffer.getInt(base + 24));
+        }
+
+        /**
+         * Get the date text as it was stored
+         *
+         * @return dateTime text
+         */
+        String dateTime() {
+            int offset = buffer.getInt(base + 28);
+            return offset == NO_STRING ? DateTimes.formatCanonical(dateTimeMillis()) : string(offset);
+        }
+
+        /**
+         * Build a detached Photo with the fields of the current record
+         *
+         * @return New photo
+         */
+        Photo toPhoto() {
+            return new Photo(id(), name(), type(), folder(), dateTime(), isFavourite());
+        }
+    }
+
+    /**
+     * Writer class writing records and their strings
+     * Without a buffer it only adds up the string area size
+     */
+    private static final class Writer {
+        private final ByteBuffer out; // Records followed by the string area, or null when sizing
+        private final Map<String, Integer> sharedOffsets = new HashMap<>(); // Type and folder strings written so far
+        private int recordsSize;
+        private long size = 0;
+
+        /**
+         * Create a writer
+         *
+         * @param out Buffer starting at the first record, or null to only size the strings
+         */
+        Writer(ByteBuffer out) {
+            this.out = out;
+        }
+
+        /**
+         * Write every photo as one record
+         *
+         * @param photos Photos in snapshot order
+         * @return Size of the string area in bytes
+         * @throws IOException If a string is longer than a record can refer to
+         */
+        long addAll(List<Photo> photos) throws IOException {
+            recordsSize = photos.size() * RECORD_SIZE;
+            int at = 0;
+            for (Photo p : photos) {
+                int name = add(p.name);
+                int type = addShared(p.type);
+                int folder = addShared(p.folder);
+                boolean canonical = p.dateTime.equals(DateTimes.formatCanonical(p.dateTimeMillis));
+                int dateTime = canonical ? NO_STRING : add(p.dateTime);
+                if (out != null) {
+                    out.putInt(at, p.id);
+                    out.putInt(at + 4, p.isFavourite ? FLAG_FAVOURITE : 0);
+                    out.putLong(at + 8, p.dateTimeMillis);
+                    out.putInt(at + 16, name);
+                    out.putInt(at + 20, type);
+                    out.putInt(at + 24, folder);
+                    out.putInt(at + 28, dateTime);
+                }
+                at += RECORD_SIZE;
+            }
+            return size;
+        }
+
+        /**
+         * Add a string stored once for all records using it
+         *
+         * @param value String to add
+         * @return Its offset in the string area
+         * @throws IOException If the string is too long
+         */
+        private int addShared(String value) throws IOException {
+            Integer offset = sharedOffsets.get(value);
+            if (offset == null) {
+                offset = add(value);
+                sharedOffsets.put(value, offset);
+            }
+            return offset;
+        }
+
+        /**
+         * Append a string
+         *
+         * @param value String to add
+         * @return Its offset in the string area
+         * @throws IOException If the string is too long or the area outgrows a buffer
+         */
+        private int add(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > 0xFFFF) {
+                throw new IOException("a string of " + bytes.length + " bytes is too long for the off-heap store");
+            }
+            if (size + 2 + bytes.length > Integer.MAX_VALUE) {
+                throw new IOException("the strings need more than one buffer holds");
+            }
+            int offset = (int) size;
+            if (out != null) {
+                out.putShort(recordsSize + offset, (short) bytes.length);
+                out.put(recordsSize + offset + 2, bytes);
+            }
+            size += 2 + bytes.length;
+            return offset;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.memorise.gallery;
+
+/**
+ * Photo class representing image entries in the gallery
+ * Implemented as a node in a doubly linked list owned by PhotoStore
+ */
+class Photo {
+    int id;
+    String name;
+    String type;
+    String folder;
+    String dateTime;
+    long dateTimeMillis; // dateTime as epoch millis, DateTimes.UNKNOWN if unparseable
+    boolean isFavourite;
+    Photo next; // Reference to next photo in linked list
+    Photo prev; // Reference to previous photo in linked list
+
+    /**
+     * Constructor for creating a photo with all attributes
+     *
+     * @param id          Unique identifier for the photo
+     * @param name        Name/title of the photo
+     * @param type        File type (jpg, png)
+     * @param folder      Storage folder path
+     * @param dateTime    Date and time when photo was added
+     * @param isFavourite Whether photo is marked as favorite
+     */
+    public Photo(int id, String name, String type, String folder, String dateTime, boolean isFavourite) {
+        this.id = id;
+        this.name = name;
+        this.type = type;
+        this.folder = folder;
+        this.dateTime = dateTime;
+        this.dateTimeMillis = DateTimes.parse(dateTime);
+        this.isFavourite = isFavourite;
+        this.next = null;
+        this.prev = null;
+    }
+
+    /**
+     * Get photo title/name
+     *
+     * @return The photo's title/name
+     */
+    public String getTitle() {
+        return name;
+    }
+
+    /**
+     * Set photo title/name
+     *
+     * @param title New title for the photo
+     */
+    public void setTitle(String title) {
+        this.name = title;
+    }
+
+    /**
+     * Set photo date
+     *
+     * @param date New date for the photo
+     */
+    public void setDate(String date) {
+        this.dateTime = date;
+        this.dateTimeMillis = DateTimes.parse(date);
+    }
+
+    /**
+     * Set photo type
+     *
+     * @param type New type for the photo
+     */
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    /**
+     * Create a detached copy of the photo without list links
+     *
+     * @return Copy with the same field values
+     */
+    public Photo copy() {
+        return new Photo(id, name, type, folder, dateTime, isFavourite);
+    }
+
+    /**
+     * Format the photo as one Photos.txt record
+     *
+     * @return Record in the id;name;type;folder;dateTime;isFavourite format
+     */
+    public String toRecord() {
+        return id + ";" + name + ";" + type + ";" + folder + ";" + dateTime + ";" + isFavourite;
+    }
+}
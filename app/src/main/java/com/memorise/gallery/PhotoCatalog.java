@@ -0,0 +1,688 @@
+package com.memorise.gallery;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * PhotoCatalog class publishing immutable, versioned snapshots of the photo list
+ * Keeps a detached copy of every stored photo in list order, split into chunks of
+ * 256 slots. A change copies only the chunk it touches and the chunk table, so
+ * consecutive versions share every other chunk. Readers take the current version
+ * with one volatile read and iterate it without a lock; writers, which hold the
+ * gallery's write lock, collect their changes and publish them as one version.
+ * A deleted photo leaves an empty slot; the slots are packed once a quarter of
+ * them are empty.
+ *
+ * Each version also carries posting lists: the slots of the favourite photos
+ * and the slots per type and per folder (both ignoring case), kept as
+ * SlotBitmaps that are updated with every change and copied on write like the
+ * chunks. Favourites or "all png in folder X" are then read in O(matches)
+ * instead of scanning the whole list.
+ *
+ * Listings never copy the catalog. List order is a random-access view over
+ * the chunks, using the number of photos per chunk. The sorted orders are
+ * carried forward: a version keeps the sorted array of an earlier version
+ * together with the photo copies that left and entered since, and builds its
+ * own array on first use by splicing those few changes in with binary search
+ * and bulk copies. Only after more than MAX_CARRIED_CHANGES changes is an
+ * order sorted from scratch.
+ */
+class PhotoCatalog implements PhotoStore.Listener {
+    private static final int CHUNK_BITS = 8;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int MIN_PACK_SLOTS = 1024; // Small catalogs are not worth packing
+    private static final int MAX_CARRIED_CHANGES = 4096; // Beyond this a sorted order is rebuilt rather than patched
+    private static final SortedPhotoViews.Order[] ORDERS = SortedPhotoViews.Order.values();
+
+    /**
+     * Changes class holding the photo copies that left and entered the catalog in one version
+     * Linked to the changes of earlier versions back to the version a sorted array was built for
+     */
+    private static final class Changes {
+        final Photo[] removed; // Copies of the previous version that are gone
+        final Photo[] added; // Copies that are new in this version
+        final Changes previous; // Changes of the versions before, or null
+        final int count; // Removed and added copies along the whole chain
+
+        /**
+         * Link the changes of a version to those before it
+         *
+         * @param removed  Copies that left
+         * @param added    Copies that entered
+         * @param previous Earlier changes, or null
+         */
+        Changes(Photo[] removed, Photo[] added, Changes previous) {
+            this.removed = removed;
+            this.added = added;
+            this.previous = previous;
+            this.count = removed.length + added.length + (previous == null ? 0 : previous.count);
+        }
+    }
+
+    /**
+     * Version class holding one immutable state of the catalog
+     * Photos are detached copies that are never changed after publication
+     */
+    static final class Version implements Iterable<Photo> {
+        final long number;
+        private final Photo[][] chunks;
+        private final int[] counts; // Photos per chunk
+        private final int slots; // Slots in use, empty ones included
+        private final int size;
+        private final BitSet hiddenIds;
+        private final SlotBitmap favouriteSlots;
+        private final Map<String, SlotBitmap> typeSlots; // Lower-cased type to slots
+        private final Map<String, SlotBitmap> folderSlots; // Lower-cased folder to slots
+        private final AtomicReferenceArray<Photo[]> sorted = new AtomicReferenceArray<>(ORDERS.length); // Built on first use
+        private final Photo[][] bases; // Per order: sorted array of an earlier version, or null
+        private final Changes[] changes; // Per order: changes since that array was built
+        private volatile int[] chunkStarts; // List position of the first photo of every chunk, built on first use
+
+        /**
+         * Create a version
+         *
+         * @param number         Version number
+         * @param chunks         Chunk table; neither the table nor the chunks may change afterwards
+         * @param counts         Photos per chunk; may not change afterwards
+         * @param slots          Slots in use
+         * @param size           Number of photos
+         * @param hiddenIds      Ids of hidden photos; may not change afterwards
+         * @param favouriteSlots Slots of favourite photos; may not change afterwards
+         * @param typeSlots      Slots by type; may not change afterwards
+         * @param folderSlots    Slots by folder; may not change afterwards
+         * @param bases          Per order, the sorted array to start from, or null
+         * @param changes        Per order, the changes since that array
+         */
+        private Version(long number, Photo[][] chunks, int[] counts, int slots, int size, BitSet hiddenIds,
+                        SlotBitmap favouriteSlots, Map<String, SlotBitmap> typeSlots, Map<String, SlotBitmap> folderSlots,
+                        Photo[][] bases, Changes[] changes) {
+            this.number = number;
+            this.chunks = chunks;
+            this.counts = counts;
+            this.slots = slots;
+            this.size = size;
+            this.hiddenIds = hiddenIds;
+            this.favouriteSlots = favouriteSlots;
+            this.typeSlots = typeSlots;
+            this.folderSlots = folderSlots;
+            this.bases = bases;
+            this.changes = changes;
+        }
+
+        /**
+         * Get the number of photos
+         *
+         * @return Number of photos, hidden ones included
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Check whether a photo was hidden in this version
+         *
+         * @param p Photo of this version
+         * @return true if the photo is hidden
+         */
+        boolean isHidden(Photo p) {
+            return p.id >= 0 && hiddenIds.get(p.id);
+        }
+
+        /**
+         * Get the photos matching attribute values, in list order
+         * Walks the smallest posting list involved and checks the others, so the
+         * cost follows the number of matches rather than the number of photos
+         *
+         * @param type       Type to match ignoring case, or null for any type
+         * @param folder     Folder to match ignoring case, or null for any folder
+         * @param favourites true to match favourite photos only
+         * @return Matching photos, hidden ones included
+         */
+        List<Photo> select(String type, String folder, boolean favourites) {
+            List<SlotBitmap> lists = new ArrayList<>(3);
+            if (favourites) {
+                lists.add(favouriteSlots);
+            }
+            if (type != null) {
+                lists.add(typeSlots.get(type.toLowerCase()));
+            }
+            if (folder != null) {
+                lists.add(folderSlots.get(folder.toLowerCase()));
+            }
+            if (lists.isEmpty()) {
+                return new ArrayList<>(sorted(null));
+            }
+            if (lists.contains(null)) {
+                return new ArrayList<>(); // No photo has that value
+            }
+            lists.sort(Comparator.comparingInt(SlotBitmap::size));
+
+            SlotBitmap smallest = lists.get(0);
+            List<SlotBitmap> others = lists.subList(1, lists.size());
+            List<Photo> photos = new ArrayList<>(smallest.size());
+            smallest.forEach(slot -> {
+                for (SlotBitmap other : others) {
+                    if (!other.contains(slot)) {
+                        return;
+                    }
+                }
+                photos.add(chunks[slot >>> CHUNK_BITS][slot & CHUNK_MASK]);
+            });
+            return photos;
+        }
+
+        /**
+         * Get the photos in an order
+         * List order is a view over the chunks; a sorted order is an array built
+         * once per version from the array of an earlier version
+         *
+         * @param order Requested ordering, or null for list order
+         * @return Read-only random-access list of the photos in that order
+         */
+        List<Photo> sorted(SortedPhotoViews.Order order) {
+            if (order == null) {
+                return new ListOrder();
+            }
+            int index = order.ordinal();
+            Photo[] photos = sorted.get(index);
+            if (photos == null) {
+                Comparator<Photo> comparator = SortedPhotoViews.comparator(order);
+                photos = bases[index] == null ? null : patch(bases[index], changes[index], comparator, size);
+                if (photos == null) {
+                    photos = new Photo[size];
+                    int i = 0;
+                    for (Photo p : this) {
+                        photos[i++] = p;
+                    }
+                    Arrays.sort(photos, comparator);
+                }
+                sorted.compareAndSet(index, null, photos);
+                photos = sorted.get(index);
+            }
+            return Collections.unmodifiableList(Arrays.asList(photos));
+        }
+
+        /**
+         * Get the photo at a list position
+         *
+         * @param position Position in list order
+         * @return The photo
+         */
+        private Photo atPosition(int position) {
+            int[] starts = chunkStarts;
+            if (starts == null) {
+                starts = new int[(slots + CHUNK_MASK) >>> CHUNK_BITS];
+                for (int c = 1; c < starts.length; c++) {
+                    starts[c] = starts[c - 1] + counts[c - 1];
+                }
+                chunkStarts = starts;
+            }
+            // Last chunk starting at or before the position; it is never empty
+            int lo = 0;
+            int hi = starts.length - 1;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (starts[mid] <= position) {
+                    lo = mid;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            Photo[] chunk = chunks[lo];
+            int offset = position - starts[lo];
+            if (counts[lo] == CHUNK_SIZE) {
+                return chunk[offset];
+            }
+            for (Photo p : chunk) {
+                if (p != null && offset-- == 0) {
+                    return p;
+                }
+            }
+            throw new IllegalStateException("Chunk " + lo + " holds fewer photos than counted");
+        }
+
+        /**
+         * ListOrder class presenting the photos of the version in list order without copying them
+         */
+        private final class ListOrder extends AbstractList<Photo> implements RandomAccess {
+            @Override
+            public Photo get(int index) {
+                Objects.checkIndex(index, size);
+                return atPosition(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Photo> iterator() {
+                return Version.this.iterator();
+            }
+        }
+
+        /**
+         * Iterate the photos in list order
+         *
+         * @return Iterator skipping empty slots
+         */
+        @Override
+        public Iterator<Photo> iterator() {
+            return new Iterator<Photo>() {
+                private int slot = advance(0);
+
+                @Override
+                public boolean hasNext() {
+                    return slot < slots;
+                }
+
+                @Override
+                public Photo next() {
+                    if (slot >= slots) {
+                        throw new NoSuchElementException();
+                    }
+                    Photo p = chunks[slot >>> CHUNK_BITS][slot & CHUNK_MASK];
+                    slot = advance(slot + 1);
+                    return p;
+                }
+
+                /**
+                 * Find the next slot holding a photo
+                 *
+                 * @param from First slot to check
+                 * @return Slot index, or slots if there is none
+                 */
+                private int advance(int from) {
+                    int s = from;
+                    while (s < slots && chunks[s >>> CHUNK_BITS][s & CHUNK_MASK] == null) {
+                        s++;
+                    }
+                    return s;
+                }
+            };
+        }
+    }
+
+    private final HiddenPhotoIndex hiddenPhotos;
+    private volatile Version current = new Version(0, new Photo[0][], new int[0], 0, 0, new BitSet(),
+            new SlotBitmap(0), Collections.emptyMap(), Collections.emptyMap(),
+            new Photo[ORDERS.length][], new Changes[ORDERS.length]);
+
+    // Writer state, guarded by the gallery's write lock
+    private Photo[][] chunks = new Photo[0][];
+    private int[] counts = new int[0]; // Photos per chunk; shared with the current version like the table
+    private boolean tableShared = false; // Table belongs to the current version
+    private final BitSet ownChunks = new BitSet(); // Chunks copied since the last publish
+    private final Map<Integer, Integer> slotById = new HashMap<>();
+    private int slots = 0;
+    private int size = 0;
+    private boolean changed = false;
+    private Integer updatingSlot = null; // Slot of the photo between beforeUpdate and afterUpdate
+    private long hiddenModCount = -1;
+    private BitSet hiddenIds = new BitSet();
+    private SlotBitmap favouriteSlots = new SlotBitmap(0);
+    private Map<String, SlotBitmap> typeSlots = new HashMap<>();
+    private Map<String, SlotBitmap> folderSlots = new HashMap<>();
+    private boolean postingsShared = false; // Posting maps belong to the current version
+    private final List<Photo> removedCopies = new ArrayList<>(); // Copies of the current version replaced since
+    private final Set<Photo> addedCopies = Collections.newSetFromMap(new IdentityHashMap<>()); // Copies new since
+    private boolean tooManyChanges = false; // More changes than worth carrying since the last publish
+
+    /**
+     * Create the catalog over a store and subscribe to its changes
+     *
+     * @param store        Store whose photos are published
+     * @param hiddenPhotos Hidden state captured with every version
+     */
+    PhotoCatalog(PhotoStore store, HiddenPhotoIndex hiddenPhotos) {
+        this.hiddenPhotos = hiddenPhotos;
+        for (Photo p : store) {
+            photoAdded(p);
+        }
+        store.addListener(this);
+        publish();
+    }
+
+    /**
+     * Get the latest published version
+     *
+     * @return Current version; never changes
+     */
+    Version current() {
+        return current;
+    }
+
+    /**
+     * Get the copy of a stored photo in the current version
+     * Must be called under the gallery's lock, after the writer published its changes
+     *
+     * @param p Stored photo, or null
+     * @return The published copy, or null if the photo is not in the catalog
+     */
+    Photo published(Photo p) {
+        Integer slot = p == null ? null : slotById.get(p.id);
+        return slot == null ? null : current.chunks[slot >>> CHUNK_BITS][slot & CHUNK_MASK];
+    }
+
+    /**
+     * Publish the changes collected since the last call as a new version
+     * Must be called by the writer before it releases the write lock
+     */
+    void publish() {
+        if (hiddenPhotos.modCount() != hiddenModCount) {
+            hiddenModCount = hiddenPhotos.modCount();
+            hiddenIds = hiddenPhotos.copyOfHiddenIds();
+            changed = true;
+        }
+        if (!changed) {
+            return;
+        }
+        if (slots >= MIN_PACK_SLOTS && slots - size > slots / 4) {
+            pack();
+        }
+        Photo[][] bases = new Photo[ORDERS.length][];
+        Changes[] changes = new Changes[ORDERS.length];
+        if (!tooManyChanges) {
+            Photo[] removed = removedCopies.toArray(new Photo[0]);
+            Photo[] added = addedCopies.toArray(new Photo[0]);
+            for (int i = 0; i < ORDERS.length; i++) {
+                Photo[] built = current.sorted.get(i);
+                if (built != null) {
+                    bases[i] = built;
+                    changes[i] = new Changes(removed, added, null);
+                } else if (current.bases[i] != null
+                        && current.changes[i].count + removed.length + added.length <= MAX_CARRIED_CHANGES) {
+                    bases[i] = current.bases[i];
+                    changes[i] = new Changes(removed, added, current.changes[i]);
+                }
+            }
+        }
+        removedCopies.clear();
+        addedCopies.clear();
+        tooManyChanges = false;
+        current = new Version(current.number + 1, chunks, counts, slots, size, hiddenIds,
+                favouriteSlots, Collections.unmodifiableMap(typeSlots), Collections.unmodifiableMap(folderSlots),
+                bases, changes);
+        tableShared = true;
+        postingsShared = true;
+        ownChunks.clear();
+        changed = false;
+    }
+
+    @Override
+    public void photoAdded(Photo p) {
+        if ((slots >>> CHUNK_BITS) >= chunks.length) {
+            chunks = Arrays.copyOf(chunks, Math.max(4, chunks.length * 2));
+            counts = Arrays.copyOf(counts, chunks.length);
+            tableShared = false;
+        }
+        set(slots, p.copy());
+        slotById.put(p.id, slots);
+        slots++;
+        size++;
+    }
+
+    @Override
+    public void photoRemoved(Photo p) {
+        Integer slot = slotById.remove(p.id);
+        if (slot != null) {
+            set(slot, null);
+            size--;
+        }
+    }
+
+    @Override
+    public void beforeUpdate(Photo p) {
+        updatingSlot = slotById.remove(p.id); // The id may change
+    }
+
+    @Override
+    public void afterUpdate(Photo p) {
+        if (updatingSlot != null) {
+            set(updatingSlot, p.copy());
+            slotById.put(p.id, updatingSlot);
+            updatingSlot = null;
+        }
+    }
+
+    @Override
+    public void favouriteChanged(Photo p) {
+        Integer slot = slotById.get(p.id);
+        if (slot != null) {
+            set(slot, p.copy()); // Also moves the slot between favourite and other photos
+        }
+    }
+
+    /**
+     * Store a photo copy in a slot, copying the table and the chunk if they are shared
+     *
+     * @param slot  Slot index
+     * @param photo Photo copy, or null to empty the slot
+     */
+    private void set(int slot, Photo photo) {
+        if (tableShared) {
+            chunks = chunks.clone();
+            counts = counts.clone();
+            tableShared = false;
+        }
+        int chunk = slot >>> CHUNK_BITS;
+        if (!ownChunks.get(chunk)) {
+            chunks[chunk] = chunks[chunk] == null ? new Photo[CHUNK_SIZE] : chunks[chunk].clone();
+            ownChunks.set(chunk);
+        }
+        Photo old = chunks[chunk][slot & CHUNK_MASK];
+        post(slot, old, photo);
+        track(old, photo);
+        counts[chunk] += (photo != null ? 1 : 0) - (old != null ? 1 : 0);
+        chunks[chunk][slot & CHUNK_MASK] = photo;
+        changed = true;
+    }
+
+    /**
+     * Remember a replaced and a new photo copy for the sorted orders of the next version
+     * A copy that is replaced before it was ever published is simply forgotten
+     *
+     * @param old Copy leaving a slot, or null
+     * @param now Copy entering a slot, or null
+     */
+    private void track(Photo old, Photo now) {
+        if (tooManyChanges) {
+            return;
+        }
+        if (old != null && !addedCopies.remove(old)) {
+            removedCopies.add(old);
+        }
+        if (now != null) {
+            addedCopies.add(now);
+        }
+        if (removedCopies.size() + addedCopies.size() > MAX_CARRIED_CHANGES) {
+            tooManyChanges = true; // The next version sorts from scratch
+            removedCopies.clear();
+            addedCopies.clear();
+        }
+    }
+
+    /**
+     * Move a slot between posting lists when the photo in it changes
+     * Lists whose value stays the same are not touched, so they are not copied
+     *
+     * @param slot Slot index
+     * @param old  Photo copy leaving the slot, or null
+     * @param now  Photo copy entering the slot, or null
+     */
+    private void post(int slot, Photo old, Photo now) {
+        long generation = current.number + 1; // The version being built
+        boolean wasFavourite = old != null && old.isFavourite;
+        boolean isFavourite = now != null && now.isFavourite;
+        if (wasFavourite != isFavourite) {
+            favouriteSlots = favouriteSlots.mutable(generation);
+            if (isFavourite) {
+                favouriteSlots.add(slot);
+            } else {
+                favouriteSlots.remove(slot);
+            }
+        }
+        String oldType = old == null ? null : old.type.toLowerCase();
+        String newType = now == null ? null : now.type.toLowerCase();
+        String oldFolder = old == null ? null : old.folder.toLowerCase();
+        String newFolder = now == null ? null : now.folder.toLowerCase();
+        if (Objects.equals(oldType, newType) && Objects.equals(oldFolder, newFolder)) {
+            return;
+        }
+        if (postingsShared) {
+            typeSlots = new HashMap<>(typeSlots);
+            folderSlots = new HashMap<>(folderSlots);
+            postingsShared = false;
+        }
+        if (!Objects.equals(oldType, newType)) {
+            move(typeSlots, slot, oldType, newType, generation);
+        }
+        if (!Objects.equals(oldFolder, newFolder)) {
+            move(folderSlots, slot, oldFolder, newFolder, generation);
+        }
+    }
+
+    /**
+     * Move a slot from the posting list of one value to that of another
+     * Empty lists are dropped
+     *
+     * @param postings   Posting lists by value; owned by the writer
+     * @param slot       Slot index
+     * @param from       Value the slot leaves, or null
+     * @param to         Value the slot enters, or null
+     * @param generation Generation of the version being built
+     */
+    private static void move(Map<String, SlotBitmap> postings, int slot, String from, String to, long generation) {
+        if (from != null) {
+            SlotBitmap list = postings.get(from).mutable(generation);
+            list.remove(slot);
+            if (list.size() == 0) {
+                postings.remove(from);
+            } else {
+                postings.put(from, list);
+            }
+        }
+        if (to != null) {
+            SlotBitmap list = postings.get(to);
+            list = list == null ? new SlotBitmap(generation) : list.mutable(generation);
+            list.add(slot);
+            postings.put(to, list);
+        }
+    }
+
+    /**
+     * Apply the changes of later versions to a sorted array
+     * Copies that left are found by binary search, copies that entered are
+     * sorted and merged in; the runs in between are moved with bulk copies
+     *
+     * @param base       Sorted array of an earlier version
+     * @param changes    Changes since that version, newest first
+     * @param comparator Order of the array
+     * @param size       Number of photos in the new version
+     * @return New sorted array, or null if the changes do not fit the array
+     */
+    private static Photo[] patch(Photo[] base, Changes changes, Comparator<Photo> comparator, int size) {
+        Deque<Changes> oldestFirst = new ArrayDeque<>();
+        for (Changes c = changes; c != null; c = c.previous) {
+            oldestFirst.push(c);
+        }
+        // Net effect: a copy added and removed again in between never touches the array
+        Set<Photo> added = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Photo> removed = new ArrayList<>();
+        for (Changes c : oldestFirst) {
+            for (Photo p : c.removed) {
+                if (!added.remove(p)) {
+                    removed.add(p);
+                }
+            }
+            added.addAll(Arrays.asList(c.added));
+        }
+
+        int[] gone = new int[removed.size()];
+        for (int i = 0; i < gone.length; i++) {
+            int at = Arrays.binarySearch(base, removed.get(i), comparator);
+            if (at < 0 || base[at] != removed.get(i)) {
+                return null;
+            }
+            gone[i] = at;
+        }
+        Arrays.sort(gone);
+        Photo[] entering = added.toArray(new Photo[0]);
+        Arrays.sort(entering, comparator);
+        if (base.length - gone.length + entering.length != size) {
+            return null;
+        }
+
+        Photo[] photos = new Photo[size];
+        int from = 0; // Next position of base to copy
+        int to = 0; // Next position of photos to fill
+        int g = 0;
+        int e = 0;
+        int insertAt = e < entering.length ? insertionPoint(base, entering[e], comparator) : Integer.MAX_VALUE;
+        while (g < gone.length || e < entering.length) {
+            int next = Math.min(g < gone.length ? gone[g] : Integer.MAX_VALUE, insertAt);
+            System.arraycopy(base, from, photos, to, next - from);
+            to += next - from;
+            from = next;
+            if (insertAt <= (g < gone.length ? gone[g] : Integer.MAX_VALUE)) {
+                photos[to++] = entering[e++];
+                insertAt = e < entering.length ? insertionPoint(base, entering[e], comparator) : Integer.MAX_VALUE;
+            } else {
+                from++; // Skip the copy that left
+                g++;
+            }
+        }
+        System.arraycopy(base, from, photos, to, base.length - from);
+        return photos;
+    }
+
+    /**
+     * Find where a photo belongs in a sorted array
+     *
+     * @param sorted     Sorted array
+     * @param p          Photo to place
+     * @param comparator Order of the array
+     * @return Position of the first element sorting at or after the photo
+     */
+    private static int insertionPoint(Photo[] sorted, Photo p, Comparator<Photo> comparator) {
+        int at = Arrays.binarySearch(sorted, p, comparator);
+        return at >= 0 ? at : -at - 1;
+    }
+
+    /**
+     * Move all photos to the front so that no empty slots remain
+     * Builds a new table, so no published version is affected
+     */
+    private void pack() {
+        Photo[][] packed = new Photo[Math.max(4, (size >>> CHUNK_BITS) + 1)][];
+        int[] packedCounts = new int[packed.length];
+        int next = 0;
+        slotById.clear();
+        favouriteSlots = new SlotBitmap(current.number + 1); // Slot numbers change, so the lists are rebuilt
+        typeSlots = new HashMap<>();
+        folderSlots = new HashMap<>();
+        postingsShared = false;
+        for (int slot = 0; slot < slots; slot++) {
+            Photo p = chunks[slot >>> CHUNK_BITS][slot & CHUNK_MASK];
+            if (p == null) {
+                continue;
+            }
+            if (packed[next >>> CHUNK_BITS] == null) {
+                packed[next >>> CHUNK_BITS] = new Photo[CHUNK_SIZE];
+            }
+            packed[next >>> CHUNK_BITS][next & CHUNK_MASK] = p;
+            packedCounts[next >>> CHUNK_BITS]++;
+            slotById.put(p.id, next);
+            post(next, null, p);
+            next++;
+        }
+        chunks = packed;
+        counts = packedCounts;
+        slots = next;
+        tableShared = false;
+        ownChunks.clear();
+        ownChunks.set(0, packed.length);
+    }
+}
@@ -0,0 +1,203 @@
+package com.memorise.gallery;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * PhotoCursor class splitting an ordered result into pages
+ * A page is addressed by a resume token naming the photo the page starts after,
+ * together with its sort key and position. Resuming first checks the position;
+ * if photos were added or removed in front of it meanwhile, the anchor is found
+ * again by binary search on its sort key (or by id in list order), so a client
+ * neither skips nor repeats photos across pages. Tokens are opaque URL-safe
+ * strings that stay valid across restarts.
+ */
+class PhotoCursor {
+
+    static final int DEFAULT_PAGE_SIZE = Integer.getInteger("gallery.pageSize", 20);
+    static final int MAX_PAGE_SIZE = 1000;
+
+    private static final String LIST_ORDER = "LIST"; // Token order name when no sort was chosen
+
+    /**
+     * Page class holding one page of results and the tokens around it
+     */
+    static final class Page {
+        final List<Photo> photos;
+        final String next; // Resume token of the following page, null on the last page
+        final String previous; // Resume token of the preceding page, null on the first page
+
+        /**
+         * Create a page
+         *
+         * @param photos   Photos of the page
+         * @param next     Token of the next page, or null
+         * @param previous Token of the previous page, or null
+         */
+        private Page(List<Photo> photos, String next, String previous) {
+            this.photos = photos;
+            this.next = next;
+            this.previous = previous;
+        }
+    }
+
+    private final List<Photo> photos;
+    private final SortedPhotoViews.Order order;
+    private final Comparator<Photo> comparator;
+    private final Predicate<Photo> filter;
+
+    /**
+     * Create a cursor over an ordered result
+     *
+     * @param photos     All candidates in display order; must allow fast random access
+     * @param order      Sort order of the candidates, or null for list order
+     * @param comparator Comparator of that order, or null for list order
+     * @param filter     Candidates to include in pages
+     */
+    PhotoCursor(List<Photo> photos, SortedPhotoViews.Order order, Comparator<Photo> comparator, Predicate<Photo> filter) {
+        this.photos = photos;
+        this.order = order;
+        this.comparator = comparator;
+        this.filter = filter;
+    }
+
+    /**
+     * Get a page
+     *
+     * @param token    Resume token from an earlier page, or null/empty for the first page
+     * @param pageSize Number of photos per page (1 to MAX_PAGE_SIZE)
+     * @return The page
+     * @throws IllegalArgumentException If the token is malformed or belongs to another sort order
+     */
+    Page page(String token, int pageSize) {
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE + ".");
+        }
+        int start = resolve(token);
+
+        List<Photo> page = new ArrayList<>(pageSize);
+        int i = start;
+        while (i < photos.size() && page.size() < pageSize) {
+            Photo p = photos.get(i++);
+            if (filter.test(p)) {
+                page.add(p);
+            }
+        }
+        String next = nextMatch(i) < photos.size() ? token(i) : null;
+
+        String previous = null;
+        int found = 0;
+        int j = start;
+        while (j > 0 && found < pageSize) {
+            if (filter.test(photos.get(--j))) {
+                found++;
+            }
+        }
+        if (found > 0) {
+            previous = token(found < pageSize ? 0 : j);
+        }
+        return new Page(page, next, previous);
+    }
+
+    /**
+     * Find the first candidate at or after a position that passes the filter
+     *
+     * @param from Position to start at
+     * @return Its position, or the number of candidates if there is none
+     */
+    private int nextMatch(int from) {
+        int i = from;
+        while (i < photos.size() && !filter.test(photos.get(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Build the token of a page starting at a position
+     *
+     * @param position Position of the first candidate of the page
+     * @return Resume token
+     */
+    private String token(int position) {
+        StringBuilder sb = new StringBuilder(orderName()).append('\n').append(position);
+        if (position > 0) {
+            Photo anchor = photos.get(position - 1);
+            sb.append('\n').append(anchor.id).append('\n').append(anchor.dateTimeMillis).append('\n').append(anchor.name);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Find the position a token resumes at
+     *
+     * @param token Resume token, or null/empty for the start
+     * @return Position of the first candidate to consider
+     * @throws IllegalArgumentException If the token is malformed or belongs to another sort order
+     */
+    private int resolve(String token) {
+        if (token == null || token.isEmpty()) {
+            return 0;
+        }
+        String[] fields;
+        int position;
+        try {
+            fields = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\n", 5);
+            position = Integer.parseInt(fields[1]);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid resume token.");
+        }
+        if (!fields[0].equals(orderName())) {
+            throw new IllegalArgumentException("Resume token belongs to a different sort order.");
+        }
+        if (position <= 0) {
+            return 0;
+        }
+        if (fields.length != 5) {
+            throw new IllegalArgumentException("Invalid resume token.");
+        }
+
+        Photo anchor;
+        try {
+            anchor = new Photo(Integer.parseInt(fields[2]), fields[4], "", "", "", false);
+            anchor.dateTimeMillis = Long.parseLong(fields[3]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid resume token.");
+        }
+
+        // Nothing moved in front of the page
+        if (position <= photos.size() && photos.get(position - 1).id == anchor.id) {
+            return position;
+        }
+        if (comparator != null) {
+            // First candidate sorting after the anchor, whether or not the anchor still exists
+            int lo = 0;
+            int hi = photos.size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (comparator.compare(photos.get(mid), anchor) <= 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+        for (int i = 0; i < photos.size(); i++) {
+            if (photos.get(i).id == anchor.id) {
+                return i + 1;
+            }
+        }
+        return Math.min(position, photos.size()); // Anchor deleted; stay close to where it was
+    }
+
+    /**
+     * Get the name of the order stored in tokens
+     *
+     * @return Order name
+     */
+    private String orderName() {
+        return order == null ? LIST_ORDER : order.name();
+    }
+}
@@ -0,0 +1,485 @@
+package com.memorise.gallery;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.IntStream;
+
+/**
+ * PhotoImporter class for adding many photos from a manifest file at once
+ * The manifest is streamed in batches; the rows of each batch are parsed and
+ * checked against the gallery's validation rules in parallel, then deduplicated
+ * in order against the store and the rows already accepted through hash lookups.
+ * Accepted photos are added to the store and journaled with one write per batch,
+ * under the gallery's write lock so that concurrent sessions only wait for a
+ * batch rather than for the whole import.
+ *
+ * Supported manifests:
+ * CSV (default)       name,type,folder[,dateTime[,favourite]] with an optional header row
+ * NDJSON (.ndjson,    one flat object per line, e.g.
+ *         .jsonl)     {"name":"sky","type":"jpg","folder":"trips","dateTime":"2025-05-09 17:23:33","favourite":true}
+ * A missing dateTime becomes the import time.
+ */
+class PhotoImporter {
+
+    // Lines parsed and validated together
+    private static final int BATCH_SIZE = 8192;
+
+    // Rejected rows listed individually in the report
+    static final int MAX_REPORTED_REJECTS = 20;
+
+    private static final String[] DEFAULT_COLUMNS = {"name", "type", "folder", "datetime", "favourite"};
+
+    /**
+     * Outcome of an import
+     */
+    static class Result {
+        final List<Photo> added = new ArrayList<>();
+        final List<String> rejected = new ArrayList<>(); // "Line n: reason", in file order
+        int duplicates;
+        long nanos;
+
+        /**
+         * Build a summary of the import
+         *
+         * @param fileName Name of the manifest
+         * @return Human-readable report
+         */
+        String report(String fileName) {
+            int rows = added.size() + duplicates + rejected.size();
+            long perSecond = nanos > 0 ? (long) (rows * 1_000_000_000.0 / nanos) : rows;
+            return String.format("Imported %,d photos from %s; %,d duplicates skipped, %,d rows rejected (%.1f ms, %,d rows/s).",
+                    added.size(), fileName, duplicates, rejected.size(), nanos / 1_000_000.0, perSecond);
+        }
+    }
+
+    /**
+     * One manifest row after parsing and validation
+     */
+    private static class Row {
+        final int line;
+        String name;
+        String type;
+        String folder;
+        String dateTime;
+        boolean favourite;
+        String error;
+
+        /**
+         * Create an empty row
+         *
+         * @param line Line number in the manifest
+         */
+        Row(int line) {
+            this.line = line;
+        }
+    }
+
+    private final PhotoStore store;
+    private final PhotoJournal journal;
+    private final Lock writeLock;
+    private final PhotoCatalog catalog;
+
+    /**
+     * Create an importer for a store and its journal
+     *
+     * @param store     Store receiving the photos
+     * @param journal   Journal recording the additions
+     * @param writeLock Lock guarding the store, held while a batch is committed
+     * @param catalog   Catalog that publishes each committed batch
+     */
+    PhotoImporter(PhotoStore store, PhotoJournal journal, Lock writeLock, PhotoCatalog catalog) {
+        this.store = store;
+        this.journal = journal;
+        this.writeLock = writeLock;
+        this.catalog = catalog;
+    }
+
+    /**
+     * Import all valid, new photos from a manifest
+     *
+     * @param file Manifest file
+     * @return Added photos, duplicates and rejected rows
+     * @throws IOException If the manifest cannot be read
+     */
+    Result importManifest(File file) throws IOException {
+        long start = System.nanoTime();
+        String lowerName = file.getName().toLowerCase();
+        boolean json = lowerName.endsWith(".ndjson") || lowerName.endsWith(".jsonl");
+        String importTime = GalleryService.getCurrentDateTime();
+
+        Result result = new Result();
+        Set<String> accepted = new HashSet<>(); // name;folder keys taken by this import
+
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String[] columns = DEFAULT_COLUMNS;
+            List<String> batch = new ArrayList<>(BATCH_SIZE);
+            int lineNo = 0;
+            int batchStart = 1;
+            String line;
+
+            while ((line = br.readLine()) != null) {
+                lineNo++;
+                if (lineNo == 1 && !json && isHeader(line)) {
+                    columns = splitCsv(line).stream().map(String::toLowerCase).toArray(String[]::new);
+                    batchStart = 2;
+                    continue;
+                }
+                batch.add(line);
+                if (batch.size() == BATCH_SIZE) {
+                    commitBatch(validate(batch, batchStart, json, columns, importTime), accepted, result);
+                    batch.clear();
+                    batchStart = lineNo + 1;
+                }
+            }
+            commitBatch(validate(batch, batchStart, json, columns, importTime), accepted, result);
+        }
+        MetricsRegistry.global().read(file.getName(), file.length());
+
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Parse and validate a batch of lines in parallel
+     *
+     * @param lines      Raw manifest lines
+     * @param firstLine  Line number of the first line
+     * @param json       true for NDJSON, false for CSV
+     * @param columns    CSV column names
+     * @param importTime dateTime used for rows without one
+     * @return Rows in input order
+     */
+    private static Row[] validate(List<String> lines, int firstLine, boolean json, String[] columns, String importTime) {
+        return IntStream.range(0, lines.size()).parallel()
+                .mapToObj(i -> parseRow(lines.get(i), firstLine + i, json, columns, importTime))
+                .toArray(Row[]::new);
+    }
+
+    /**
+     * Add the valid rows of a batch to the store and journal them, skipping duplicates
+     * Runs on the calling thread so that ids follow manifest order; the store and
+     * the journal change together so that replay sees the batch in its place
+     *
+     * @param rows     Validated rows in manifest order
+     * @param accepted name;folder keys taken by this import so far
+     * @param result   Result to update
+     */
+    private void commitBatch(Row[] rows, Set<String> accepted, Result result) {
+        writeLock.lock();
+        try {
+            commitRows(rows, accepted, result);
+        } finally {
+            catalog.publish();
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Add the valid rows of a batch to the store and journal them with one write
+     *
+     * @param rows     Validated rows in manifest order
+     * @param accepted name;folder keys taken by this import so far
+     * @param result   Result to update
+     */
+    private void commitRows(Row[] rows, Set<String> accepted, Result result) {
+        List<Photo> added = new ArrayList<>();
+        for (Row row : rows) {
+            if (row == null) {
+                continue; // Blank line
+            }
+            if (row.error != null) {
+                result.rejected.add("Line " + row.line + ": " + row.error);
+                continue;
+            }
+            String key = row.name.toLowerCase() + ";" + row.folder.toLowerCase();
+            if (store.findByNameAndFolder(row.name, row.folder) != null || !accepted.add(key)) {
+                result.duplicates++;
+                continue;
+            }
+            Photo photo = new Photo(store.allocateId(), row.name, row.type, row.folder, row.dateTime, row.favourite);
+            store.add(photo);
+            added.add(photo);
+        }
+        journal.recordAddAll(added);
+        result.added.addAll(added);
+    }
+
+    /**
+     * Parse one manifest line and apply the validation rules
+     *
+     * @param line       Raw line
+     * @param lineNo     Line number for error messages
+     * @param json       true for NDJSON, false for CSV
+     * @param columns    CSV column names
+     * @param importTime dateTime used for rows without one
+     * @return Parsed row (with error set if invalid), or null for a blank line
+     */
+    private static Row parseRow(String line, int lineNo, boolean json, String[] columns, String importTime) {
+        if (line.trim().isEmpty()) {
+            return null;
+        }
+        Row row = new Row(lineNo);
+
+        Map<String, String> fields;
+        try {
+            fields = json ? parseJsonObject(line) : csvFields(line, columns);
+        } catch (IllegalArgumentException e) {
+            row.error = e.getMessage();
+            return row;
+        }
+
+        row.name = trim(fields.get("name"));
+        row.type = trim(fields.get("type"));
+        row.folder = trim(fields.get("folder"));
+        row.dateTime = trim(fields.containsKey("datetime") ? fields.get("datetime") : fields.get("date"));
+        String favourite = trim(fields.containsKey("favourite") ? fields.get("favourite") : fields.get("isfavourite"));
+
+        String error = GalleryService.photoNameError(row.name);
+        if (error == null) {
+            error = GalleryService.photoTypeError(row.type);
+        }
+        if (error == null) {
+            error = GalleryService.folderNameError(row.folder);
+        }
+        if (error == null && row.dateTime != null && !row.dateTime.isEmpty()
+                && DateTimes.parse(row.dateTime) == DateTimes.UNKNOWN) {
+            error = "Unrecognised date: " + row.dateTime;
+        }
+        if (error == null && favourite != null && !favourite.isEmpty()
+                && !favourite.equalsIgnoreCase("true") && !favourite.equalsIgnoreCase("false")) {
+            error = "Favourite must be true or false: " + favourite;
+        }
+        if (error != null) {
+            row.error = error;
+            return row;
+        }
+
+        row.type = row.type.toLowerCase();
+        if (row.dateTime == null || row.dateTime.isEmpty()) {
+            row.dateTime = importTime;
+        }
+        row.favourite = "true".equalsIgnoreCase(favourite);
+        return row;
+    }
+
+    /**
+     * Check whether the first CSV line is a header row
+     *
+     * @param line First line of the manifest
+     * @return true if the line names the columns
+     */
+    private static boolean isHeader(String line) {
+        List<String> cells = splitCsv(line);
+        return !cells.isEmpty() && cells.get(0).trim().equalsIgnoreCase("name");
+    }
+
+    /**
+     * Map the cells of a CSV line to their column names
+     *
+     * @param line    CSV line
+     * @param columns Lower-cased column names
+     * @return Field values by column name
+     */
+    private static Map<String, String> csvFields(String line, String[] columns) {
+        List<String> cells = splitCsv(line);
+        if (cells.size() > columns.length) {
+            throw new IllegalArgumentException("Too many columns (" + cells.size() + ")");
+        }
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < cells.size(); i++) {
+            fields.put(columns[i].trim(), cells.get(i));
+        }
+        return fields;
+    }
+
+    /**
+     * Split a CSV line into cells, honouring double-quoted cells with "" escapes
+     *
+     * @param line CSV line
+     * @return Cell values
+     */
+    private static List<String> splitCsv(String line) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cell.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    cell.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted value");
+        }
+        cells.add(cell.toString());
+        return cells;
+    }
+
+    /**
+     * Parse one flat JSON object with string, boolean, number or null values
+     *
+     * @param line JSON text
+     * @return Values by lower-cased key; null values are left out
+     */
+    private static Map<String, String> parseJsonObject(String line) {
+        Map<String, String> fields = new HashMap<>();
+        int[] pos = {skipSpace(line, 0)};
+        expect(line, pos, '{');
+        if (peek(line, pos) == '}') {
+            pos[0]++;
+        } else {
+            while (true) {
+                String key = jsonString(line, pos);
+                expect(line, pos, ':');
+                pos[0] = skipSpace(line, pos[0]);
+                String value;
+                if (peek(line, pos) == '"') {
+                    value = jsonString(line, pos);
+                } else {
+                    int end = pos[0];
+                    while (end < line.length() && ",} \t".indexOf(line.charAt(end)) < 0) {
+                        end++;
+                    }
+                    value = line.substring(pos[0], end);
+                    pos[0] = end;
+                    if (value.isEmpty()) {
+                        throw new IllegalArgumentException("Invalid JSON: missing value for " + key);
+                    }
+                    if (value.equals("null")) {
+                        value = null;
+                    }
+                }
+                if (value != null) {
+                    fields.put(key.toLowerCase(), value);
+                }
+                pos[0] = skipSpace(line, pos[0]);
+                if (peek(line, pos) == ',') {
+                    pos[0]++;
+                    continue;
+                }
+                expect(line, pos, '}');
+                break;
+            }
+        }
+        if (skipSpace(line, pos[0]) != line.length()) {
+            throw new IllegalArgumentException("Invalid JSON: trailing characters");
+        }
+        return fields;
+    }
+
+    /**
+     * Read a JSON string starting at the current position
+     *
+     * @param s   JSON text
+     * @param pos Current position, advanced past the string
+     * @return Unescaped string value
+     */
+    private static String jsonString(String s, int[] pos) {
+        expect(s, pos, '"');
+        StringBuilder sb = new StringBuilder();
+        int i = pos[0];
+        while (i < s.length()) {
+            char c = s.charAt(i++);
+            if (c == '"') {
+                pos[0] = i;
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (i >= s.length()) {
+                break;
+            }
+            char e = s.charAt(i++);
+            switch (e) {
+                case 'n': sb.append('\n'); break;
+                case 't': sb.append('\t'); break;
+                case 'r': sb.append('\r'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    if (i + 4 > s.length()) {
+                        throw new IllegalArgumentException("Invalid JSON: bad \\u escape");
+                    }
+                    try {
+                        sb.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw new IllegalArgumentException("Invalid JSON: bad \\u escape");
+                    }
+                    i += 4;
+                    break;
+                default: sb.append(e); // \" \\ \/
+            }
+        }
+        throw new IllegalArgumentException("Invalid JSON: unterminated string");
+    }
+
+    /**
+     * Skip whitespace and consume the expected character
+     *
+     * @param s        JSON text
+     * @param pos      Current position, advanced past the character
+     * @param expected Character that must follow
+     */
+    private static void expect(String s, int[] pos, char expected) {
+        pos[0] = skipSpace(s, pos[0]);
+        if (pos[0] >= s.length() || s.charAt(pos[0]) != expected) {
+            throw new IllegalArgumentException("Invalid JSON: expected '" + expected + "'");
+        }
+        pos[0]++;
+    }
+
+    /**
+     * Look at the next non-space character
+     *
+     * @param s   JSON text
+     * @param pos Current position, advanced past whitespace
+     * @return Next character, or 0 at the end
+     */
+    private static char peek(String s, int[] pos) {
+        pos[0] = skipSpace(s, pos[0]);
+        return pos[0] < s.length() ? s.charAt(pos[0]) : 0;
+    }
+
+    /**
+     * Skip whitespace
+     *
+     * @param s   Text
+     * @param pos Start position
+     * @return First position that is not whitespace
+     */
+    private static int skipSpace(String s, int pos) {
+        while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Trim a value that may be null
+     *
+     * @param value Value or null
+     * @return Trimmed value, or null
+     */
+    private static String trim(String value) {
+        return value == null ? null : value.trim();
+    }
+}
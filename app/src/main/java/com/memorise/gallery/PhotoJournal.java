@@ -0,0 +1,828 @@
+package com.memorise.gallery;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * PhotoJournal class implementing an append-only mutation journal next to the snapshot file
+ * Every add, edit, delete and favourite change appends one line instead of
+ * rewriting the whole photo file. The journal is replayed on startup and
+ * folded into a fresh snapshot in the background once it grows past a threshold
+ * or once deleted rows make up too much of the snapshot. Deletes only append a
+ * tombstone; the snapshot row it masks is dropped when replay applies it and
+ * reclaimed for good by the next compaction.
+ *
+ * The journal also keeps track of the folders whose photos changed since the
+ * snapshot was last installed, so that the segmented format rewrites only those.
+ *
+ * Records are group-committed: a change queues its record and returns, and a
+ * background writer appends everything queued in one write once the commit
+ * interval has passed or the batch is full. How writes reach the disk is set
+ * with -Dgallery.journal.sync: "none" leaves them to the operating system,
+ * "batch" forces each group commit to disk, and "always" writes and forces each
+ * change before it returns. Rotation, checkpoints, close and a shutdown hook
+ * write out whatever is still queued, so saving and exiting stays durable.
+ * A group that cannot be written is cut from the journal file again and put
+ * back at the head of the queue, so later records never land without it; the
+ * background writer retries it, and a change written by its caller reports the
+ * failure instead of returning as if it were saved.
+ *
+ * Photo ids are never reused. The highest id handed out is kept in a small
+ * Photos.nextid file that is written before each new snapshot is installed,
+ * so deleting the newest photo and compacting cannot release its id.
+ *
+ * Journal records:
+ * A;id;name;type;folder;dateTime;isFavourite  (photo added)
+ * E;id;name;type;folder;dateTime;isFavourite  (photo edited, full new state)
+ * D;id                                        (photo deleted; a tombstone for the snapshot row)
+ * F;id;isFavourite                            (favourite flag changed)
+ *
+ * Compaction protocol, safe against a crash at any step:
+ * 1. create an empty snapshot.tmp as a marker, 2. rename the journal to the next
+ * rotated generation (Photos.journal.1, .2, ...) and start a new journal, 3. write
+ * snapshot.tmp and atomically move it over the snapshot, 4. delete the rotated
+ * generations. On startup a leftover .tmp means the snapshot was not installed, so
+ * the rotated generations are replayed in order and the marker is kept until the
+ * next snapshot is installed; without .tmp they are already part of the snapshot
+ * and are deleted.
+ */
+class PhotoJournal implements PhotoStore.Listener {
+
+    // Journal size in bytes after which a background compaction starts
+    private static final long COMPACT_THRESHOLD = Long.getLong("gallery.journal.compactBytes", 256 * 1024);
+    // Share of snapshot rows (percent) that may be tombstoned before a background compaction starts
+    private static final int COMPACT_DEAD_PERCENT = Integer.getInteger("gallery.journal.compactDeadPercent", 25);
+    private static final int MIN_TOMBSTONES = 1024; // Small galleries are not worth an early compaction
+    // When journal writes are forced to disk
+    private static final SyncPolicy SYNC = SyncPolicy.parse(System.getProperty("gallery.journal.sync", "batch"));
+    // Longest time in milliseconds a queued record waits for its group commit
+    private static final long COMMIT_MILLIS = Long.getLong("gallery.journal.commitMillis", 20);
+    // Number of queued records that starts a group commit without waiting for the interval
+    private static final int COMMIT_BATCH = Integer.getInteger("gallery.journal.commitBatch", 256);
+    // Time in milliseconds the background writer waits before retrying a failed group commit
+    private static final long RETRY_MILLIS = Long.getLong("gallery.journal.retryMillis", 1000);
+
+    /**
+     * Points at which journal writes are forced to disk
+     */
+    enum SyncPolicy {
+        NONE,   // Written to the operating system only; a power loss may drop the latest changes
+        BATCH,  // One fsync per group commit
+        ALWAYS; // Each change is written and forced before the operation returns
+
+        /**
+         * Parse a policy name, ignoring case
+         *
+         * @param name "none", "batch" or "always"
+         * @return The policy, BATCH for anything else
+         */
+        static SyncPolicy parse(String name) {
+            for (SyncPolicy policy : values()) {
+                if (policy.name().equalsIgnoreCase(name.trim())) {
+                    return policy;
+                }
+            }
+            return BATCH;
+        }
+    }
+
+    private final PhotoStore store;
+    private final SnapshotFormat format;
+    private final File snapshotFile;
+    private final File tmpFile;
+    private final File journalFile;
+    private final String rotatedPrefix; // Rotated generations are <rotatedPrefix><n>
+    private final File nextIdFile;
+
+    private final Object ioLock = new Object(); // Serializes writes, fsyncs and rotation of the journal file
+    private FileOutputStream out = null; // Open journal file, guarded by ioLock
+    private boolean unsynced = false; // Written but not forced to disk, guarded by ioLock
+
+    private final Object queueLock = new Object();
+    private final ByteArrayOutputStream queued = new ByteArrayOutputStream(); // Guarded by queueLock
+    private int queuedRecords = 0; // Guarded by queueLock
+    private boolean closed = false; // Guarded by queueLock
+    private Thread committer = null; // Started with the first queued record
+    private Thread shutdownHook = null;
+
+    private long journalBytes = 0;
+    private int tombstones = 0; // Deletes not yet folded into a snapshot
+    private Set<String> changedFolders = new HashSet<>(); // Folders changed since the snapshot was installed
+
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "journal-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+    private Future<?> pendingCompaction = null;
+    private final MetricsRegistry metrics = MetricsRegistry.global();
+
+    /**
+     * Create a journal for the snapshot file of the given format
+     *
+     * @param format Format of the snapshot file, e.g. Photos.txt
+     * @param store  Store whose changes are journaled
+     * @param dir    Directory holding the snapshot and journal files
+     */
+    PhotoJournal(SnapshotFormat format, PhotoStore store, File dir) {
+        this.store = store;
+        this.format = format;
+        String snapshotFileName = format.fileName();
+        this.snapshotFile = new File(dir, snapshotFileName);
+        this.tmpFile = new File(dir, snapshotFileName + ".tmp");
+        int dot = snapshotFileName.lastIndexOf('.');
+        String base = dot > 0 ? snapshotFileName.substring(0, dot) : snapshotFileName;
+        this.journalFile = new File(dir, base + ".journal");
+        this.rotatedPrefix = journalFile.getName() + ".";
+        this.nextIdFile = new File(dir, base + ".nextid");
+        store.addListener(this);
+    }
+
+    /**
+     * Recover from an interrupted compaction and replay the journal onto the store
+     * Must be called once after the snapshot was loaded and before recording changes
+     *
+     * @return Number of journal records applied
+     */
+    int replay() {
+        int applied = 0;
+        store.reserveIds(readNextId());
+        takeChangedFolders(); // Photos loaded so far came from the snapshot
+
+        if (tmpFile.exists()) {
+            // Snapshot was never installed; the rotated generations still hold changes.
+            // The marker stays until a snapshot holding them is installed over it, so
+            // a session ending without a checkpoint replays them again on next start
+            List<File> rotated = rotatedJournals();
+            if (rotated.isEmpty()) {
+                tmpFile.delete(); // Interrupted before the rename; nothing to recover
+            }
+            for (File generation : rotated) {
+                applied += replayFile(generation);
+            }
+        } else {
+            deleteRotatedJournals(); // Already folded into the snapshot
+        }
+
+        if (journalFile.exists()) {
+            applied += replayFile(journalFile);
+            journalBytes = journalFile.length();
+        }
+        return applied;
+    }
+
+    /**
+     * Check whether replay would change the photos of the snapshot
+     *
+     * @return true if a journal or an uninstalled compaction holds changes
+     */
+    boolean hasPendingChanges() {
+        return journalFile.length() > 0 || (tmpFile.exists() && !rotatedJournals().isEmpty());
+    }
+
+    /**
+     * Record that a photo was added
+     *
+     * @param p Added photo
+     */
+    void recordAdd(Photo p) {
+        append("A;" + p.toRecord(), 1);
+    }
+
+    /**
+     * Record a batch of added photos as one queued block
+     *
+     * @param photos Added photos
+     */
+    void recordAddAll(List<Photo> photos) {
+        if (photos.isEmpty()) {
+            return;
+        }
+        StringBuilder records = new StringBuilder();
+        for (Photo p : photos) {
+            records.append("A;").append(p.toRecord()).append(System.lineSeparator());
+        }
+        records.setLength(records.length() - System.lineSeparator().length()); // append() adds the last one
+        append(records.toString(), photos.size());
+    }
+
+    /**
+     * Record the new state of an edited photo
+     *
+     * @param p Edited photo
+     */
+    void recordEdit(Photo p) {
+        append("E;" + p.toRecord(), 1);
+    }
+
+    /**
+     * Record that a photo was deleted
+     *
+     * @param id Id the photo had before deletion
+     */
+    void recordDelete(int id) {
+        tombstones++;
+        append("D;" + id, 1);
+    }
+
+    /**
+     * Record a change of the favourite flag
+     *
+     * @param p Changed photo
+     */
+    void recordFavourite(Photo p) {
+        append("F;" + p.id + ";" + p.isFavourite, 1);
+    }
+
+    /**
+     * Schedule a background compaction if the journal has grown past the threshold
+     * The current photos are captured now and written in the background
+     */
+    private void compactIfNeeded() {
+        boolean mostlyDead = tombstones >= MIN_TOMBSTONES
+                && (long) tombstones * 100 > (long) (store.size() + tombstones) * COMPACT_DEAD_PERCENT;
+        if (journalBytes < COMPACT_THRESHOLD && !mostlyDead) {
+            return;
+        }
+        if (pendingCompaction != null && !pendingCompaction.isDone()) {
+            return; // One compaction at a time
+        }
+
+        List<Photo> rows = snapshotRows(store);
+        int nextId = store.nextId();
+        try {
+            rotate();
+        } catch (IOException e) {
+            System.out.println("Error rotating " + journalFile.getName() + ": " + e.getMessage());
+            return;
+        }
+        Set<String> folders = takeChangedFolders();
+
+        pendingCompaction = compactor.submit(() -> {
+            try {
+                writeSnapshot(rows, folders, nextId);
+                deleteRotatedJournals();
+            } catch (IOException e) {
+                // Rotated generations stay on disk and are replayed on next startup
+                restoreChangedFolders(folders);
+                System.out.println("Error compacting " + journalFile.getName() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Write a full snapshot synchronously and clear the journal
+     * Used when the user saves and exits
+     *
+     * @throws IOException If the snapshot cannot be written
+     */
+    void checkpoint() throws IOException {
+        awaitCompaction();
+        rotate();
+        Set<String> folders = takeChangedFolders();
+        try {
+            writeSnapshot(snapshotRows(store), folders, store.nextId());
+        } catch (IOException e) {
+            restoreChangedFolders(folders);
+            throw e;
+        }
+        deleteRotatedJournals(); // Snapshot now holds everything the journals described
+    }
+
+    /**
+     * Wait for a running background compaction to finish
+     */
+    void awaitCompaction() {
+        if (pendingCompaction == null) {
+            return;
+        }
+        try {
+            pendingCompaction.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.out.println("Error compacting " + journalFile.getName() + ": " + e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Write all queued records and force the journal to disk
+     * Safe to call from any thread, including the shutdown hook
+     */
+    void flush() {
+        try {
+            commit(true);
+        } catch (IOException e) {
+            System.out.println("Error writing " + journalFile.getName() + ": " + e.getMessage()
+                    + "; " + queuedRecords() + " changes not saved");
+        }
+    }
+
+    /**
+     * Write out and close the journal and stop the background threads
+     */
+    void close() {
+        awaitCompaction();
+        Thread writer;
+        synchronized (queueLock) {
+            closed = true; // Later records are written by the caller
+            writer = committer;
+            queueLock.notifyAll();
+        }
+        if (writer != null) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+        synchronized (ioLock) {
+            closeWriter();
+        }
+        compactor.shutdown();
+        if (shutdownHook != null) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // Already shutting down; the hook flushes once more
+            }
+            shutdownHook = null;
+        }
+    }
+
+    @Override
+    public void photoAdded(Photo p) {
+        folderChanged(p.folder);
+    }
+
+    @Override
+    public void photoRemoved(Photo p) {
+        folderChanged(p.folder);
+    }
+
+    @Override
+    public void beforeUpdate(Photo p) {
+        folderChanged(p.folder); // The photo may be leaving this folder
+    }
+
+    @Override
+    public void afterUpdate(Photo p) {
+        folderChanged(p.folder);
+    }
+
+    @Override
+    public void favouriteChanged(Photo p) {
+        folderChanged(p.folder); // The folder's segment holds the flag
+    }
+
+    /**
+     * Note that the photos of a folder changed
+     *
+     * @param folder Folder name
+     */
+    private synchronized void folderChanged(String folder) {
+        changedFolders.add(folder);
+    }
+
+    /**
+     * Hand over the folders changed so far and start collecting anew
+     *
+     * @return Folders changed since the previous call
+     */
+    private synchronized Set<String> takeChangedFolders() {
+        Set<String> folders = changedFolders;
+        changedFolders = new HashSet<>();
+        return folders;
+    }
+
+    /**
+     * Mark folders as changed again after their snapshot could not be installed
+     *
+     * @param folders Folders handed over for the failed snapshot
+     */
+    private synchronized void restoreChangedFolders(Set<String> folders) {
+        changedFolders.addAll(folders);
+    }
+
+    /**
+     * Queue records for the next group commit
+     * With the "always" policy, or once the journal is closed, the records are
+     * written and forced before this returns
+     *
+     * @param record  Journal records without the final line ending
+     * @param records Number of records
+     * @throws UncheckedIOException If the records had to be written now and could not be
+     */
+    private void append(String record, int records) {
+        byte[] bytes = (record + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        boolean writeNow;
+        synchronized (queueLock) {
+            queued.write(bytes, 0, bytes.length);
+            queuedRecords += records;
+            writeNow = SYNC == SyncPolicy.ALWAYS || closed;
+            if (!writeNow) {
+                startCommitter();
+                if (queuedRecords >= COMMIT_BATCH) {
+                    queueLock.notifyAll(); // Batch is full; do not wait for the interval
+                }
+            }
+        }
+        if (writeNow) {
+            try {
+                commit(SYNC != SyncPolicy.NONE);
+            } catch (IOException e) {
+                // Still queued; the next commit writes it ahead of anything later
+                throw new UncheckedIOException("Error writing " + journalFile.getName() + ": " + e.getMessage(), e);
+            }
+        }
+        journalBytes += bytes.length;
+        compactIfNeeded();
+    }
+
+    /**
+     * Start the background writer and the shutdown hook if not running yet
+     * Must be called while holding queueLock
+     */
+    private void startCommitter() {
+        if (committer != null) {
+            return;
+        }
+        committer = new Thread(this::runCommitter, "journal-writer");
+        committer.setDaemon(true);
+        committer.start();
+        shutdownHook = new Thread(this::flush, "journal-flush");
+        Runtime.getRuntime().addShutdownHook(shutdownHook); // Queued changes survive an exit without save
+    }
+
+    /**
+     * Background writer loop: wait for queued records, give more records the
+     * commit interval to join them, then write them as one group
+     */
+    private void runCommitter() {
+        try {
+            while (true) {
+                synchronized (queueLock) {
+                    while (queuedRecords == 0 && !closed) {
+                        queueLock.wait();
+                    }
+                    if (closed) {
+                        return; // close() writes what is left
+                    }
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(COMMIT_MILLIS);
+                    long left;
+                    while (queuedRecords < COMMIT_BATCH && !closed && (left = deadline - System.nanoTime()) > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(queueLock, left);
+                    }
+                }
+                try {
+                    commit(SYNC == SyncPolicy.BATCH);
+                } catch (IOException e) {
+                    System.out.println("Error writing " + journalFile.getName() + ": " + e.getMessage() + "; retrying");
+                    synchronized (queueLock) {
+                        if (!closed) {
+                            queueLock.wait(RETRY_MILLIS); // close() writes what is left
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Write all queued records to the journal in one write
+     * On failure the journal file is cut back to its length before the write and
+     * the records go back to the head of the queue, so the next commit writes
+     * them once and ahead of anything queued later
+     *
+     * @param sync Whether to force the journal to disk afterwards
+     * @throws IOException If the records cannot be written or forced
+     */
+    private void commit(boolean sync) throws IOException {
+        synchronized (ioLock) {
+            byte[] batch;
+            int records;
+            synchronized (queueLock) {
+                batch = queued.toByteArray();
+                records = queuedRecords;
+                queued.reset();
+                queuedRecords = 0;
+            }
+            if (batch.length == 0 && !(sync && unsynced)) {
+                return;
+            }
+            long start = System.nanoTime();
+            long length = -1; // Journal length before this write
+            try {
+                if (out == null) {
+                    out = new FileOutputStream(journalFile, true);
+                }
+                length = out.getChannel().size();
+                out.write(batch);
+                if (sync) {
+                    out.getFD().sync();
+                }
+                unsynced = !sync;
+                metrics.written(journalFile.getName(), batch.length);
+            } catch (IOException e) {
+                closeWriter(); // Reopened by the next commit
+                truncateJournal(length);
+                requeue(batch, records);
+                throw e;
+            }
+            metrics.record("journal-commit", start);
+        }
+    }
+
+    /**
+     * Put records that could not be written back at the head of the queue
+     *
+     * @param batch   Records taken from the queue
+     * @param records Number of records in the batch
+     */
+    private void requeue(byte[] batch, int records) {
+        synchronized (queueLock) {
+            byte[] later = queued.toByteArray(); // Queued while the write was failing
+            queued.reset();
+            queued.write(batch, 0, batch.length);
+            queued.write(later, 0, later.length);
+            queuedRecords += records;
+        }
+    }
+
+    /**
+     * Get the number of records waiting for a commit
+     *
+     * @return Queued records
+     */
+    private int queuedRecords() {
+        synchronized (queueLock) {
+            return queuedRecords;
+        }
+    }
+
+    /**
+     * Cut a partly written group off the journal file before it is written again
+     * Must be called while holding ioLock, with the writer closed
+     *
+     * @param length Journal length before the failed write, or -1 if nothing was written
+     */
+    private void truncateJournal(long length) {
+        if (length < 0) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.WRITE)) {
+            if (channel.size() > length) {
+                channel.truncate(length);
+            }
+        } catch (IOException e) {
+            System.out.println("Error truncating " + journalFile.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Set the tmp marker and move the current journal to the next rotated generation
+     * Must run before the snapshot that covers the journal is installed
+     *
+     * @throws IOException If the marker or the rename fails
+     */
+    private void rotate() throws IOException {
+        tmpFile.createNewFile(); // Marker: snapshot not installed yet
+        synchronized (ioLock) {
+            commit(SYNC != SyncPolicy.NONE); // Queued records belong to the generation being rotated out
+            closeWriter();
+            if (journalFile.exists()) {
+                List<File> rotated = rotatedJournals();
+                int next = rotated.isEmpty() ? 1 : generation(rotated.get(rotated.size() - 1)) + 1;
+                File target = new File(journalFile.getAbsoluteFile().getParentFile(), rotatedPrefix + next);
+                Files.move(journalFile.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        journalBytes = 0;
+        tombstones = 0;
+    }
+
+    /**
+     * List the rotated journal generations in replay order
+     *
+     * @return Rotated journal files, oldest first
+     */
+    private List<File> rotatedJournals() {
+        File dir = journalFile.getAbsoluteFile().getParentFile();
+        File[] files = dir.listFiles((d, name) -> name.startsWith(rotatedPrefix)
+                && name.length() > rotatedPrefix.length()
+                && name.substring(rotatedPrefix.length()).chars().allMatch(Character::isDigit));
+        List<File> result = new ArrayList<>(files == null ? Collections.emptyList() : Arrays.asList(files));
+        result.sort(Comparator.comparingInt(PhotoJournal::generation));
+        return result;
+    }
+
+    /**
+     * Delete all rotated journal generations
+     */
+    private void deleteRotatedJournals() {
+        for (File rotated : rotatedJournals()) {
+            rotated.delete();
+        }
+    }
+
+    /**
+     * Get the generation number of a rotated journal file
+     *
+     * @param rotated Rotated journal file
+     * @return Generation number
+     */
+    private static int generation(File rotated) {
+        String name = rotated.getName();
+        return Integer.parseInt(name.substring(name.lastIndexOf('.') + 1));
+    }
+
+    /**
+     * Close the journal file if open
+     * Must be called while holding ioLock
+     */
+    private void closeWriter() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            System.out.println("Error closing " + journalFile.getName() + ": " + e.getMessage());
+        }
+        out = null;
+        unsynced = false; // Already handed to the operating system
+    }
+
+    /**
+     * Capture detached copies of all photos in list order
+     * The copies stay stable while the live photos keep changing
+     *
+     * @param photos Photos to capture
+     * @return Copy of each photo
+     */
+    private static List<Photo> snapshotRows(Iterable<Photo> photos) {
+        List<Photo> rows = new ArrayList<>();
+        for (Photo p : photos) {
+            rows.add(p.copy());
+        }
+        return rows;
+    }
+
+    /**
+     * Install the photos as the new snapshot through the tmp file
+     * The id high-water mark is persisted first; it only grows, so writing it
+     * early is always safe
+     *
+     * @param rows    Captured photos
+     * @param folders Folders changed since the previous snapshot
+     * @param nextId  Next free photo id at capture time
+     * @throws IOException If writing or moving fails
+     */
+    private void writeSnapshot(List<Photo> rows, Set<String> folders, int nextId) throws IOException {
+        writeNextId(nextId);
+        format.install(rows, folders, snapshotFile, tmpFile);
+    }
+
+    /**
+     * Read the persisted id high-water mark
+     *
+     * @return Next free id, or 1 if none was saved yet
+     */
+    private int readNextId() {
+        if (!nextIdFile.exists()) {
+            return 1;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(nextIdFile.toPath());
+            metrics.read(nextIdFile.getName(), bytes.length);
+            return Integer.parseInt(new String(bytes, StandardCharsets.UTF_8).trim());
+        } catch (IOException | NumberFormatException e) {
+            System.out.println("Error reading " + nextIdFile.getName() + ": " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Persist the id high-water mark, never lowering a value already on disk
+     *
+     * @param nextId Next free photo id
+     * @throws IOException If the file cannot be written
+     */
+    private synchronized void writeNextId(int nextId) throws IOException {
+        if (nextIdFile.exists() && readNextId() >= nextId) {
+            return;
+        }
+        File tmp = new File(nextIdFile.getPath() + ".tmp");
+        byte[] bytes = Integer.toString(nextId).getBytes(StandardCharsets.UTF_8);
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(bytes);
+            out.getFD().sync();
+        }
+        metrics.written(nextIdFile.getName(), bytes.length);
+        Files.move(tmp.toPath(), nextIdFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Apply all complete records of one journal file to the store
+     *
+     * Replayed deletes count as tombstones still held by the snapshot
+     *
+     * @param file Journal file
+     * @return Number of records applied
+     */
+    private int replayFile(File file) {
+        int applied = 0;
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (apply(line, store)) {
+                    applied++;
+                    if (line.startsWith("D;")) {
+                        tombstones++;
+                    }
+                } else {
+                    System.out.println("Skipping invalid record in " + file.getName() + ": " + line);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading " + file.getName() + ": " + e.getMessage());
+        }
+        metrics.read(journalFile.getName(), file.length()); // Rotated generations count as the journal
+        return applied;
+    }
+
+    /**
+     * Apply one journal record to the store
+     *
+     * @param line  Journal record
+     * @param store Store to apply the record to
+     * @return true if the record was valid and applied, false otherwise
+     */
+    private static boolean apply(String line, PhotoStore store) {
+        String[] parts = line.split(";");
+        try {
+            switch (parts[0]) {
+                case "A":
+                case "E": {
+                    if (parts.length != 7) {
+                        return false;
+                    }
+                    int id = Integer.parseInt(parts[1]);
+                    String name = parts[2];
+                    String type = parts[3];
+                    String folder = parts[4];
+                    String dateTime = parts[5];
+                    boolean isFavourite = Boolean.parseBoolean(parts[6]);
+
+                    Photo existing = store.findById(id);
+                    if (existing == null) {
+                        store.add(new Photo(id, name, type, folder, dateTime, isFavourite));
+                    } else {
+                        store.update(existing, () -> {
+                            existing.name = name;
+                            existing.type = type;
+                            existing.folder = folder;
+                            existing.setDate(dateTime);
+                            existing.isFavourite = isFavourite;
+                        });
+                    }
+                    return true;
+                }
+                case "D": {
+                    // Tombstone: drop the row the snapshot still holds; the id stays retired
+                    if (parts.length != 2 || !store.remove(store.findById(Integer.parseInt(parts[1])))) {
+                        return false;
+                    }
+                    return true;
+                }
+                case "F": {
+                    if (parts.length != 3) {
+                        return false;
+                    }
+                    Photo p = store.findById(Integer.parseInt(parts[1]));
+                    if (p == null) {
+                        return false;
+                    }
+                    store.setFavourite(p, Boolean.parseBoolean(parts[2]));
+                    return true;
+                }
+                default:
+                    return false;
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
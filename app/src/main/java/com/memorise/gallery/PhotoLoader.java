@@ -0,0 +1,373 @@
+package com.memorise.gallery;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * PhotoLoader class for bulk loading the photo file
+ * Memory-maps the file, cuts it into chunks on line boundaries, parses the
+ * chunks in parallel on a fork-join pool and stitches the results in file order
+ */
+class PhotoLoader {
+
+    // Chunks smaller than this are not worth a separate task
+    private static final int MIN_CHUNK_SIZE = 256 * 1024;
+
+    // Upper bound for one chunk so that each chunk fits into a single mapping
+    private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    static final int FIELD_COUNT = 6;
+
+    /**
+     * Outcome of a bulk load
+     */
+    static class Result {
+        final List<Photo> photos = new ArrayList<>();
+        final List<String> messages = new ArrayList<>(); // Skipped-line messages in file order
+        long bytes;
+        long nanos;
+
+        /**
+         * Build a one-line startup report with the load throughput
+         *
+         * @param fileName Name of the file that was loaded
+         * @return Human-readable report
+         */
+        String report(String fileName) {
+            double millis = nanos / 1_000_000.0;
+            long perSecond = nanos > 0 ? (long) (photos.size() * 1_000_000_000.0 / nanos) : photos.size();
+            return String.format("Loaded %,d photos (%,d bytes) from %s in %.1f ms (%,d records/s).",
+                    photos.size(), bytes, fileName, millis, perSecond);
+        }
+    }
+
+    /**
+     * Load all photos from the given file
+     *
+     * @param file Photo file in the id;name;type;folder;dateTime;isFavourite format
+     * @return Parsed photos and skipped-line messages, in file order
+     * @throws IOException If the file cannot be mapped or read
+     */
+    static Result load(File file) throws IOException {
+        long start = System.nanoTime();
+        Result result = new Result();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            result.bytes = size;
+
+            List<ChunkParser> tasks = new ArrayList<>();
+            long[] bounds = chunkBounds(channel, size);
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                tasks.add(new ChunkParser(channel.map(FileChannel.MapMode.READ_ONLY, bounds[i], bounds[i + 1] - bounds[i]), file.getName()));
+            }
+
+            if (tasks.size() == 1) {
+                tasks.get(0).invoke(); // Not worth a hop to the pool
+            } else {
+                for (ChunkParser task : tasks) {
+                    ForkJoinPool.commonPool().execute(task);
+                }
+            }
+
+            // Stitch the chunks back together in file order
+            for (ChunkParser task : tasks) {
+                ChunkParser.Chunk chunk = task.join();
+                result.photos.addAll(chunk.photos);
+                result.messages.addAll(chunk.messages);
+            }
+        }
+
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Split the file into chunk boundaries that always fall right after a newline
+     *
+     * @param channel Channel of the file
+     * @param size    Size of the file in bytes
+     * @return Boundaries b0..bn where chunk i covers [b(i), b(i+1))
+     * @throws IOException If the file cannot be read
+     */
+    private static long[] chunkBounds(FileChannel channel, long size) throws IOException {
+        int parallelism = ForkJoinPool.commonPool().getParallelism();
+        long target = Math.max(MIN_CHUNK_SIZE, size / (parallelism * 4L));
+        target = Math.min(target, MAX_CHUNK_SIZE);
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        long pos = 0;
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        while (pos < size) {
+            long next = pos + target;
+            if (next >= size) {
+                next = size;
+            } else {
+                next = nextLineStart(channel, next, size, probe);
+            }
+            bounds.add(next);
+            pos = next;
+        }
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Find the first position after the next newline at or after the given position
+     *
+     * @param channel Channel of the file
+     * @param from    Position to start probing at
+     * @param size    Size of the file in bytes
+     * @param probe   Reusable read buffer
+     * @return Start of the next line, or the file size if there is none
+     * @throws IOException If the file cannot be read
+     */
+    private static long nextLineStart(FileChannel channel, long from, long size, ByteBuffer probe) throws IOException {
+        long pos = from;
+        while (pos < size) {
+            probe.clear();
+            int read = channel.read(probe, pos);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += read;
+        }
+        return size;
+    }
+
+    /**
+     * Fork-join task parsing one mapped chunk of complete lines
+     */
+    private static class ChunkParser extends RecursiveTask<ChunkParser.Chunk> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient MappedByteBuffer buffer; // Tasks are never serialized
+        private final String fileName; // Named in skipped-line messages
+
+        /**
+         * Photos and skipped-line messages of one chunk
+         */
+        static class Chunk {
+            final List<Photo> photos = new ArrayList<>();
+            final List<String> messages = new ArrayList<>();
+        }
+
+        /**
+         * Create a parser for one chunk
+         *
+         * @param buffer   Mapped chunk of complete lines
+         * @param fileName Name of the file being loaded
+         */
+        ChunkParser(MappedByteBuffer buffer, String fileName) {
+            this.buffer = buffer;
+            this.fileName = fileName;
+        }
+
+        @Override
+        protected Chunk compute() {
+            Chunk chunk = new Chunk();
+            byte[] line = new byte[256]; // Reused line buffer, grown on demand
+            int[] separators = new int[FIELD_COUNT - 1];
+
+            int limit = buffer.limit();
+            int pos = 0;
+            while (pos < limit) {
+                // Copy the line into the reusable buffer and strip the line ending
+                int len = 0;
+                while (pos < limit) {
+                    byte b = buffer.get(pos++);
+                    if (b == '\n') {
+                        break;
+                    }
+                    if (len == line.length) {
+                        line = Arrays.copyOf(line, line.length * 2);
+                    }
+                    line[len++] = b;
+                }
+                if (len > 0 && line[len - 1] == '\r') {
+                    len--;
+                }
+
+                parseLine(line, len, separators, chunk);
+            }
+            return chunk;
+        }
+
+        /**
+         * Parse one line into a photo, or record why it was skipped
+         *
+         * @param line       Line bytes without the line ending
+         * @param len        Number of valid bytes in the line
+         * @param separators Reusable array receiving the separator positions
+         * @param chunk      Chunk collecting the results
+         */
+        private void parseLine(byte[] line, int len, int[] separators, Chunk chunk) {
+            try {
+                Photo p = parsePhoto(line, len, separators);
+                if (p == null) {
+                    chunk.messages.add("Skipping malformed entry in " + fileName + ": " + text(line, 0, len));
+                } else {
+                    chunk.photos.add(p);
+                }
+            } catch (NumberFormatException e) {
+                chunk.messages.add("Skipping invalid entry in " + fileName + ": " + text(line, 0, len));
+            }
+        }
+    }
+
+    /**
+     * Parse one line of the photo file into a photo
+     *
+     * @param line       Line bytes without the line ending
+     * @param len        Number of valid bytes in the line
+     * @param separators Reusable array of FIELD_COUNT - 1 ints receiving the separator positions
+     * @return Parsed photo, or null if the line does not have six fields
+     * @throws NumberFormatException If the id is not a valid int
+     */
+    static Photo parsePhoto(byte[] line, int len, int[] separators) {
+        int end = findSeparators(line, len, separators);
+        if (end < 0) {
+            return null;
+        }
+
+        int id = parseInt(line, 0, separators[0]);
+        String name = text(line, separators[0] + 1, separators[1]);
+        String type = text(line, separators[1] + 1, separators[2]);
+        String folder = text(line, separators[2] + 1, separators[3]);
+        String dateTime = text(line, separators[3] + 1, separators[4]);
+        boolean isFavourite = isTrue(line, separators[4] + 1, end);
+        return new Photo(id, name, type, folder, dateTime, isFavourite);
+    }
+
+    /**
+     * Parse only the id of one line of the photo file
+     * Accepts exactly the lines parsePhoto accepts, without decoding any text
+     *
+     * @param line       Line bytes without the line ending
+     * @param len        Number of valid bytes in the line
+     * @param separators Reusable array of FIELD_COUNT - 1 ints receiving the separator positions
+     * @return Photo id
+     * @throws NumberFormatException If the line does not have six fields or the id is not a valid int
+     */
+    static int parseId(byte[] line, int len, int[] separators) {
+        if (findSeparators(line, len, separators) < 0) {
+            throw new NumberFormatException("malformed entry");
+        }
+        return parseInt(line, 0, separators[0]);
+    }
+
+    /**
+     * Locate the field separators of one line
+     *
+     * @param line       Line bytes without the line ending
+     * @param len        Number of valid bytes in the line
+     * @param separators Array receiving the separator positions
+     * @return End of the last field, or -1 if the line does not have exactly six fields
+     */
+    private static int findSeparators(byte[] line, int len, int[] separators) {
+        // Drop trailing separators, the same way String.split drops trailing empty fields
+        int end = len;
+        while (end > 0 && line[end - 1] == ';') {
+            end--;
+        }
+
+        int count = 0;
+        for (int i = 0; i < end; i++) {
+            if (line[i] == ';') {
+                if (count == separators.length) {
+                    return -1;
+                }
+                separators[count++] = i;
+            }
+        }
+        return count == separators.length ? end : -1;
+    }
+
+    /**
+     * Decode a UTF-8 field
+     *
+     * @param bytes Source bytes
+     * @param from  Start offset (inclusive)
+     * @param to    End offset (exclusive)
+     * @return Decoded string
+     */
+    private static String text(byte[] bytes, int from, int to) {
+        return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parse a decimal int field with the same rules as Integer.parseInt
+     *
+     * @param bytes Source bytes
+     * @param from  Start offset (inclusive)
+     * @param to    End offset (exclusive)
+     * @return Parsed value
+     * @throws NumberFormatException If the field is not a valid int
+     */
+    static int parseInt(byte[] bytes, int from, int to) {
+        if (from >= to) {
+            throw new NumberFormatException("empty id");
+        }
+
+        boolean negative = false;
+        int i = from;
+        if (bytes[i] == '-' || bytes[i] == '+') {
+            negative = bytes[i] == '-';
+            i++;
+            if (i == to) {
+                throw new NumberFormatException("sign without digits");
+            }
+        }
+
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("not a digit");
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw new NumberFormatException("id out of range");
+            }
+        }
+
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("id out of range");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Check whether a field equals "true", ignoring case, like Boolean.parseBoolean
+     *
+     * @param bytes Source bytes
+     * @param from  Start offset (inclusive)
+     * @param to    End offset (exclusive)
+     * @return true if the field spells "true"
+     */
+    static boolean isTrue(byte[] bytes, int from, int to) {
+        if (to - from != 4) {
+            return false;
+        }
+        return (bytes[from] | 0x20) == 't' && (bytes[from + 1] | 0x20) == 'r'
+                && (bytes[from + 2] | 0x20) == 'u' && (bytes[from + 3] | 0x20) == 'e';
+    }
+}
@@ -0,0 +1,173 @@
+package com.memorise.gallery;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * PhotoRenderer class formatting photos for output
+ * A whole page is built in memory and handed to the writer in one call, so the
+ * console sees one write per page instead of several per photo.
+ *
+ * Formats:
+ * TABLE     one aligned row per photo under a header
+ * DETAILED  the boxed field list shown by the menu, with the thumbnail if there is one
+ * NDJSON    one flat JSON object per line with the keys PhotoImporter reads,
+ *           so an exported page can be imported again
+ */
+class PhotoRenderer {
+
+    /**
+     * Output formats
+     */
+    enum Format {
+        TABLE, DETAILED, NDJSON
+    }
+
+    private static final String RULE = "--------------------------------------------------";
+    private static final int NAME_WIDTH = 30;
+    private static final int FOLDER_WIDTH = 24;
+
+    private final Format format;
+    private final Function<Photo, List<String>> collagesOf;
+    private final Function<Photo, String> previewOf;
+
+    /**
+     * Create a renderer without previews
+     *
+     * @param format     Output format
+     * @param collagesOf Collage titles of a photo, shown by DETAILED
+     */
+    PhotoRenderer(Format format, Function<Photo, List<String>> collagesOf) {
+        this(format, collagesOf, p -> null);
+    }
+
+    /**
+     * Create a renderer
+     *
+     * @param format     Output format
+     * @param collagesOf Collage titles of a photo, shown by DETAILED
+     * @param previewOf  Thumbnail of a photo or its state, null if it has none; shown by DETAILED
+     */
+    PhotoRenderer(Format format, Function<Photo, List<String>> collagesOf, Function<Photo, String> previewOf) {
+        this.format = format;
+        this.collagesOf = collagesOf;
+        this.previewOf = previewOf;
+    }
+
+    /**
+     * Write photos with a single call to the writer
+     * The writer is flushed afterwards
+     *
+     * @param photos Photos to write
+     * @param out    Target writer
+     * @throws IOException If writing fails
+     */
+    void render(List<Photo> photos, Writer out) throws IOException {
+        StringBuilder sb = new StringBuilder(photos.size() * 128);
+        if (format == Format.TABLE && !photos.isEmpty()) {
+            sb.append(String.format("%7s  %-" + NAME_WIDTH + "s %-4s %-" + FOLDER_WIDTH + "s %-19s %s%n",
+                    "ID", "Name", "Type", "Folder", "DateTime", "Fav"));
+        }
+        for (Photo p : photos) {
+            append(p, sb);
+        }
+        out.write(sb.toString());
+        out.flush();
+    }
+
+    /**
+     * Append one photo in the renderer's format
+     *
+     * @param p  Photo to format
+     * @param sb Target buffer
+     */
+    void append(Photo p, StringBuilder sb) {
+        String nl = System.lineSeparator();
+        switch (format) {
+            case TABLE:
+                sb.append(String.format("%7d  %-" + NAME_WIDTH + "s %-4s %-" + FOLDER_WIDTH + "s %-19s %s%n",
+                        p.id, clip(p.name, NAME_WIDTH), p.type, clip(p.folder, FOLDER_WIDTH), p.dateTime,
+                        p.isFavourite ? "*" : ""));
+                break;
+            case NDJSON:
+                sb.append("{\"id\":").append(p.id);
+                sb.append(",\"name\":");
+                json(p.name, sb);
+                sb.append(",\"type\":");
+                json(p.type, sb);
+                sb.append(",\"folder\":");
+                json(p.folder, sb);
+                sb.append(",\"dateTime\":");
+                json(p.dateTime, sb);
+                sb.append(",\"favourite\":").append(p.isFavourite);
+                sb.append('}').append('\n'); // NDJSON lines end with \n on every platform
+                break;
+            default:
+                sb.append(RULE).append(nl);
+                sb.append(" ID       : ").append(p.id).append(nl);
+                sb.append(" Name     : ").append(p.name).append(nl);
+                sb.append(" Type     : ").append(p.type).append(nl);
+                sb.append(" Folder   : ").append(p.folder).append(nl);
+                sb.append(" DateTime : ").append(p.dateTime).append(nl);
+                sb.append(" Favourite: ").append(p.isFavourite ? "Yes" : "No").append(nl);
+                List<String> inCollages = collagesOf.apply(p);
+                if (!inCollages.isEmpty()) {
+                    sb.append(" Collages : ").append(String.join(", ", inCollages)).append(nl);
+                }
+                String preview = previewOf.apply(p);
+                if (preview != null) {
+                    sb.append(" Preview  : ").append(preview).append(nl);
+                }
+                sb.append(RULE).append(nl);
+        }
+    }
+
+    /**
+     * Shorten a value to a column width
+     *
+     * @param value Value to shorten
+     * @param width Column width
+     * @return The value, cut with "..." if it is too long
+     */
+    private static String clip(String value, int width) {
+        return value.length() <= width ? value : value.substring(0, width - 3) + "...";
+    }
+
+    /**
+     * Append a value as a JSON string literal
+     *
+     * @param value Value to quote
+     * @param sb    Target buffer
+     */
+    private static void json(String value, StringBuilder sb) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,374 @@
+package com.memorise.gallery;
+
+import java.util.*;
+
+/**
+ * PhotoStore class holding all photo records of the gallery
+ * Keeps the photos in a doubly linked list (insertion order) together with
+ * hash indexes by id, by lower-cased name and by (name, folder), so that
+ * lookups, appends and removals run in O(1)
+ * Ids are stable: they are never reused or renumbered, even after deletes
+ * All changes to stored photos go through the store so that registered
+ * listeners (sorted views, secondary indexes) can keep themselves up to date
+ */
+class PhotoStore implements Iterable<Photo> {
+
+    /**
+     * Listener notified about every change to the photos held by the store
+     */
+    interface Listener {
+        /**
+         * Called after a photo was appended to the store
+         *
+         * @param p Added photo
+         */
+        void photoAdded(Photo p);
+
+        /**
+         * Called after a photo was removed from the store
+         *
+         * @param p Removed photo
+         */
+        void photoRemoved(Photo p);
+
+        /**
+         * Called right before fields of a stored photo change
+         *
+         * @param p Photo about to change
+         */
+        void beforeUpdate(Photo p);
+
+        /**
+         * Called right after fields of a stored photo changed
+         *
+         * @param p Changed photo
+         */
+        void afterUpdate(Photo p);
+
+        /**
+         * Called after the favourite flag of a stored photo changed
+         * No other field changes, so listeners that do not show the flag need no work
+         *
+         * @param p Changed photo
+         */
+        void favouriteChanged(Photo p);
+    }
+
+    private Photo head = null; // First photo in the linked list
+    private Photo tail = null; // Last photo in the linked list
+    private int size = 0;
+    private int nextId = 1; // Ids below this have been handed out at some point
+
+    // Hash indexes over the linked list
+    private final Map<Integer, Photo> byId = new HashMap<>();
+    private final Map<String, List<Photo>> byName = new HashMap<>();
+    private final Map<String, Photo> byNameAndFolder = new HashMap<>();
+
+    private final List<Listener> listeners = new ArrayList<>();
+
+    /**
+     * Register a listener for changes to the stored photos
+     *
+     * @param listener Listener to notify
+     */
+    void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Get the number of photos in the store
+     *
+     * @return Number of photos
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Check whether the store holds no photos
+     *
+     * @return true if the store is empty, false otherwise
+     */
+    boolean isEmpty() {
+        return head == null;
+    }
+
+    /**
+     * Hand out a new photo id
+     * Ids grow monotonically, so a deleted photo's id is never given to another photo
+     *
+     * @return Unused id
+     */
+    int allocateId() {
+        return nextId++;
+    }
+
+    /**
+     * Get the id the next allocation will return
+     *
+     * @return Next free id
+     */
+    int nextId() {
+        return nextId;
+    }
+
+    /**
+     * Make sure ids below the given value are never allocated again
+     * Used to restore the high-water mark persisted next to the snapshot
+     *
+     * @param next Lowest id that may still be allocated
+     */
+    void reserveIds(int next) {
+        nextId = Math.max(nextId, next);
+    }
+
+    /**
+     * Append a photo to the end of the list and index it
+     *
+     * @param p Photo to add
+     */
+    void add(Photo p) {
+        reserveIds(p.id + 1);
+        p.next = null;
+        p.prev = tail;
+        if (tail == null) {
+            head = p;
+        } else {
+            tail.next = p;
+        }
+        tail = p;
+        size++;
+        index(p);
+        for (Listener listener : listeners) {
+            listener.photoAdded(p);
+        }
+    }
+
+    /**
+     * Unlink a photo from the list and drop it from all indexes
+     *
+     * @param p Photo to remove
+     * @return true if the photo was part of the store, false otherwise
+     */
+    boolean remove(Photo p) {
+        if (p == null || byId.get(p.id) != p) {
+            return false;
+        }
+
+        if (p.prev == null) {
+            head = p.next;
+        } else {
+            p.prev.next = p.next;
+        }
+        if (p.next == null) {
+            tail = p.prev;
+        } else {
+            p.next.prev = p.prev;
+        }
+        p.next = null;
+        p.prev = null;
+        size--;
+        unindex(p);
+        for (Listener listener : listeners) {
+            listener.photoRemoved(p);
+        }
+        return true;
+    }
+
+    /**
+     * Find a photo by its id
+     *
+     * @param id Id of the photo
+     * @return Matching photo, or null if none exists
+     */
+    Photo findById(int id) {
+        return byId.get(id);
+    }
+
+    /**
+     * Find a photo with the given name, ignoring case
+     * When several photos share the name, the one indexed first is returned
+     *
+     * @param name Name of the photo
+     * @return Matching photo, or null if none exists
+     */
+    Photo findByName(String name) {
+        List<Photo> photos = byName.get(name.toLowerCase());
+        return (photos == null || photos.isEmpty()) ? null : photos.get(0);
+    }
+
+    /**
+     * Find all photos with the given name, ignoring case
+     *
+     * @param name Name of the photos
+     * @return Matching photos (empty if none)
+     */
+    List<Photo> findAllByName(String name) {
+        List<Photo> photos = byName.get(name.toLowerCase());
+        return photos == null ? Collections.emptyList() : new ArrayList<>(photos);
+    }
+
+    /**
+     * Find the photo with the given name inside the given folder, ignoring case
+     *
+     * @param name   Name of the photo
+     * @param folder Folder of the photo
+     * @return Matching photo, or null if none exists
+     */
+    Photo findByNameAndFolder(String name, String folder) {
+        return byNameAndFolder.get(nameAndFolderKey(name, folder));
+    }
+
+    /**
+     * Iterate over the photos in list (insertion) order
+     *
+     * @return Iterator over the linked list
+     */
+    @Override
+    public Iterator<Photo> iterator() {
+        return new Iterator<Photo>() {
+            private Photo current = head;
+
+            @Override
+            public boolean hasNext() {
+                return current != null;
+            }
+
+            @Override
+            public Photo next() {
+                if (current == null) {
+                    throw new NoSuchElementException();
+                }
+                Photo p = current;
+                current = current.next;
+                return p;
+            }
+        };
+    }
+
+    /**
+     * Apply an in-place change to a stored photo and keep indexes and listeners in sync
+     *
+     * @param p      Photo to change
+     * @param change Change to apply
+     */
+    void update(Photo p, Runnable change) {
+        for (Listener listener : listeners) {
+            listener.beforeUpdate(p);
+        }
+        unindex(p);
+        change.run();
+        index(p);
+        for (Listener listener : listeners) {
+            listener.afterUpdate(p);
+        }
+    }
+
+    /**
+     * Change the name of a photo
+     *
+     * @param p       Photo to rename
+     * @param newName New name for the photo
+     */
+    void rename(Photo p, String newName) {
+        update(p, () -> p.setTitle(newName));
+    }
+
+    /**
+     * Move a photo to another folder
+     *
+     * @param p         Photo to move
+     * @param newFolder New folder for the photo
+     */
+    void changeFolder(Photo p, String newFolder) {
+        update(p, () -> p.folder = newFolder);
+    }
+
+    /**
+     * Change the type of a photo
+     *
+     * @param p       Photo to change
+     * @param newType New type for the photo
+     */
+    void changeType(Photo p, String newType) {
+        update(p, () -> p.setType(newType));
+    }
+
+    /**
+     * Change the date of a photo
+     *
+     * @param p       Photo to change
+     * @param newDate New date for the photo
+     */
+    void changeDate(Photo p, String newDate) {
+        update(p, () -> p.setDate(newDate));
+    }
+
+    /**
+     * Mark or unmark a photo as favourite
+     * The flag is not indexed, so only the favouriteChanged notification is sent
+     *
+     * @param p         Photo to change
+     * @param favourite New favourite flag
+     */
+    void setFavourite(Photo p, boolean favourite) {
+        if (p.isFavourite == favourite) {
+            return;
+        }
+        p.isFavourite = favourite;
+        for (Listener listener : listeners) {
+            listener.favouriteChanged(p);
+        }
+    }
+
+    /**
+     * Add a photo to all indexes
+     *
+     * @param p Photo to index
+     */
+    private void index(Photo p) {
+        byId.put(p.id, p);
+        byName.computeIfAbsent(p.name.toLowerCase(), k -> new ArrayList<>()).add(p);
+        byNameAndFolder.putIfAbsent(nameAndFolderKey(p.name, p.folder), p);
+    }
+
+    /**
+     * Remove a photo from all indexes
+     *
+     * @param p Photo to unindex
+     */
+    private void unindex(Photo p) {
+        byId.remove(p.id, p);
+
+        List<Photo> photos = byName.get(p.name.toLowerCase());
+        if (photos != null) {
+            photos.remove(p);
+            if (photos.isEmpty()) {
+                byName.remove(p.name.toLowerCase());
+            }
+        }
+
+        // Another photo may share the same name and folder; let it take over the slot
+        String key = nameAndFolderKey(p.name, p.folder);
+        if (byNameAndFolder.remove(key, p) && photos != null) {
+            for (Photo other : photos) {
+                if (other.folder.equalsIgnoreCase(p.folder)) {
+                    byNameAndFolder.put(key, other);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Build the key used by the (name, folder) index
+     * ';' is the field separator of Photos.txt, so it never occurs inside a value
+     *
+     * @param name   Photo name
+     * @param folder Folder name
+     * @return Lower-cased composite key
+     */
+    private static String nameAndFolderKey(String name, String folder) {
+        return name.toLowerCase() + ";" + folder.toLowerCase();
+    }
+}
@@ -0,0 +1,217 @@
+package com.memorise.gallery;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * PhotoTable class holding photos column by column instead of one object each
+ * A Photo with its strings and list links takes a few hundred bytes of heap for
+ * a few dozen bytes of data. The table keeps one array per field:
+ * ids int[], type and folder as dictionary codes in int[], dateTimeMillis long[],
+ * favourites in a BitSet and all names UTF-8 encoded back to back in one byte
+ * arena with an int[] of end offsets. The dateTime text is rebuilt from the
+ * millis; only texts that are not in the canonical layout are kept as strings.
+ *
+ * Rows are appended and never changed. get() returns a new, detached Photo, so
+ * callers keep using the Photo API.
+ */
+class PhotoTable {
+
+    private int size = 0;
+    private int[] ids = new int[16];
+    private int[] typeCodes = new int[16];
+    private int[] folderCodes = new int[16];
+    private long[] dateTimes = new long[16];
+    private final BitSet favourites = new BitSet();
+    private byte[] names = new byte[256];
+    private int[] nameEnds = new int[16]; // Name of row r is names[nameEnds[r - 1] .. nameEnds[r])
+    private final Dictionary types = new Dictionary();
+    private final Dictionary folders = new Dictionary();
+    private final Map<Integer, String> irregularDates = new HashMap<>(); // Row to dateTime text not in the canonical layout
+
+    /**
+     * Append a photo
+     *
+     * @param p Photo to copy into the table
+     * @return Row index of the photo
+     */
+    int add(Photo p) {
+        if (size == ids.length) {
+            int capacity = Math.max(16, size + (size >> 1));
+            ids = Arrays.copyOf(ids, capacity);
+            typeCodes = Arrays.copyOf(typeCodes, capacity);
+            folderCodes = Arrays.copyOf(folderCodes, capacity);
+            dateTimes = Arrays.copyOf(dateTimes, capacity);
+            nameEnds = Arrays.copyOf(nameEnds, capacity);
+        }
+        int row = size;
+        ids[row] = p.id;
+        typeCodes[row] = types.code(p.type);
+        folderCodes[row] = folders.code(p.folder);
+        dateTimes[row] = p.dateTimeMillis;
+        if (!p.dateTime.equals(DateTimes.formatCanonical(p.dateTimeMillis))) {
+            irregularDates.put(row, p.dateTime);
+        }
+        if (p.isFavourite) {
+            favourites.set(row);
+        }
+
+        byte[] name = p.name.getBytes(StandardCharsets.UTF_8);
+        int start = nameStart(row);
+        if (start + name.length > names.length) {
+            names = Arrays.copyOf(names, Math.max(start + name.length, names.length + (names.length >> 1)));
+        }
+        System.arraycopy(name, 0, names, start, name.length);
+        nameEnds[row] = start + name.length;
+        size++;
+        return row;
+    }
+
+    /**
+     * Release the spare capacity of every column
+     * Called once all rows are added
+     */
+    void trimToSize() {
+        ids = Arrays.copyOf(ids, size);
+        typeCodes = Arrays.copyOf(typeCodes, size);
+        folderCodes = Arrays.copyOf(folderCodes, size);
+        dateTimes = Arrays.copyOf(dateTimes, size);
+        nameEnds = Arrays.copyOf(nameEnds, size);
+        names = Arrays.copyOf(names, nameStart(size));
+    }
+
+    /**
+     * Get the number of rows
+     *
+     * @return Number of photos in the table
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get the id of a row
+     *
+     * @param row Row index
+     * @return Photo id
+     */
+    int id(int row) {
+        return ids[row];
+    }
+
+    /**
+     * Get the name of a row
+     *
+     * @param row Row index
+     * @return Photo name
+     */
+    String name(int row) {
+        int start = nameStart(row);
+        return new String(names, start, nameEnds[row] - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the type of a row
+     *
+     * @param row Row index
+     * @return Photo type; shared by all rows of that type
+     */
+    String type(int row) {
+        return types.value(typeCodes[row]);
+    }
+
+    /**
+     * Get the folder of a row
+     *
+     * @param row Row index
+     * @return Folder; shared by all rows in that folder
+     */
+    String folder(int row) {
+        return folders.value(folderCodes[row]);
+    }
+
+    /**
+     * Get the parsed date of a row
+     *
+     * @param row Row index
+     * @return Epoch millis, or DateTimes.UNKNOWN
+     */
+    long dateTimeMillis(int row) {
+        return dateTimes[row];
+    }
+
+    /**
+     * Get the date text of a row as it was added
+     *
+     * @param row Row index
+     * @return dateTime text
+     */
+    String dateTime(int row) {
+        String irregular = irregularDates.get(row);
+        return irregular != null ? irregular : DateTimes.formatCanonical(dateTimes[row]);
+    }
+
+    /**
+     * Check whether a row is a favourite
+     *
+     * @param row Row index
+     * @return true if the photo is marked as favourite
+     */
+    boolean isFavourite(int row) {
+        return favourites.get(row);
+    }
+
+    /**
+     * Build a Photo from a row
+     *
+     * @param row Row index
+     * @return New photo detached from the table
+     */
+    Photo get(int row) {
+        return new Photo(ids[row], name(row), type(row), folder(row), dateTime(row), favourites.get(row));
+    }
+
+    /**
+     * Get the offset in the name arena where a row's name starts
+     *
+     * @param row Row index, or size for the end of the arena
+     * @return Start offset
+     */
+    private int nameStart(int row) {
+        return row == 0 ? 0 : nameEnds[row - 1];
+    }
+
+    /**
+     * Dictionary class coding the distinct values of a column as small ints
+     */
+    private static final class Dictionary {
+        private final List<String> values = new ArrayList<>();
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        /**
+         * Get the code of a value, adding the value if it is new
+         *
+         * @param value Column value
+         * @return Its code
+         */
+        int code(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                values.add(value);
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        /**
+         * Get the value of a code
+         *
+         * @param code Code handed out by code()
+         * @return The value
+         */
+        String value(int code) {
+            return values.get(code);
+        }
+    }
+}
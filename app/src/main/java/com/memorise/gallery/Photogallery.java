@@ -0,0 +1,1153 @@
+package com.memorise.gallery;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.regex.Matcher;
+
+/**
+ * Main Photogallery class containing the interactive console client
+ * Reads input, calls GalleryService and prints the outcome; with --script it
+ * runs a command file through the same service instead
+ */
+public class Photogallery {
+
+    // Static variables for maintaining application state
+    static GalleryService gallery = new GalleryService(SnapshotFormat.fromSystemProperty()); // All photo operations
+    static User currentUser = null; // Store the current logged in user globally
+    static UserStore userStore = new UserStore("users.txt"); // Registered users, loaded once
+    static Writer console = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16); // Photo listings, flushed per page
+    static PhotoRenderer.Format listFormat = PhotoRenderer.Format.DETAILED; // Switched with F while browsing
+
+    // Longest wait in milliseconds for the thumbnails of a new collage
+    private static final long COLLAGE_PREVIEW_MILLIS = 2000;
+
+    // Constants for password validation
+    private static final int MIN_PASSWORD_LENGTH = 8;
+    private static final Pattern PASSWORD_PATTERN =
+            Pattern.compile("^(?=.*[0-9])(?=.*[a-z])(?=.*[A-Z])(?=.*[@#$%^&+=!])(?=\\S+$).{8,}$");
+
+    // Constants for username validation
+    private static final int MIN_USERNAME_LENGTH = 4;
+    private static final Pattern USERNAME_PATTERN =
+            Pattern.compile("^[a-zA-Z0-9_]{4,20}$");
+
+
+    /**
+     * Validates username according to rules and checks for uniqueness
+     *
+     * @param username Username to validate
+     * @return true if username is valid, false otherwise
+     */
+    static boolean isValidUsername(String username) {
+        // Check for null or too short username
+        if (username == null || username.length() < MIN_USERNAME_LENGTH) {
+            System.out.println("Username must be at least " + MIN_USERNAME_LENGTH + " characters long.");
+            return false;
+        }
+
+        // Check username against pattern requirements
+        Matcher matcher = USERNAME_PATTERN.matcher(username);
+        if (!matcher.matches()) {
+            System.out.println("Username can only contain letters, numbers, and underscores, and must be 4-20 characters long.");
+            return false;
+        }
+
+        // Check if username already exists
+        if (userStore.exists(username)) {
+            System.out.println("Username already exists. Please choose another one.");
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Validates password according to security requirements
+     *
+     * @param password Password to validate
+     * @return true if password is valid, false otherwise
+     */
+    static boolean isValidPassword(String password) {
+        // Check for null or too short password
+        if (password == null || password.length() < MIN_PASSWORD_LENGTH) {
+            System.out.println("Password must be at least " + MIN_PASSWORD_LENGTH + " characters long.");
+            return false;
+        }
+
+        // Check password against pattern requirements
+        Matcher matcher = PASSWORD_PATTERN.matcher(password);
+        if (!matcher.matches()) {
+            System.out.println("Password must contain at least one digit, one lowercase letter, " +
+                    "one uppercase letter, one special character (@#$%^&+=!), and no whitespace.");
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Validates a photo name according to requirements
+     *
+     * @param name Photo name to validate
+     * @return true if name is valid, false otherwise
+     */
+    static boolean isValidPhotoName(String name) {
+        return report(GalleryService.photoNameError(name));
+    }
+
+    /**
+     * Validates a folder name according to requirements
+     *
+     * @param folder Folder name to validate
+     * @return true if folder name is valid, false otherwise
+     */
+    static boolean isValidFolderName(String folder) {
+        return report(GalleryService.folderNameError(folder));
+    }
+
+    /**
+     * Validates that the input is a valid photo type
+     *
+     * @param type Photo type to validate
+     * @return true if type is valid, false otherwise
+     */
+    static boolean isValidPhotoType(String type) {
+        return report(GalleryService.photoTypeError(type));
+    }
+
+    /**
+     * Prints a validation error if there is one
+     *
+     * @param error Error message, or null
+     * @return true if there was no error, false otherwise
+     */
+    private static boolean report(String error) {
+        if (error != null) {
+            System.out.println(error);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * User registration function - creates new user accounts
+     *
+     * @param sc Scanner for input
+     * @return true if registration was successful, false otherwise
+     */
+    static boolean registerUser(Scanner sc, String roleType) {
+        System.out.println("======= " + roleType.toUpperCase() + " Registration =======");
+
+        // Get and validate username
+        String username;
+        do {
+            System.out.print("Enter username (4-20 characters, letters, numbers, underscore only): ");
+            username = sc.nextLine().trim();
+        } while (!isValidUsername(username));
+
+        // Get and validate password
+        String password;
+        do {
+            System.out.print("Enter password (min 8 chars, must include digit, uppercase, lowercase, special char): ");
+            password = sc.nextLine();
+        } while (!isValidPassword(password));
+
+        // Role is fixed based on initial selection - no need to prompt
+        String role = roleType;
+        System.out.println("Registering as: " + role);
+
+        // Save to users.txt (as a salted hash)
+        if (userStore.register(username, password, role)) {
+            System.out.println("Registration successful as " + role + "!");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * User login function - authenticates users against stored credentials
+     *
+     * @param sc Scanner for input
+     * @param roleType The role type selected at start ("admin" or "user")
+     * @return User object if authentication successful, null otherwise
+     */
+    static User loginUser(Scanner sc, String roleType) {
+        System.out.println("\n======= " + roleType.toUpperCase() + " Login =======");
+        System.out.println("1. Login");
+        System.out.println("2. Register");
+        System.out.print("Choose option: ");
+
+        // Get login choice with validation
+        int loginChoice;
+        try {
+            loginChoice = Integer.parseInt(sc.nextLine().trim());
+            if (loginChoice != 1 && loginChoice != 2) {
+                System.out.println("Invalid option. Please enter 1 or 2.");
+                return null;
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid input. Please enter a number.");
+            return null;
+        }
+
+        if (loginChoice == 2) {
+            registerUser(sc, roleType); // Pass the role type to registration
+            System.out.println("Please login with your new credentials.");
+        }
+
+        // Get login credentials
+        System.out.print("Username: ");
+        String username = sc.nextLine().trim();
+        System.out.print("Password: ");
+        String password = sc.nextLine();
+
+        // Validate credentials against stored users - with role check
+        User user = userStore.authenticate(username, password);
+        if (user != null) {
+            // Check that the role matches the selected role type
+            if (user.role.equals(roleType)) {
+                System.out.println("Login successful as " + roleType.toUpperCase() + "!");
+                return user;
+            } else {
+                System.out.println("This account is registered as a " + user.role +
+                        ", but you selected " + roleType + ".");
+                return null;
+            }
+        }
+
+        System.out.println("Invalid credentials or account not found for role: " + roleType);
+        return null;
+    }
+
+    /**
+     * Main application entry point
+     *
+     * @param args Command line arguments; "--script file" runs a command script without the menu
+     */
+    public static void main(String[] args) {
+        MetricsRegistry.global().registerMBean(); // Readable with jconsole while the gallery runs
+
+        if (args.length == 2 && args[0].equals("--script")) {
+            gallery.load();
+            try {
+                System.out.println(new ScriptRunner(gallery).run(new File(args[1])).report());
+                System.out.print(MetricsRegistry.global().dump());
+            } catch (IOException e) {
+                System.out.println("Error running script: " + e.getMessage());
+            }
+            gallery.close();
+            return;
+        }
+
+        Scanner sc = new Scanner(System.in);
+
+        // First select role - this is the key addition
+        System.out.println("\n======================================");
+        System.out.println("   Welcome to Memorise Photo Gallery ");
+        System.out.println("======================================\n");
+        System.out.println("Are you an admin or a user?");
+        System.out.println("1. Admin");
+        System.out.println("2. User");
+        System.out.print("Select your role (1-2): ");
+
+        // Get role choice with validation
+        int roleChoice;
+        String roleType;
+        try {
+            roleChoice = Integer.parseInt(sc.nextLine().trim());
+            if (roleChoice != 1 && roleChoice != 2) {
+                System.out.println("Invalid option. Please restart the application.");
+                sc.close();
+                return;
+            }
+            roleType = (roleChoice == 1) ? "admin" : "user";
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid input. Please restart the application.");
+            sc.close();
+            return;
+        }
+
+        userStore.load(); // Read users.txt once for all login and registration checks
+
+        // Login loop - continue until successful login under the selected role
+        User loggedInUser = null;
+        while (loggedInUser == null) {
+            loggedInUser = loginUser(sc, roleType);
+        }
+        currentUser = loggedInUser; // Store the user globally
+
+        gallery.load(); // Load photos from file
+
+        int choice;
+
+        // Main program loop - show menu based on user role
+        do {
+            System.out.println("\n╔════════════════════════════════════╗");
+            System.out.println("║          PHOTO GALLERY MENU        ║");
+            System.out.println("╠════════════════════════════════════╣");
+
+            if (loggedInUser.role.equals("admin")) {
+                // Admin menu options
+                System.out.println("║ 1. View All Photos                 ║");
+                System.out.println("║ 2. Create Collage                  ║");
+                System.out.println("║ 3. Edit Image Details              ║");
+                System.out.println("║ 4. Hide Image                      ║");
+                System.out.println("║ 5. View Hidden Photos              ║");
+                System.out.println("║ 6. Exit                            ║");
+                System.out.println("║ M. Show Metrics                    ║");
+            } else {
+                // Regular user menu options
+                System.out.println("║ 1. Add Photo                       ║");
+                System.out.println("║ 2. Delete Photo                    ║");
+                System.out.println("║ 3. View All Photos                 ║");
+                System.out.println("║ 4. Change Folder/Type              ║");
+                System.out.println("║ 5. Manage Favourite                ║");
+                System.out.println("║ 6. View Favourites                 ║");
+                System.out.println("║ 7. Search Photo                    ║");
+                System.out.println("║ 8. Sort Photos                     ║");
+                System.out.println("║ 9. Import Photos                   ║");
+                System.out.println("║ 10. Exit                           ║");
+                System.out.println("║ M. Show Metrics                    ║");
+            }
+
+            System.out.println("╚════════════════════════════════════╝");
+            System.out.print("Enter your choice: ");
+
+            // Get and validate menu choice
+            String input = sc.nextLine().trim();
+            if (input.equalsIgnoreCase("m")) {
+                System.out.println();
+                System.out.print(MetricsRegistry.global().dump()); // Latency and file counters since start
+                choice = 0;
+                continue;
+            }
+            try {
+                choice = Integer.parseInt(input);
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid input. Please enter a number.");
+                choice = 0; // Invalid choice will show menu again
+                continue;
+            }
+
+            if (loggedInUser.role.equals("admin")) {
+                // Admin menu options
+                switch (choice) {
+                    case 1:
+                        viewAllPhotos(sc);
+                        break;
+                    case 2:
+                        createCollage(sc);
+                        break;
+                    case 3:
+                        editPhoto(sc);
+                        break;
+                    case 4:
+                        hidePhoto(sc);
+                        break;
+                    case 5:
+                        viewHiddenPhotos(sc);
+                        break;
+                    case 6:
+                        savePhotos();
+                        System.out.println("\nThank you for using Memorise Gallery. Goodbye!");
+                        break;
+                    default:
+                        System.out.println("Invalid choice. Please enter a number between 1 and 6.");
+                }
+            } else {
+                // Regular user menu options
+                switch (choice) {
+                    case 1:
+                        addPhoto(sc);
+                        break;
+                    case 2:
+                        deletePhoto(sc);
+                        break;
+                    case 3:
+                        viewAllPhotos(sc);
+                        break;
+                    case 4:
+                        changeTypeOrFolder(sc);
+                        break;
+                    case 5:
+                        manageFavourite(sc);
+                        break;
+                    case 6:
+                        viewFavourites(sc);
+                        break;
+                    case 7:
+                        searchPhoto(sc);
+                        break;
+                    case 8:
+                        sortPhotos(sc);
+                        break;
+                    case 9:
+                        importPhotos(sc);
+                        break;
+                    case 10:
+                        savePhotos();
+                        System.out.println("\nThank you for using Memorise Gallery. Goodbye!");
+                        break;
+                    default:
+                        System.out.println("Invalid choice. Please enter a number between 1 and 10.");
+                }
+            }
+        } while ((loggedInUser.role.equals("admin") && choice != 6) ||
+                (loggedInUser.role.equals("user") && choice != 10));
+
+        gallery.close();
+        userStore.close();
+        sc.close();
+    }
+
+    /**
+     * View hidden photos after password verification
+     *
+     * @param sc Scanner for input
+     */
+    static void viewHiddenPhotos(Scanner sc) {
+        System.out.println("\nView Hidden Photos - Password Required");
+        System.out.print("Enter your password to view hidden photos: ");
+        String password = sc.nextLine();
+
+        // Verify password matches current user's password
+        if (userStore.authenticate(currentUser.username, password) == null) {
+            System.out.println("Incorrect password. Access denied.");
+            return;
+        }
+
+        // Password correct, proceed to show hidden photos
+        if (!gallery.hasHiddenNames()) {
+            System.out.println("There are no hidden photos in hidden_images.txt file.");
+            return;
+        }
+
+        System.out.println("\nHidden Photos:");
+
+        // Hidden photos that exist in the gallery
+        List<Photo> hiddenList = gallery.hiddenPhotos();
+
+        // Display the hidden photos that exist in the gallery
+        if (hiddenList.isEmpty()) {
+            System.out.println("No hidden photos found that match existing photos in the gallery.");
+        } else {
+            System.out.println("Found " + hiddenList.size() + " hidden photos:");
+            for (Photo photo : hiddenList) {
+                System.out.println("(HIDDEN) ");
+                displayPhoto(photo);
+            }
+        }
+    }
+
+    /**
+     * Create a collage from selected photos (admin only)
+     *
+     * @param sc Scanner for input
+     */
+    static void createCollage(Scanner sc) {
+        System.out.println("\nCreate Collage");
+
+        // Validate there are photos to create a collage from
+        if (gallery.isEmpty()) {
+            System.out.println("No photos available to create collage.");
+            return;
+        }
+
+        // Get number of photos for collage with validation
+        int n;
+        try {
+            System.out.print("Enter number of photos to include in collage (1-" + GalleryService.MAX_COLLAGE_PHOTOS + "): ");
+            n = Integer.parseInt(sc.nextLine().trim());
+            if (n <= 0 || n > GalleryService.MAX_COLLAGE_PHOTOS) {
+                System.out.println("Please enter a number between 1 and " + GalleryService.MAX_COLLAGE_PHOTOS + ".");
+                return;
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid input. Please enter a number.");
+            return;
+        }
+
+        List<String> collagePhotos = new ArrayList<>();
+
+        // Collect photo titles for the collage
+        for (int i = 0; i < n; i++) {
+            System.out.print("Enter title of photo " + (i + 1) + ": ");
+            String title = sc.nextLine().trim();
+
+            if (title.isEmpty()) {
+                System.out.println("Title cannot be empty. Try again.");
+                i--; // Retry this iteration
+                continue;
+            }
+
+            if (gallery.findByName(title) != null) {
+                collagePhotos.add(title);
+            } else {
+                System.out.println("Photo titled '" + title + "' not found. Try again.");
+                i--; // Retry this iteration
+            }
+        }
+
+        // Get collage title with validation
+        String collageTitle;
+        do {
+            System.out.print("Enter collage title (1-50 characters): ");
+            collageTitle = sc.nextLine().trim();
+            if (collageTitle.isEmpty()) {
+                System.out.println("Collage title cannot be empty.");
+            } else if (collageTitle.length() > 50) {
+                System.out.println("Collage title cannot exceed 50 characters.");
+            }
+        } while (collageTitle.isEmpty() || collageTitle.length() > 50);
+
+        // Save collage to file and index
+        try {
+            if (gallery.createCollage(collageTitle, collagePhotos)) {
+                System.out.println("Collage saved successfully.");
+                previewCollage(collagePhotos);
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * List the thumbnails of a collage's photos
+     * Waits up to COLLAGE_PREVIEW_MILLIS for thumbnails still being generated;
+     * nothing is printed if none of the photos has an image
+     *
+     * @param photoNames Names of the collage photos
+     */
+    static void previewCollage(List<String> photoNames) {
+        Map<String, CompletableFuture<File>> previews = new LinkedHashMap<>();
+        for (String name : photoNames) {
+            Photo p = gallery.findByName(name);
+            if (p != null) {
+                previews.put(p.name, gallery.thumbnails().request(p));
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(COLLAGE_PREVIEW_MILLIS);
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, CompletableFuture<File>> preview : previews.entrySet()) {
+            File file;
+            try {
+                file = preview.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                sb.append(String.format(" %-30s thumbnail still being generated%n", preview.getKey()));
+                continue;
+            } catch (ExecutionException e) {
+                continue; // ThumbnailService completes with null rather than failing
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (file != null) {
+                sb.append(String.format(" %-30s %s%n", preview.getKey(), file.getPath()));
+            }
+        }
+        if (sb.length() > 0) {
+            System.out.print("Collage preview:" + System.lineSeparator() + sb);
+        }
+    }
+
+    /**
+     * Describe the thumbnail of a photo for the detailed view
+     * Requests the thumbnail if it is not generated yet
+     *
+     * @param p Photo being shown
+     * @return Thumbnail path, a note that it is being generated, or null if the photo has no image
+     */
+    static String previewOf(Photo p) {
+        CompletableFuture<File> thumbnail = gallery.thumbnails().request(p);
+        if (!thumbnail.isDone()) {
+            return "(being generated)";
+        }
+        File file = thumbnail.getNow(null);
+        return file == null ? null : file.getPath();
+    }
+
+    /**
+     * Edit photo details (admin only)
+     *
+     * @param sc Scanner for input
+     */
+    static void editPhoto(Scanner sc) {
+        // Check if there are photos to edit
+        if (gallery.isEmpty()) {
+            System.out.println("Gallery is empty. No photos to edit.");
+            return;
+        }
+
+        System.out.print("Enter the title of the photo to edit: ");
+        String title = sc.nextLine().trim();
+
+        if (title.isEmpty()) {
+            System.out.println("Title cannot be empty.");
+            return;
+        }
+
+        // Find the photo to edit
+        Photo temp = gallery.findByName(title);
+        if (temp == null) {
+            System.out.println("Photo titled '" + title + "' not found.");
+            return;
+        }
+
+        System.out.println("Editing photo: " + temp.getTitle());
+
+        // Get new title, date and type (each optional)
+        System.out.print("New title (leave blank to keep current): ");
+        String newTitle = sc.nextLine().trim();
+
+        System.out.print("New date (leave blank to keep current, format YYYY-MM-DD HH:MM:SS): ");
+        String newDate = sc.nextLine().trim();
+
+        System.out.print("New type (leave blank to keep current, png/jpg): ");
+        String newType = sc.nextLine().trim().toLowerCase();
+
+        // Validate and apply changes
+        try {
+            gallery.editPhoto(temp, newTitle, newDate, newType);
+            System.out.println("Photo details updated successfully.");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        } catch (UncheckedIOException e) {
+            System.out.println("Photo updated but not saved yet: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Hide a photo by adding it to hidden_images.txt
+     *
+     * @param sc Scanner for input
+     */
+    static void hidePhoto(Scanner sc) {
+        // Check if there are photos to hide
+        if (gallery.isEmpty()) {
+            System.out.println("Gallery is empty. No photos to hide.");
+            return;
+        }
+
+        System.out.print("Enter title of photo to hide: ");
+        String title = sc.nextLine().trim();
+
+        if (title.isEmpty()) {
+            System.out.println("Title cannot be empty.");
+            return;
+        }
+
+        // Check if photo is already hidden
+        if (gallery.isHiddenName(title) && gallery.findByName(title) != null) {
+            System.out.println("Photo '" + title + "' is already hidden.");
+            return;
+        }
+
+        // Add to hidden_images.txt and the in-memory bitmap
+        try {
+            if (gallery.hide(title)) {
+                System.out.println("Photo '" + title + "' marked as hidden.");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Add a new photo to the gallery
+     *
+     * @param sc Scanner for input
+     */
+    static void addPhoto(Scanner sc) {
+        // Get and validate photo name
+        String name;
+        do {
+            System.out.print("Enter photo name: ");
+            name = sc.nextLine().trim();
+        } while (!isValidPhotoName(name));
+
+        // Get and validate photo type
+        String type;
+        do {
+            System.out.print("Enter photo type (png/jpg): ");
+            type = sc.nextLine().toLowerCase().trim();
+        } while (!isValidPhotoType(type));
+
+        // Get and validate folder name
+        String folder;
+        do {
+            System.out.print("Enter folder name: ");
+            folder = sc.nextLine().trim();
+        } while (!isValidFolderName(folder));
+
+        try {
+            Photo newPhoto = gallery.addPhoto(name, type, folder);
+            System.out.println("\nPhoto added successfully! Details:");
+            displayPhoto(newPhoto);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage()); // e.g. same name already in this folder
+        } catch (UncheckedIOException e) {
+            System.out.println("Photo added but not saved yet: " + e.getMessage());
+        }
+    }
+
+    /**
+     * View all photos excluding hidden ones, page by page
+     *
+     * @param sc Scanner object for user input
+     */
+    static void viewAllPhotos(Scanner sc) {
+        System.out.println("\n All Photos (Excluding Hidden):");
+
+        // Check if there are photos to display
+        if (gallery.isEmpty()) {
+            System.out.println("No photos available in the gallery.");
+            return;
+        }
+
+        if (!browse(sc, token -> gallery.pageVisible(token, PhotoCursor.DEFAULT_PAGE_SIZE))) {
+            System.out.println("No visible photos to display. All photos might be hidden.");
+        }
+    }
+
+    /**
+     * Show results one page at a time
+     * N and P move to the next and previous page, F switches between the
+     * table, detailed and NDJSON formats, and Enter returns to the menu
+     *
+     * @param sc    Scanner object for user input
+     * @param pages Loads the page for a resume token (null for the first page)
+     * @return false if there were no results at all
+     */
+    static boolean browse(Scanner sc, Function<String, PhotoCursor.Page> pages) {
+        String token = null;
+        int pageNumber = 1;
+        while (true) {
+            PhotoCursor.Page page = pages.apply(token);
+            if (page.photos.isEmpty() && page.previous == null) {
+                return false;
+            }
+            try {
+                new PhotoRenderer(listFormat, gallery::collagesOf, Photogallery::previewOf).render(page.photos, console);
+            } catch (IOException e) {
+                System.out.println("Error writing output: " + e.getMessage());
+                return true;
+            }
+
+            StringBuilder prompt = new StringBuilder("Page " + pageNumber + ". Enter ");
+            if (page.next != null) {
+                prompt.append("N (next), ");
+            }
+            if (page.previous != null) {
+                prompt.append("P (previous), ");
+            }
+            prompt.append("F (format: ").append(listFormat.name().toLowerCase()).append(") or press Enter to return: ");
+            System.out.print(prompt);
+
+            String input = sc.nextLine().trim().toLowerCase();
+            if (input.equals("n") && page.next != null) {
+                token = page.next;
+                pageNumber++;
+            } else if (input.equals("p") && page.previous != null) {
+                token = page.previous;
+                pageNumber--;
+            } else if (input.equals("f")) {
+                PhotoRenderer.Format[] formats = PhotoRenderer.Format.values();
+                listFormat = formats[(listFormat.ordinal() + 1) % formats.length]; // Same page again in the new format
+            } else {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Method to delete a photo from the gallery based on ID or name
+     *
+     * @param sc Scanner object for user input
+     */
+    static void deletePhoto(Scanner sc) {
+        // Check if gallery is empty
+        if (gallery.isEmpty()) {
+            System.out.println("Gallery is empty.");
+            return;
+        }
+
+        try {
+            // Get deletion method choice from user
+            System.out.print("Delete by 1.ID or 2.Name? Enter choice (1-2): ");
+            int opt = getValidIntInput(sc, 1, 2);
+            boolean found = false;
+
+            if (opt == 1) {
+                // Delete by ID
+                System.out.print("Enter ID to delete: ");
+
+                int did = getValidPositiveIntInput(sc);
+
+                found = gallery.deletePhoto(gallery.findById(did));
+            } else {
+                // Delete by Name
+                System.out.print("Enter Name to delete: ");
+                String dname = sc.nextLine().trim();
+
+                if (dname.isEmpty()) {
+                    System.out.println("Name cannot be empty.");
+                    return;
+                }
+
+                found = gallery.deletePhoto(gallery.findByName(dname));
+
+                // Also remove from hidden list if found
+                if (found) {
+                    gallery.unhide(dname);
+                }
+            }
+
+            // Ids of the remaining photos stay as they are
+            if (found) {
+                System.out.println("Photo deleted.");
+            } else {
+                System.out.println("Photo not found.");
+            }
+        } catch (InputMismatchException e) {
+            System.out.println("Invalid input. Please enter a number.");
+            sc.nextLine(); // Clear the buffer
+        } catch (Exception e) {
+            System.out.println("Error deleting photo: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Displays details of a photo in a formatted manner
+     *
+     * @param p Photo object to display
+     */
+    static void displayPhoto(Photo p) {
+        if (p == null) {
+            System.out.println("Cannot display: Photo is null");
+            return;
+        }
+
+        try {
+            new PhotoRenderer(PhotoRenderer.Format.DETAILED, gallery::collagesOf, Photogallery::previewOf)
+                    .render(Collections.singletonList(p), console);
+        } catch (IOException e) {
+            System.out.println("Error writing output: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Manages the favorite status of a photo
+     *
+     * @param sc Scanner object for user input
+     */
+    static void manageFavourite(Scanner sc) {
+        // Check if gallery is empty
+        if (gallery.isEmpty()) {
+            System.out.println("Gallery is empty.");
+            return;
+        }
+
+        try {
+            System.out.print("Enter ID of the photo: ");
+            int id = getValidPositiveIntInput(sc);
+
+            // Look up the photo with matching ID
+            Photo temp = gallery.findById(id);
+            if (temp == null) {
+                System.out.println("Photo not found.");
+                return;
+            }
+
+            System.out.println("1. Mark as Favourite");
+            System.out.println("2. Unmark as Favourite");
+            System.out.print("Enter your choice (1-2): ");
+            int choice = getValidIntInput(sc, 1, 2);
+
+            if (choice == 1) {
+                if (gallery.setFavourite(temp, true)) {
+                    System.out.println("Photo marked as favourite.");
+                } else {
+                    System.out.println("Photo is already marked as favourite.");
+                }
+            } else { // choice == 2
+                if (gallery.setFavourite(temp, false)) {
+                    System.out.println("Photo unmarked as favourite.");
+                } else {
+                    System.out.println("Photo is already not a favourite.");
+                }
+            }
+        } catch (InputMismatchException e) {
+            System.out.println("Invalid input. Please enter a number.");
+            sc.nextLine(); // Clear the buffer
+        } catch (Exception e) {
+            System.out.println("Error managing favourites: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Displays all photos marked as favorites (excluding hidden photos), page by page
+     *
+     * @param sc Scanner object for user input
+     */
+    static void viewFavourites(Scanner sc) {
+        try {
+            if (!browse(sc, token -> gallery.pageFavourites(token, PhotoCursor.DEFAULT_PAGE_SIZE))) {
+                System.out.println("No favourite photos to display.");
+            }
+        } catch (Exception e) {
+            System.out.println("Error viewing favourites: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Changes the type or folder of a photo
+     *
+     * @param sc Scanner object for user input
+     */
+    static void changeTypeOrFolder(Scanner sc) {
+        // Check if gallery is empty
+        if (gallery.isEmpty()) {
+            System.out.println("Gallery is empty.");
+            return;
+        }
+
+        try {
+            System.out.print("Enter ID of the photo to modify: ");
+            int id = getValidPositiveIntInput(sc);
+
+            // Look up the photo with matching ID
+            Photo temp = gallery.findById(id);
+            if (temp == null) {
+                System.out.println("Photo not found.");
+                return;
+            }
+
+            System.out.println("What do you want to change?");
+            System.out.println("1. Change Folder");
+            System.out.println("2. Change Type");
+            System.out.println("3. Change Both");
+            System.out.print("Enter your choice (1-3): ");
+            int choice = getValidIntInput(sc, 1, 3);
+
+            boolean updated = false;
+
+            // Change folder if option 1 or 3 selected
+            if (choice == 1 || choice == 3) {
+                System.out.print("Enter new folder name: ");
+                String newFolder = sc.nextLine().trim();
+
+                try {
+                    if (gallery.changeFolder(temp, newFolder)) {
+                        updated = true;
+                    } else {
+                        System.out.println("Photo exists in the same folder.");
+                    }
+                } catch (IllegalArgumentException e) {
+                    System.out.println(e.getMessage());
+                }
+            }
+
+            // Change type if option 2 or 3 selected
+            if (choice == 2 || choice == 3) {
+                System.out.print("Enter new type: ");
+                String newType = sc.nextLine().trim();
+
+                try {
+                    if (gallery.changeType(temp, newType)) {
+                        updated = true;
+                    } else {
+                        System.out.println("Photo exists in the same type.");
+                    }
+                } catch (IllegalArgumentException e) {
+                    System.out.println(e.getMessage());
+                }
+            }
+
+            if (updated) {
+                System.out.println("Photo updated successfully.");
+            } else {
+                System.out.println("No changes were made.");
+            }
+        } catch (InputMismatchException e) {
+            System.out.println("Invalid input. Please enter a number.");
+            sc.nextLine(); // Clear the buffer
+        } catch (Exception e) {
+            System.out.println("Error changing photo details: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Searches for photos by name or folder, by a date range written as "from..to",
+     * or by exact type and folder written as "type:png folder:Holiday"
+     *
+     * @param sc Scanner object for user input
+     */
+    static void searchPhoto(Scanner sc) {
+        try {
+            System.out.print("Enter name or folder to search (or a date range like 2025-01-01..2025-12-31, or type:png folder:Holiday): ");
+            String query = sc.nextLine();
+
+            // Hidden photos are already excluded
+            if (!browse(sc, token -> gallery.pageSearch(query, token, PhotoCursor.DEFAULT_PAGE_SIZE))) {
+                System.out.println("No matching visible photo found.");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        } catch (Exception e) {
+            System.out.println("Error searching photos: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Imports photos in bulk from a CSV or NDJSON manifest
+     * All rows are validated with the same rules as addPhoto; accepted photos
+     * are journaled with a single write
+     *
+     * @param sc Scanner object for user input
+     */
+    static void importPhotos(Scanner sc) {
+        System.out.print("Enter manifest file (.csv, .ndjson or .jsonl): ");
+        String path = sc.nextLine().trim();
+        if (path.isEmpty()) {
+            System.out.println("File name cannot be empty.");
+            return;
+        }
+
+        File file = new File(path);
+        if (!file.isFile()) {
+            System.out.println("File not found: " + path);
+            return;
+        }
+
+        try {
+            PhotoImporter.Result result = gallery.importManifest(file);
+            int shown = 0;
+            for (String rejected : result.rejected) {
+                if (shown++ == PhotoImporter.MAX_REPORTED_REJECTS) {
+                    System.out.println("... " + (result.rejected.size() - PhotoImporter.MAX_REPORTED_REJECTS) + " more rejected rows.");
+                    break;
+                }
+                System.out.println("Rejected " + rejected);
+            }
+            System.out.println(result.report(file.getName()));
+        } catch (IOException e) {
+            System.out.println("Error importing photos: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sorts photos by ID, Name, or DateTime
+     * Only selects one of the maintained sorted views for listing; the stored
+     * list and Photos.txt keep their order
+     *
+     * @param sc Scanner object for user input
+     */
+    static void sortPhotos(Scanner sc) {
+        try {
+            // Check if there are enough photos to sort
+            if (gallery.size() < 2) {
+                System.out.println("Not enough photos to sort.");
+                return;
+            }
+
+            System.out.println("Sort by:\n1. ID\n2. Name\n3. DateTime");
+            System.out.print("Enter your choice (1-3): ");
+            int sortChoice = getValidIntInput(sc, 1, 3);
+
+            switch (sortChoice) {
+                case 1: // Sort by ID
+                    gallery.sort(SortedPhotoViews.Order.ID);
+                    break;
+
+                case 2: // Sort by Name, ignoring case
+                    gallery.sort(SortedPhotoViews.Order.NAME);
+                    break;
+
+                case 3: // Sort by DateTime
+                    gallery.sort(SortedPhotoViews.Order.DATE_TIME);
+                    break;
+            }
+
+            System.out.println("Photos sorted successfully.");
+        } catch (InputMismatchException e) {
+            System.out.println("Invalid input. Please enter a number.");
+            sc.nextLine(); // Clear the buffer
+        } catch (Exception e) {
+            System.out.println("Error sorting photos: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Saves the full photo gallery to the snapshot file and clears the change journal
+     */
+    static void savePhotos() {
+        try {
+            gallery.save();
+            // Success message removed to avoid cluttering console during internal operations
+        } catch (IOException e) {
+            System.out.println("Error saving gallery: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Utility method to get a valid integer input within a specified range
+     *
+     * @param sc  Scanner object for input
+     * @param min Minimum acceptable value
+     * @param max Maximum acceptable value
+     * @return Valid integer input within range
+     */
+    static int getValidIntInput(Scanner sc, int min, int max) {
+        int input;
+        while (true) {
+            try {
+                input = sc.nextInt();
+                sc.nextLine(); // Clear the buffer
+
+                if (input >= min && input <= max) {
+                    return input;
+                } else {
+                    System.out.print("Please enter a number between " + min + " and " + max + ": ");
+                }
+            } catch (InputMismatchException e) {
+                System.out.print("Invalid input. Please enter a number between " + min + " and " + max + ": ");
+                sc.nextLine(); // Clear the buffer
+            }
+        }
+    }
+
+    /**
+     * Utility method to get a valid positive integer input
+     *
+     * @param sc Scanner object for input
+     * @return Valid positive integer
+     */
+    static int getValidPositiveIntInput(Scanner sc) {
+        int input;
+        while (true) {
+            try {
+                input = sc.nextInt();
+                sc.nextLine(); // Clear the buffer
+
+                if (input > 0) {
+                    return input;
+                } else {
+                    System.out.print("Please enter a positive number: ");
+                }
+            } catch (InputMismatchException e) {
+                System.out.print("Invalid input. Please enter a positive number: ");
+                sc.nextLine(); // Clear the buffer
+            }
+        }
+    }
+
+    /**
+     * Loads the list of hidden photos from file
+     *
+     * @return Set containing names of hidden photos (lowercase)
+     */
+
+}
\ No newline at end of file
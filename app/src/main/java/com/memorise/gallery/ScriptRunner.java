@@ -0,0 +1,325 @@
+package com.memorise.gallery;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * ScriptRunner class replaying a command script through GalleryService
+ * Lets the gallery be driven without the interactive menu and measures the
+ * throughput of each kind of operation.
+ *
+ * One command per line, fields separated by ';'. Blank lines and lines
+ * starting with '#' are ignored. Empty edit fields keep the current value.
+ * add;name;type;folder               delete;id;3  or  delete;name;sky
+ * edit;title;newTitle;newDate;newType
+ * folder;id;newFolder                type;id;newType
+ * favourite;id;true|false            hide;name  /  unhide;name
+ * search;query                       sort;id|name|date
+ * collage;title;photo1;photo2;...    import;manifest.csv
+ * list                               save
+ * metrics (prints the metrics registry dump)
+ */
+class ScriptRunner {
+
+    // Failed lines listed individually in the report
+    private static final int MAX_REPORTED_FAILURES = 20;
+
+    /**
+     * Counters of one command kind
+     */
+    private static class Stats {
+        int count;
+        long nanos;
+    }
+
+    /**
+     * Outcome of a script run
+     */
+    static class Result {
+        final Map<String, Stats> byCommand = new TreeMap<>();
+        final List<String> failures = new ArrayList<>(); // "Line n: reason", in script order
+        int commands;
+        long nanos;
+
+        /**
+         * Build a summary with the overall and per-command operation rates
+         *
+         * @return Human-readable report
+         */
+        String report() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < failures.size() && i < MAX_REPORTED_FAILURES; i++) {
+                sb.append(failures.get(i)).append(System.lineSeparator());
+            }
+            if (failures.size() > MAX_REPORTED_FAILURES) {
+                sb.append("... ").append(failures.size() - MAX_REPORTED_FAILURES).append(" more failed commands.")
+                        .append(System.lineSeparator());
+            }
+            sb.append(String.format("Ran %,d commands (%,d failed) in %.1f ms (%,d ops/s).",
+                    commands, failures.size(), nanos / 1_000_000.0, rate(commands, nanos)));
+            for (Map.Entry<String, Stats> e : byCommand.entrySet()) {
+                Stats s = e.getValue();
+                sb.append(System.lineSeparator()).append(String.format("  %-10s %,10d  %,12d ops/s",
+                        e.getKey(), s.count, rate(s.count, s.nanos)));
+            }
+            return sb.toString();
+        }
+
+        /**
+         * Operations per second
+         *
+         * @param count Number of operations
+         * @param nanos Time they took
+         * @return Rate, or the count itself if no time was measured
+         */
+        private static long rate(int count, long nanos) {
+            return nanos > 0 ? (long) (count * 1_000_000_000.0 / nanos) : count;
+        }
+    }
+
+    private final GalleryService gallery;
+
+    /**
+     * Create a runner for a loaded gallery
+     *
+     * @param gallery Gallery the commands are applied to
+     */
+    ScriptRunner(GalleryService gallery) {
+        this.gallery = gallery;
+    }
+
+    /**
+     * Run all commands of a script file
+     *
+     * @param script Script file
+     * @return Counts, rates and failed lines
+     * @throws IOException If the script cannot be read
+     */
+    Result run(File script) throws IOException {
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new FileInputStream(script), StandardCharsets.UTF_8))) {
+            return run(br);
+        }
+    }
+
+    /**
+     * Run all commands read from a reader
+     *
+     * @param reader Script source
+     * @return Counts, rates and failed lines
+     * @throws IOException If reading fails
+     */
+    Result run(BufferedReader reader) throws IOException {
+        Result result = new Result();
+        long start = System.nanoTime();
+        String line;
+        int lineNo = 0;
+
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+
+            String[] f = trimmed.split(";", -1);
+            for (int i = 0; i < f.length; i++) {
+                f[i] = f[i].trim();
+            }
+            String command = f[0].toLowerCase();
+
+            long t0 = System.nanoTime();
+            String error;
+            try {
+                error = execute(command, f);
+            } catch (IllegalArgumentException e) {
+                error = e.getMessage();
+            } catch (IOException | UncheckedIOException e) {
+                error = "I/O error: " + e.getMessage();
+            }
+            long elapsed = System.nanoTime() - t0;
+
+            Stats stats = result.byCommand.computeIfAbsent(command, k -> new Stats());
+            stats.count++;
+            stats.nanos += elapsed;
+            result.commands++;
+            if (error != null) {
+                result.failures.add("Line " + lineNo + ": " + error);
+            }
+        }
+
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Execute one command
+     *
+     * @param command Lower-cased command name
+     * @param f       All fields of the line, the command included
+     * @return Error message, or null on success
+     * @throws IOException If a file operation fails
+     */
+    private String execute(String command, String[] f) throws IOException {
+        switch (command) {
+            case "add":
+                arity(f, 4);
+                gallery.addPhoto(f[1], f[2].toLowerCase(), f[3]);
+                return null;
+            case "delete": {
+                arity(f, 3);
+                Photo p = f[1].equalsIgnoreCase("id") ? gallery.findById(parseId(f[2])) : gallery.findByName(f[2]);
+                if (!gallery.deletePhoto(p)) {
+                    return "Photo not found.";
+                }
+                if (!f[1].equalsIgnoreCase("id")) {
+                    gallery.unhide(f[2]); // Same as deleting by name in the menu
+                }
+                return null;
+            }
+            case "edit": {
+                arity(f, 5);
+                Photo p = gallery.findByName(f[1]);
+                if (p == null) {
+                    return "Photo titled '" + f[1] + "' not found.";
+                }
+                gallery.editPhoto(p, f[2], f[3], f[4]);
+                return null;
+            }
+            case "folder": {
+                arity(f, 3);
+                Photo p = gallery.findById(parseId(f[1]));
+                if (p == null) {
+                    return "Photo not found.";
+                }
+                gallery.changeFolder(p, f[2]);
+                return null;
+            }
+            case "type": {
+                arity(f, 3);
+                Photo p = gallery.findById(parseId(f[1]));
+                if (p == null) {
+                    return "Photo not found.";
+                }
+                gallery.changeType(p, f[2]);
+                return null;
+            }
+            case "favourite": {
+                arity(f, 3);
+                Photo p = gallery.findById(parseId(f[1]));
+                if (p == null) {
+                    return "Photo not found.";
+                }
+                gallery.setFavourite(p, parseFlag(f[2]));
+                return null;
+            }
+            case "hide":
+                arity(f, 2);
+                gallery.hide(f[1]);
+                return null;
+            case "unhide":
+                arity(f, 2);
+                gallery.unhide(f[1]);
+                return null;
+            case "search":
+                arity(f, 2);
+                gallery.search(f[1]);
+                return null;
+            case "sort":
+                arity(f, 2);
+                gallery.sort(parseOrder(f[1]));
+                return null;
+            case "collage":
+                if (f.length < 3) {
+                    return "Expected a title and at least one photo.";
+                }
+                return gallery.createCollage(f[1], Arrays.asList(f).subList(2, f.length)) ? null : "Collage not saved.";
+            case "import": {
+                arity(f, 2);
+                PhotoImporter.Result imported = gallery.importManifest(new File(f[1]));
+                return imported.rejected.isEmpty() ? null : imported.rejected.size() + " manifest rows rejected.";
+            }
+            case "list":
+                arity(f, 1);
+                gallery.visiblePhotos();
+                return null;
+            case "save":
+                arity(f, 1);
+                gallery.save();
+                return null;
+            case "metrics":
+                arity(f, 1);
+                System.out.print(MetricsRegistry.global().dump());
+                return null;
+            default:
+                return "Unknown command: " + f[0];
+        }
+    }
+
+    /**
+     * Check the number of fields of a command line
+     *
+     * @param f        Fields, the command included
+     * @param expected Expected number of fields
+     * @throws IllegalArgumentException If the number differs
+     */
+    private static void arity(String[] f, int expected) {
+        if (f.length != expected) {
+            throw new IllegalArgumentException("Expected " + (expected - 1) + " arguments for " + f[0] + ", got " + (f.length - 1) + ".");
+        }
+    }
+
+    /**
+     * Parse a photo id argument
+     *
+     * @param value Argument text
+     * @return Id
+     * @throws IllegalArgumentException If the value is not a number
+     */
+    private static int parseId(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid id: " + value);
+        }
+    }
+
+    /**
+     * Parse a sort order argument
+     *
+     * @param value id, name or date
+     * @return Display order
+     * @throws IllegalArgumentException If the value names no order
+     */
+    private static SortedPhotoViews.Order parseOrder(String value) {
+        switch (value.toLowerCase()) {
+            case "id":
+                return SortedPhotoViews.Order.ID;
+            case "name":
+                return SortedPhotoViews.Order.NAME;
+            case "date":
+            case "datetime":
+                return SortedPhotoViews.Order.DATE_TIME;
+            default:
+                throw new IllegalArgumentException("Unknown sort order: " + value);
+        }
+    }
+
+    /**
+     * Parse a true/false argument
+     *
+     * @param value true or false, in any case
+     * @return The flag
+     * @throws IllegalArgumentException If the value is neither true nor false
+     */
+    private static boolean parseFlag(String value) {
+        if (value.equalsIgnoreCase("true")) {
+            return true;
+        }
+        if (value.equalsIgnoreCase("false")) {
+            return false;
+        }
+        throw new IllegalArgumentException("Expected true or false: " + value);
+    }
+}
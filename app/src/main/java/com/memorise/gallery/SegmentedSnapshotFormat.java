@@ -0,0 +1,268 @@
+package com.memorise.gallery;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * SegmentedSnapshotFormat class storing the gallery as one segment file per folder
+ * Photos.manifest lists the segments; the segment files live in Photos.segments/
+ * and hold the photos of one folder in the Photos.txt record format, in id order.
+ *
+ * Installing a snapshot rewrites only the segments of folders whose photos
+ * changed, as reported by the journal; all other segments keep their files.
+ * Editing photos in one folder rewrites one segment, moving a photo to another
+ * folder rewrites two. Changed segments are written under new file names and
+ * the new manifest is moved over the old one in one atomic step, so a crash
+ * leaves either the old or the new snapshot; files no longer listed are
+ * deleted afterwards.
+ *
+ * Segments are loaded independently and in parallel; a segment that cannot be
+ * read is reported and skipped without affecting the others. Photos are listed
+ * in id order, which is the order they were added in.
+ *
+ * Manifest lines (first line "segments;VERSION;generation"):
+ * file;count;folder
+ */
+class SegmentedSnapshotFormat implements SnapshotFormat {
+
+    static final int VERSION = 1;
+
+    private static final String HEADER = "segments";
+
+    @Override
+    public String fileName() {
+        return "Photos.manifest";
+    }
+
+    @Override
+    public PhotoLoader.Result load(File file) throws IOException {
+        long start = System.nanoTime();
+        Manifest manifest = Manifest.read(file);
+        File dir = segmentDirectory(file);
+
+        List<ForkJoinTask<PhotoLoader.Result>> tasks = new ArrayList<>();
+        for (Segment segment : manifest.segments.values()) {
+            tasks.add(ForkJoinPool.commonPool().submit(() -> PhotoLoader.load(new File(dir, segment.file))));
+        }
+
+        PhotoLoader.Result result = new PhotoLoader.Result();
+        result.bytes = file.length();
+        int i = 0;
+        for (Segment segment : manifest.segments.values()) {
+            try {
+                PhotoLoader.Result part = tasks.get(i++).join();
+                result.photos.addAll(part.photos);
+                result.messages.addAll(part.messages);
+                result.bytes += part.bytes;
+                if (part.photos.size() != segment.count) {
+                    result.messages.add("Segment " + segment.file + " of folder " + segment.folder + " holds "
+                            + part.photos.size() + " photos; the manifest lists " + segment.count + ".");
+                }
+            } catch (RuntimeException e) {
+                result.messages.add("Skipping segment " + segment.file + " of folder " + segment.folder + ": "
+                        + (e.getCause() != null ? e.getCause().getMessage() : e.getMessage()));
+            }
+        }
+        sortById(result.photos);
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Restore list order, which is id order, after the segments were concatenated
+     * Ids are unique and mostly dense, so each photo can be placed straight at its
+     * offset from the smallest id; sparse ids fall back to a merge sort of the
+     * id-ordered segment runs
+     *
+     * @param photos Photos of all segments
+     */
+    private static void sortById(List<Photo> photos) {
+        if (photos.isEmpty()) {
+            return;
+        }
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (Photo p : photos) {
+            min = Math.min(min, p.id);
+            max = Math.max(max, p.id);
+        }
+        if ((long) max - min >= 4L * photos.size()) {
+            photos.sort(Comparator.comparingInt(p -> p.id));
+            return;
+        }
+        Photo[] slots = new Photo[max - min + 1];
+        for (Photo p : photos) {
+            if (slots[p.id - min] != null) {
+                photos.sort(Comparator.comparingInt(q -> q.id)); // Repeated id; the loader reports it
+                return;
+            }
+            slots[p.id - min] = p;
+        }
+        photos.clear();
+        for (Photo p : slots) {
+            if (p != null) {
+                photos.add(p);
+            }
+        }
+    }
+
+    @Override
+    public void install(List<Photo> photos, Set<String> changedFolders, File file, File tmpFile) throws IOException {
+        Manifest old = file.exists() ? Manifest.read(file) : new Manifest(0);
+        Manifest next = new Manifest(old.generation + 1);
+        File dir = segmentDirectory(file);
+        Files.createDirectories(dir.toPath());
+
+        // Group by folder; photos arrive in list order, so every group is in id order
+        Map<String, List<Photo>> byFolder = new LinkedHashMap<>();
+        for (Photo p : photos) {
+            byFolder.computeIfAbsent(p.folder, k -> new ArrayList<>()).add(p);
+        }
+
+        TextSnapshotFormat text = new TextSnapshotFormat();
+        for (Map.Entry<String, List<Photo>> group : byFolder.entrySet()) {
+            Segment previous = old.segments.get(group.getKey());
+            boolean unchanged = changedFolders != null && !changedFolders.contains(group.getKey());
+            if (unchanged && previous != null && previous.count == group.getValue().size()
+                    && new File(dir, previous.file).exists()) {
+                next.segments.put(group.getKey(), previous); // Keep the file
+                continue;
+            }
+
+            Segment segment = new Segment("seg-" + next.generation + "-" + next.segments.size() + ".txt",
+                    group.getValue().size(), group.getKey());
+            File segmentFile = new File(dir, segment.file);
+            try (FileOutputStream out = new FileOutputStream(segmentFile)) {
+                text.write(group.getValue(), new BufferedOutputStream(out));
+                out.getFD().sync();
+            }
+            MetricsRegistry.global().written(dir.getName(), segmentFile.length());
+            next.segments.put(group.getKey(), segment);
+        }
+
+        // Installing the manifest switches to the new segments in one step
+        byte[] manifest = next.toBytes();
+        try (FileOutputStream out = new FileOutputStream(tmpFile)) {
+            out.write(manifest);
+            out.getFD().sync();
+        }
+        MetricsRegistry.global().written(file.getName(), manifest.length);
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Set<String> live = new HashSet<>();
+        for (Segment segment : next.segments.values()) {
+            live.add(segment.file);
+        }
+        File[] files = dir.listFiles();
+        for (File f : files == null ? new File[0] : files) {
+            if (!live.contains(f.getName())) {
+                f.delete();
+            }
+        }
+    }
+
+    @Override
+    public LazySnapshot openLazy(File file) throws IOException {
+        throw new IOException("segmented snapshots are always loaded in full");
+    }
+
+    /**
+     * Get the directory holding the segment files of a manifest
+     *
+     * @param manifest Manifest file
+     * @return Segment directory next to the manifest
+     */
+    static File segmentDirectory(File manifest) {
+        String name = manifest.getName();
+        int dot = name.lastIndexOf('.');
+        return new File(manifest.getAbsoluteFile().getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + ".segments");
+    }
+
+    /**
+     * Segment class describing one segment file in the manifest
+     */
+    private static final class Segment {
+        final String file;
+        final int count;
+        final String folder;
+
+        /**
+         * Create a segment entry
+         *
+         * @param file   Segment file name inside the segment directory
+         * @param count  Number of photos in the segment
+         * @param folder Folder the segment holds
+         */
+        Segment(String file, int count, String folder) {
+            this.file = file;
+            this.count = count;
+            this.folder = folder;
+        }
+    }
+
+    /**
+     * Manifest class holding the segments of one snapshot by folder
+     */
+    private static final class Manifest {
+        final long generation; // Grows with every install, so new segment files never overwrite live ones
+        final Map<String, Segment> segments = new LinkedHashMap<>();
+
+        /**
+         * Create an empty manifest
+         *
+         * @param generation Install generation
+         */
+        Manifest(long generation) {
+            this.generation = generation;
+        }
+
+        /**
+         * Read a manifest file
+         *
+         * @param file Manifest file
+         * @return Parsed manifest
+         * @throws IOException If the file cannot be read or is not a manifest
+         */
+        static Manifest read(File file) throws IOException {
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            String[] header = lines.isEmpty() ? new String[0] : lines.get(0).split(";");
+            if (header.length != 3 || !header[0].equals(HEADER) || !header[1].equals(String.valueOf(VERSION))) {
+                throw new IOException(file.getName() + " is not a segment manifest");
+            }
+            try {
+                Manifest manifest = new Manifest(Long.parseLong(header[2]));
+                for (String line : lines.subList(1, lines.size())) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    String[] parts = line.split(";", 3);
+                    if (parts.length != 3) {
+                        throw new IOException(file.getName() + " has an invalid line: " + line);
+                    }
+                    manifest.segments.put(parts[2], new Segment(parts[0], Integer.parseInt(parts[1]), parts[2]));
+                }
+                return manifest;
+            } catch (NumberFormatException e) {
+                throw new IOException(file.getName() + " has an invalid number: " + e.getMessage());
+            }
+        }
+
+        /**
+         * Format the manifest
+         *
+         * @return Manifest file contents
+         */
+        byte[] toBytes() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(HEADER).append(';').append(VERSION).append(';').append(generation).append(System.lineSeparator());
+            for (Segment s : segments.values()) {
+                sb.append(s.file).append(';').append(s.count).append(';').append(s.folder).append(System.lineSeparator());
+            }
+            return sb.toString().getBytes(StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.memorise.gallery;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * SingleFileSnapshotFormat class for snapshot layouts that fit in one file
+ * Subclasses only encode the photos to a stream; installing writes that
+ * stream to a scratch file and moves it over the snapshot
+ */
+abstract class SingleFileSnapshotFormat implements SnapshotFormat {
+
+    /**
+     * Write all photos as one snapshot
+     *
+     * @param photos Photos in list order
+     * @param out    Stream receiving the snapshot
+     * @throws IOException If writing fails
+     */
+    abstract void write(List<Photo> photos, OutputStream out) throws IOException;
+
+    /**
+     * Write all photos to tmpFile, sync it and move it over the snapshot in one atomic step
+     * The whole file is rewritten, so changedFolders is ignored
+     *
+     * @param photos         Photos in list order
+     * @param changedFolders Ignored
+     * @param file           Snapshot file
+     * @param tmpFile        Scratch file next to the snapshot
+     * @throws IOException If writing or moving fails
+     */
+    @Override
+    public void install(List<Photo> photos, Set<String> changedFolders, File file, File tmpFile) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(tmpFile)) {
+            write(photos, new BufferedOutputStream(out));
+            out.getFD().sync();
+        }
+        MetricsRegistry.global().written(file.getName(), tmpFile.length());
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
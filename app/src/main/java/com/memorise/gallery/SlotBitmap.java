@@ -0,0 +1,258 @@
+package com.memorise.gallery;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * SlotBitmap class holding a set of non-negative ints as a compressed bitmap
+ * The value range is split into containers of 65536 values. A container with
+ * few values is a sorted array of their low 16 bits, a fuller one a plain 8 KB
+ * bitmap, so sparse sets (the photos of one folder) and dense sets (a common
+ * type) both stay small.
+ *
+ * Bitmaps are copy-on-write between generations: every container belongs to
+ * the generation that created it. Changing a bitmap of an earlier generation
+ * goes through mutable(), which copies the container table, and a container
+ * is copied before its first change in the new generation. A published
+ * generation is therefore never modified and can be read without a lock.
+ */
+class SlotBitmap {
+    private static final int CONTAINER_BITS = 16;
+    private static final int LOW_MASK = (1 << CONTAINER_BITS) - 1;
+    private static final int BITMAP_WORDS = 1 << (CONTAINER_BITS - 6);
+    private static final int ARRAY_MAX = 4096; // Above this an array is larger than the 8 KB bitmap
+
+    private final long generation;
+    private Object[] containers; // char[] of sorted low bits, long[] bitmap, or null
+    private int[] counts; // Values per container
+    private long[] owners; // Generation that created each container
+    private int size = 0;
+
+    /**
+     * Create an empty bitmap
+     *
+     * @param generation Generation allowed to change the bitmap
+     */
+    SlotBitmap(long generation) {
+        this.generation = generation;
+        this.containers = new Object[0];
+        this.counts = new int[0];
+        this.owners = new long[0];
+    }
+
+    /**
+     * Create a copy sharing all containers
+     *
+     * @param source     Bitmap to copy
+     * @param generation Generation allowed to change the copy
+     */
+    private SlotBitmap(SlotBitmap source, long generation) {
+        this.generation = generation;
+        this.containers = source.containers.clone();
+        this.counts = source.counts.clone();
+        this.owners = source.owners.clone();
+        this.size = source.size;
+    }
+
+    /**
+     * Get a bitmap with the same values that a generation may change
+     *
+     * @param generation Generation about to make changes
+     * @return This bitmap if it belongs to the generation, a shallow copy otherwise
+     */
+    SlotBitmap mutable(long generation) {
+        return this.generation == generation ? this : new SlotBitmap(this, generation);
+    }
+
+    /**
+     * Get the number of values
+     *
+     * @return Number of values in the set
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Check whether a value is in the set
+     *
+     * @param value Value to look up
+     * @return true if the value is in the set
+     */
+    boolean contains(int value) {
+        int c = value >>> CONTAINER_BITS;
+        if (c >= containers.length || containers[c] == null) {
+            return false;
+        }
+        Object container = containers[c];
+        int low = value & LOW_MASK;
+        if (container instanceof long[]) {
+            return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) container, 0, counts[c], (char) low) >= 0;
+    }
+
+    /**
+     * Add a value
+     * Only allowed on a bitmap returned by mutable() for the current generation
+     *
+     * @param value Value to add
+     */
+    void add(int value) {
+        int c = value >>> CONTAINER_BITS;
+        if (c >= containers.length) {
+            int length = Math.max(c + 1, containers.length * 2);
+            containers = Arrays.copyOf(containers, length);
+            counts = Arrays.copyOf(counts, length);
+            owners = Arrays.copyOf(owners, length);
+        }
+        int low = value & LOW_MASK;
+        Object container = own(c);
+        if (container == null) {
+            container = new char[4];
+            containers[c] = container;
+            owners[c] = generation;
+        }
+
+        if (container instanceof long[]) {
+            long[] words = (long[]) container;
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) == 0) {
+                words[low >>> 6] |= bit;
+                counts[c]++;
+                size++;
+            }
+            return;
+        }
+
+        char[] values = (char[]) container;
+        int n = counts[c];
+        int at = Arrays.binarySearch(values, 0, n, (char) low);
+        if (at >= 0) {
+            return;
+        }
+        at = -at - 1;
+        if (n == ARRAY_MAX) {
+            long[] words = toBitmap(values, n);
+            words[low >>> 6] |= 1L << low;
+            containers[c] = words;
+        } else {
+            if (n == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, n * 2));
+                containers[c] = values;
+            }
+            System.arraycopy(values, at, values, at + 1, n - at);
+            values[at] = (char) low;
+        }
+        counts[c]++;
+        size++;
+    }
+
+    /**
+     * Remove a value
+     * Only allowed on a bitmap returned by mutable() for the current generation
+     *
+     * @param value Value to remove
+     */
+    void remove(int value) {
+        if (!contains(value)) {
+            return;
+        }
+        int c = value >>> CONTAINER_BITS;
+        int low = value & LOW_MASK;
+        Object container = own(c);
+        int n = --counts[c];
+        size--;
+        if (n == 0) {
+            containers[c] = null;
+        } else if (container instanceof long[]) {
+            long[] words = (long[]) container;
+            words[low >>> 6] &= ~(1L << low);
+            if (n <= ARRAY_MAX / 2) {
+                containers[c] = toArray(words, n); // Back to an array once clearly sparse
+            }
+        } else {
+            char[] values = (char[]) container;
+            int at = Arrays.binarySearch(values, 0, n + 1, (char) low);
+            System.arraycopy(values, at + 1, values, at, n - at);
+        }
+    }
+
+    /**
+     * Pass every value to an action in ascending order
+     *
+     * @param action Action receiving each value
+     */
+    void forEach(IntConsumer action) {
+        for (int c = 0; c < containers.length; c++) {
+            Object container = containers[c];
+            int high = c << CONTAINER_BITS;
+            if (container instanceof long[]) {
+                long[] words = (long[]) container;
+                for (int w = 0; w < words.length; w++) {
+                    long word = words[w];
+                    while (word != 0) {
+                        action.accept(high | (w << 6) | Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            } else if (container != null) {
+                char[] values = (char[]) container;
+                for (int i = 0; i < counts[c]; i++) {
+                    action.accept(high | values[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get a container this generation may change, copying it if it is shared
+     *
+     * @param c Container index
+     * @return The owned container, or null if there is none
+     */
+    private Object own(int c) {
+        Object container = containers[c];
+        if (container != null && owners[c] != generation) {
+            container = container instanceof long[] ? ((long[]) container).clone() : ((char[]) container).clone();
+            containers[c] = container;
+            owners[c] = generation;
+        }
+        return container;
+    }
+
+    /**
+     * Convert an array container to a bitmap container
+     *
+     * @param values Sorted low bits
+     * @param n      Number of values
+     * @return Bitmap words
+     */
+    private static long[] toBitmap(char[] values, int n) {
+        long[] words = new long[BITMAP_WORDS];
+        for (int i = 0; i < n; i++) {
+            words[values[i] >>> 6] |= 1L << values[i];
+        }
+        return words;
+    }
+
+    /**
+     * Convert a bitmap container to an array container
+     *
+     * @param words Bitmap words
+     * @param n     Number of bits set
+     * @return Sorted low bits
+     */
+    private static char[] toArray(long[] words, int n) {
+        char[] values = new char[n];
+        int i = 0;
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            while (word != 0) {
+                values[i++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return values;
+    }
+}
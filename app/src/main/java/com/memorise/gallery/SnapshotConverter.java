@@ -0,0 +1,73 @@
+package com.memorise.gallery;
+
+import java.io.*;
+
+/**
+ * SnapshotConverter class converting the gallery between the text, binary and segmented snapshot formats
+ * Usage: java com.memorise.gallery.SnapshotConverter to-binary [Photos.txt] [Photos.bin]
+ *        java com.memorise.gallery.SnapshotConverter to-segments [Photos.txt] [Photos.manifest]
+ *        java com.memorise.gallery.SnapshotConverter to-text [Photos.bin] [Photos.txt]
+ * The source format follows from the source file name (.bin, .manifest, otherwise text)
+ */
+public class SnapshotConverter {
+
+    /**
+     * Command line entry point
+     *
+     * @param args Direction followed by optional source and target file names
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || (!args[0].equals("to-binary") && !args[0].equals("to-segments") && !args[0].equals("to-text"))) {
+            System.out.println("Usage: java com.memorise.gallery.SnapshotConverter to-binary|to-segments|to-text [source] [target]");
+            return;
+        }
+
+        SnapshotFormat to = SnapshotFormat.forName(args[0].substring("to-".length()));
+        String defaultSource = to instanceof TextSnapshotFormat ? new BinarySnapshotFormat().fileName() : new TextSnapshotFormat().fileName();
+        File source = new File(args.length > 1 ? args[1] : defaultSource);
+        File target = new File(args.length > 2 ? args[2] : to.fileName());
+        SnapshotFormat from = formatOf(source);
+
+        try {
+            int count = convert(from, source, to, target);
+            System.out.println("Converted " + count + " photos from " + source.getName()
+                    + " (" + source.length() + " bytes) to " + target.getName()
+                    + " (" + target.length() + " bytes).");
+        } catch (IOException e) {
+            System.out.println("Error converting " + source.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Guess the format of a snapshot file from its name
+     *
+     * @param file Snapshot file
+     * @return Binary format for .bin, segmented format for .manifest, text format otherwise
+     */
+    static SnapshotFormat formatOf(File file) {
+        String name = file.getName();
+        if (name.endsWith(".bin")) {
+            return new BinarySnapshotFormat();
+        }
+        return name.endsWith(".manifest") ? new SegmentedSnapshotFormat() : new TextSnapshotFormat();
+    }
+
+    /**
+     * Read a snapshot in one format and write it in another
+     *
+     * @param from   Format of the source file
+     * @param source Source file
+     * @param to     Format of the target file
+     * @param target Target file
+     * @return Number of photos converted
+     * @throws IOException If reading or writing fails
+     */
+    static int convert(SnapshotFormat from, File source, SnapshotFormat to, File target) throws IOException {
+        PhotoLoader.Result result = from.load(source);
+        for (String message : result.messages) {
+            System.out.println(message);
+        }
+        to.install(result.photos, null, target, new File(target.getPath() + ".tmp"));
+        return result.photos.size();
+    }
+}
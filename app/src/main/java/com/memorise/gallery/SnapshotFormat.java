@@ -0,0 +1,75 @@
+package com.memorise.gallery;
+
+import java.io.*;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * SnapshotFormat interface for the file holding the full photo gallery
+ * savePhotos and the journal compaction write through it and loadPhotos reads
+ * through it, so the text, binary and segmented layouts are interchangeable backends
+ */
+interface SnapshotFormat {
+
+    /**
+     * Get the name of the snapshot file
+     *
+     * @return File name, e.g. Photos.txt
+     */
+    String fileName();
+
+    /**
+     * Read all photos of a snapshot file
+     *
+     * @param file Snapshot file
+     * @return Photos and skipped-entry messages, in file order
+     * @throws IOException If the file cannot be read
+     */
+    PhotoLoader.Result load(File file) throws IOException;
+
+    /**
+     * Write all photos as the new snapshot file
+     * The photos are written to tmpFile, which is then moved over the snapshot in
+     * one atomic step, so a crash leaves either the old or the new snapshot and
+     * tmpFile is gone once the new one is installed
+     *
+     * @param photos         Photos in list order
+     * @param changedFolders Folders whose photos changed since the snapshot was last
+     *                       installed, or null if unknown; single-file formats ignore it
+     * @param file           Snapshot file
+     * @param tmpFile        Scratch file next to the snapshot
+     * @throws IOException If writing or moving fails
+     */
+    void install(List<Photo> photos, Set<String> changedFolders, File file, File tmpFile) throws IOException;
+
+    /**
+     * Open a snapshot file for lazy, random access to its records
+     *
+     * @param file Snapshot file
+     * @return Lazy view holding only an index of the records
+     * @throws IOException If the file cannot be read or cannot be served lazily
+     */
+    LazySnapshot openLazy(File file) throws IOException;
+
+    /**
+     * Pick the snapshot format from the gallery.format system property
+     *
+     * @return Binary format for "binary", segmented format for "segments", text format otherwise
+     */
+    static SnapshotFormat fromSystemProperty() {
+        return forName(System.getProperty("gallery.format"));
+    }
+
+    /**
+     * Pick a snapshot format by name
+     *
+     * @param name "binary", "segments" or anything else for text
+     * @return Snapshot format
+     */
+    static SnapshotFormat forName(String name) {
+        if ("binary".equalsIgnoreCase(name)) {
+            return new BinarySnapshotFormat();
+        }
+        return "segments".equalsIgnoreCase(name) ? new SegmentedSnapshotFormat() : new TextSnapshotFormat();
+    }
+}
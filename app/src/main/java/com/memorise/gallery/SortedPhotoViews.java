@@ -0,0 +1,116 @@
+package com.memorise.gallery;
+
+import java.util.*;
+
+/**
+ * SortedPhotoViews class defining the display orders and keeping a date index
+ * The orders and their comparators are used by the catalog's sorted listings.
+ * The photos are also kept ordered by date, updated incrementally through
+ * PhotoStore change notifications, so date range searches are a subset lookup
+ * rather than a scan
+ */
+class SortedPhotoViews implements PhotoStore.Listener {
+
+    /**
+     * Orderings offered by the views
+     */
+    enum Order {
+        ID, NAME, DATE_TIME
+    }
+
+    // Ties are broken by id so that distinct photos never compare as equal
+    static final Comparator<Photo> BY_ID = Comparator.comparingInt(p -> p.id);
+    static final Comparator<Photo> BY_NAME = (a, b) -> {
+        int c = a.name.compareToIgnoreCase(b.name);
+        return c != 0 ? c : Integer.compare(a.id, b.id);
+    };
+    static final Comparator<Photo> BY_DATE_TIME = (a, b) -> {
+        int c = DateTimes.compare(a.dateTimeMillis, b.dateTimeMillis);
+        return c != 0 ? c : Integer.compare(a.id, b.id);
+    };
+
+    private final TreeSet<Photo> byDateTime = new TreeSet<>(BY_DATE_TIME);
+
+    /**
+     * Create the date index over a store and subscribe to its changes
+     *
+     * @param store Store whose photos should be indexed
+     */
+    SortedPhotoViews(PhotoStore store) {
+        for (Photo p : store) {
+            photoAdded(p);
+        }
+        store.addListener(this);
+    }
+
+    /**
+     * Get the comparator of an ordering
+     *
+     * @param order Ordering
+     * @return Comparator sorting photos in that order
+     */
+    static Comparator<Photo> comparator(Order order) {
+        switch (order) {
+            case NAME:
+                return BY_NAME;
+            case DATE_TIME:
+                return BY_DATE_TIME;
+            default:
+                return BY_ID;
+        }
+    }
+
+    /**
+     * Find the photos taken within a time range by searching the date-ordered view
+     * Photos with an unrecognised date never match
+     *
+     * @param fromMillis Start of the range (inclusive), epoch millis
+     * @param toMillis   End of the range (inclusive), epoch millis
+     * @return Photos in the range, oldest first
+     */
+    Collection<Photo> between(long fromMillis, long toMillis) {
+        if (DateTimes.compare(fromMillis, toMillis) > 0) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableSortedSet(
+                byDateTime.subSet(probe(fromMillis, Integer.MIN_VALUE), true, probe(toMillis, Integer.MAX_VALUE), true));
+    }
+
+    /**
+     * Build a search key that sorts at the given time
+     *
+     * @param millis Epoch millis
+     * @param id     Tie-breaking id
+     * @return Detached probe photo
+     */
+    private static Photo probe(long millis, int id) {
+        Photo probe = new Photo(id, "", "", "", "", false);
+        probe.dateTimeMillis = millis;
+        return probe;
+    }
+
+    @Override
+    public void photoAdded(Photo p) {
+        byDateTime.add(p);
+    }
+
+    @Override
+    public void photoRemoved(Photo p) {
+        byDateTime.remove(p);
+    }
+
+    @Override
+    public void beforeUpdate(Photo p) {
+        photoRemoved(p); // The date may be about to change
+    }
+
+    @Override
+    public void afterUpdate(Photo p) {
+        photoAdded(p);
+    }
+
+    @Override
+    public void favouriteChanged(Photo p) {
+        // The flag is not a sort key
+    }
+}
@@ -0,0 +1,40 @@
+package com.memorise.gallery;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * TextSnapshotFormat class for the original Photos.txt layout
+ * One id;name;type;folder;dateTime;isFavourite record per line
+ */
+class TextSnapshotFormat extends SingleFileSnapshotFormat {
+
+    @Override
+    public String fileName() {
+        return "Photos.txt";
+    }
+
+    @Override
+    public PhotoLoader.Result load(File file) throws IOException {
+        return PhotoLoader.load(file);
+    }
+
+    @Override
+    void write(List<Photo> photos, OutputStream out) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        for (Photo p : photos) {
+            writer.write(p.toRecord());
+            writer.newLine();
+        }
+        writer.flush();
+    }
+
+    @Override
+    public LazySnapshot openLazy(File file) throws IOException {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        File indexFile = new File(file.getAbsoluteFile().getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + ".idx");
+        return LazySnapshot.openText(file, indexFile);
+    }
+}
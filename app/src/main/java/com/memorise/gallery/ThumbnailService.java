@@ -0,0 +1,391 @@
+package com.memorise.gallery;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ThumbnailService class producing small preview images of photos in the background
+ * The image of a photo is looked up as folder/name.type below the image root
+ * (-Dgallery.images, default images/ next to the data files). Thumbnails are
+ * requested by photo id and generated on a small pool of daemon threads
+ * (gallery.thumbnails.workers) with a bounded queue (gallery.thumbnails.queue);
+ * requests that do not fit are dropped and made again the next time the photo
+ * is shown.
+ *
+ * Images are decoded with ImageIO using source subsampling, so only about twice
+ * the thumbnail size is ever decoded, never the full-resolution bitmap, and then
+ * scaled to at most gallery.thumbnails.size pixels on the longer edge.
+ *
+ * The cache on disk (thumbnails/ next to the data files) is content-addressed:
+ * a thumbnail is named after the SHA-256 of the image bytes and the thumbnail
+ * size, so identical images share one file and an edited image gets a new one.
+ * The files are kept in least-recently-used order under a byte budget
+ * (gallery.thumbnails.cacheBytes, default 64 MB); their modification time is the
+ * last use, so the order survives restarts. Which cache file belongs to which
+ * photo is held in memory together with the image's length and modification
+ * time, and found again by hashing the image after a restart.
+ */
+class ThumbnailService implements Closeable {
+
+    // Longer edge of a thumbnail in pixels
+    static final int SIZE = Integer.getInteger("gallery.thumbnails.size", 160);
+    // Bytes the cache directory may hold before the least recently used thumbnails are deleted
+    private static final long CACHE_BYTES = Long.getLong("gallery.thumbnails.cacheBytes", 64L << 20);
+    private static final int WORKERS = Integer.getInteger("gallery.thumbnails.workers",
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)));
+    private static final int QUEUE = Integer.getInteger("gallery.thumbnails.queue", 256);
+
+    private final File imageRoot;
+    private final File cacheDir;
+    private final ThreadPoolExecutor workers;
+    private final Map<Integer, Entry> byId = new ConcurrentHashMap<>(); // Last generated thumbnail per photo id
+    private final Map<Integer, CompletableFuture<File>> pending = new ConcurrentHashMap<>(); // Queued or running by photo id
+    private final LinkedHashMap<String, Long> cached = new LinkedHashMap<>(64, 0.75f, true); // Cache file sizes, eldest first
+    private long cachedBytes = 0; // Guarded by cached
+    private boolean scanned = false; // Guarded by cached; the cache directory is listed on first use
+    private final MetricsRegistry metrics = MetricsRegistry.global();
+
+    /**
+     * Create a service
+     * No thread is started before the first request
+     *
+     * @param imageRoot Directory holding the images in one subdirectory per folder
+     * @param cacheDir  Directory holding the generated thumbnails
+     */
+    ThumbnailService(File imageRoot, File cacheDir) {
+        this.imageRoot = imageRoot;
+        this.cacheDir = cacheDir;
+        AtomicInteger threads = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(WORKERS, WORKERS, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(QUEUE), r -> {
+            Thread t = new Thread(r, "thumbnail-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.workers.allowCoreThreadTimeOut(true); // No threads while nothing is browsed
+    }
+
+    /**
+     * Get the image file of a photo
+     *
+     * @param p Photo
+     * @return folder/name.type below the image root; it may not exist
+     */
+    File source(Photo p) {
+        return new File(new File(imageRoot, p.folder), p.name + "." + p.type);
+    }
+
+    /**
+     * Get the thumbnail of a photo if it is already generated
+     * Counts as a use for the LRU order
+     *
+     * @param p Photo
+     * @return Thumbnail file, or null if there is none for the current image
+     */
+    File ready(Photo p) {
+        Entry entry = byId.get(p.id);
+        if (entry == null || entry.key == null || !entry.matches(source(p))) {
+            return null;
+        }
+        return touch(entry.key) ? new File(cacheDir, entry.key) : null;
+    }
+
+    /**
+     * Get the thumbnail of a photo, generating it in the background if needed
+     * The photo's fields are read here, so later changes to it do not matter
+     *
+     * @param p Photo
+     * @return Future completed with the thumbnail file, or with null if the photo has
+     * no readable image or the queue was full
+     */
+    CompletableFuture<File> request(Photo p) {
+        File ready = ready(p);
+        if (ready != null) {
+            return CompletableFuture.completedFuture(ready);
+        }
+        File source = source(p);
+        Entry entry = byId.get(p.id);
+        if (!source.isFile() || (entry != null && entry.key == null && entry.matches(source))) {
+            return CompletableFuture.completedFuture(null); // No image, or one that failed to decode
+        }
+
+        int id = p.id;
+        String format = p.type.equalsIgnoreCase("jpg") ? "jpg" : "png";
+        CompletableFuture<File> future = new CompletableFuture<>();
+        CompletableFuture<File> running = pending.putIfAbsent(id, future);
+        if (running != null) {
+            return running;
+        }
+        try {
+            workers.execute(() -> generate(id, source, format, future));
+        } catch (RejectedExecutionException e) {
+            pending.remove(id, future); // Queue full; asked again when the photo is shown next
+            future.complete(null);
+        }
+        return future;
+    }
+
+    /**
+     * Generate the thumbnail of a photo ahead of time
+     * Never blocks; does nothing if the photo has no image or the queue is full
+     *
+     * @param p Photo
+     */
+    void prefetch(Photo p) {
+        request(p);
+    }
+
+    /**
+     * Stop generating thumbnails
+     * Queued requests are dropped; running ones are interrupted
+     */
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Generate one thumbnail on a worker thread
+     *
+     * @param id     Photo id
+     * @param source Image file
+     * @param format Thumbnail image format, "jpg" or "png"
+     * @param future Future to complete
+     */
+    private void generate(int id, File source, String format, CompletableFuture<File> future) {
+        long start = System.nanoTime();
+        File result = null;
+        try {
+            long length = source.length();
+            long modified = source.lastModified();
+            String key = hash(source) + "-" + SIZE + "." + format;
+            File file = new File(cacheDir, key);
+            if (!touch(key)) {
+                BufferedImage thumbnail = decode(source, format);
+                if (thumbnail == null) {
+                    key = null; // Not an image ImageIO can read; not tried again while the file is unchanged
+                } else {
+                    write(thumbnail, format, file);
+                    admit(key, file.length());
+                }
+            }
+            byId.put(id, new Entry(source.getPath(), length, modified, key));
+            result = key == null ? null : file;
+        } catch (IOException | RuntimeException e) {
+            result = null; // Unreadable image or full disk; tried again when the photo is shown next
+        } finally {
+            pending.remove(id, future);
+            future.complete(result);
+            metrics.record("thumbnail", start);
+        }
+    }
+
+    /**
+     * Hash the bytes of an image
+     *
+     * @param source Image file
+     * @return Hex digest identifying the content
+     * @throws IOException If the file cannot be read
+     */
+    private String hash(File source) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every Java platform has SHA-256
+        }
+        try (InputStream in = new DigestInputStream(new FileInputStream(source), digest)) {
+            byte[] block = new byte[1 << 16];
+            while (in.read(block) >= 0) {
+                // Only the digest is needed
+            }
+        }
+        metrics.read(imageRoot.getName(), source.length());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Decode an image at reduced resolution and scale it to the thumbnail size
+     *
+     * @param source Image file
+     * @param format Thumbnail format; "jpg" has no transparency
+     * @return Thumbnail, or null if no ImageIO reader understands the file
+     * @throws IOException If the file cannot be read
+     */
+    private BufferedImage decode(File source, String format) throws IOException {
+        BufferedImage decoded;
+        try (ImageInputStream in = ImageIO.createImageInputStream(source)) {
+            Iterator<ImageReader> readers = in == null ? Collections.emptyIterator() : ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int longer = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int step = Math.max(1, longer / (2 * SIZE)); // Read every step-th pixel of every step-th row
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                decoded = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        double scale = Math.min(1.0, (double) SIZE / Math.max(decoded.getWidth(), decoded.getHeight()));
+        int width = Math.max(1, (int) Math.round(decoded.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(decoded.getHeight() * scale));
+        BufferedImage thumbnail = new BufferedImage(width, height,
+                format.equals("jpg") ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = thumbnail.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(decoded, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Write a thumbnail into the cache
+     * Written to a temporary file first and moved into place in one step, so a
+     * reader never sees half a thumbnail
+     *
+     * @param thumbnail Thumbnail image
+     * @param format    Image format
+     * @param file      Cache file
+     * @throws IOException If the file cannot be written
+     */
+    private void write(BufferedImage thumbnail, String format, File file) throws IOException {
+        Files.createDirectories(cacheDir.toPath());
+        File tmpFile = File.createTempFile(file.getName(), ".tmp", cacheDir);
+        try {
+            if (!ImageIO.write(thumbnail, format, tmpFile)) {
+                throw new IOException("no ImageIO writer for " + format);
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile.toPath());
+        }
+        metrics.written(cacheDir.getName(), file.length());
+    }
+
+    /**
+     * Mark a cache file as just used
+     *
+     * @param key Cache file name
+     * @return true if the file is in the cache
+     */
+    private boolean touch(String key) {
+        synchronized (cached) {
+            scan();
+            Long bytes = cached.get(key);
+            if (bytes == null) {
+                return false;
+            }
+            File file = new File(cacheDir, key);
+            if (!file.setLastModified(System.currentTimeMillis())) {
+                cached.remove(key); // Deleted from outside
+                cachedBytes -= bytes;
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Add a new cache file and evict the least recently used ones over the budget
+     * The new file itself is kept even if it alone exceeds the budget
+     *
+     * @param key   Cache file name
+     * @param bytes File size
+     */
+    private void admit(String key, long bytes) {
+        synchronized (cached) {
+            scan();
+            Long previous = cached.put(key, bytes);
+            cachedBytes += bytes - (previous == null ? 0 : previous);
+            Iterator<Map.Entry<String, Long>> eldest = cached.entrySet().iterator();
+            while (cachedBytes > CACHE_BYTES && cached.size() > 1) {
+                Map.Entry<String, Long> evicted = eldest.next();
+                new File(cacheDir, evicted.getKey()).delete();
+                cachedBytes -= evicted.getValue();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * List the cache directory once, oldest use first
+     * Temporary files left by an interrupted write are deleted
+     * Must be called with cached locked
+     */
+    private void scan() {
+        if (scanned) {
+            return;
+        }
+        scanned = true;
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File f : files) {
+            if (f.getName().endsWith(".tmp")) {
+                f.delete();
+            } else if (f.isFile()) {
+                cached.put(f.getName(), f.length());
+                cachedBytes += f.length();
+            }
+        }
+    }
+
+    /**
+     * Entry class linking a photo to the thumbnail of one version of its image
+     */
+    private static final class Entry {
+        final String source;
+        final long length;
+        final long modified;
+        final String key; // Cache file name, null if the image could not be decoded
+
+        /**
+         * Create an entry
+         *
+         * @param source   Image path
+         * @param length   Image length when the thumbnail was made
+         * @param modified Image modification time when the thumbnail was made
+         * @param key      Cache file name, or null
+         */
+        Entry(String source, long length, long modified, String key) {
+            this.source = source;
+            this.length = length;
+            this.modified = modified;
+            this.key = key;
+        }
+
+        /**
+         * Check whether the entry still describes an image file
+         *
+         * @param file Current image file of the photo
+         * @return true if the path, length and modification time are unchanged
+         */
+        boolean matches(File file) {
+            return file.getPath().equals(source) && file.length() == length && file.lastModified() == modified;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.memorise.gallery;
+
+import java.util.*;
+import java.util.function.LongConsumer;
+
+/**
+ * TrigramIndex class implementing an n-gram inverted index over photo names and folders
+ * Every lower-cased name and folder is cut into overlapping three-character
+ * grams; each gram maps to the photos containing it. A substring query
+ * intersects the posting lists of its own grams and verifies only the
+ * surviving candidates. Queries shorter than three characters fall back to a scan.
+ */
+class TrigramIndex implements PhotoStore.Listener {
+    private static final int GRAM = 3;
+
+    private final PhotoStore store;
+    private final Map<Long, Set<Photo>> postings = new HashMap<>();
+
+    /**
+     * Create the index over a store and subscribe to its changes
+     *
+     * @param store Store whose photos should be searchable
+     */
+    TrigramIndex(PhotoStore store) {
+        this.store = store;
+        for (Photo p : store) {
+            photoAdded(p);
+        }
+        store.addListener(this);
+    }
+
+    /**
+     * Find all photos whose name or folder contains the query, ignoring case
+     *
+     * @param query Search text
+     * @return Matching photos in no particular order
+     */
+    Collection<Photo> search(String query) {
+        String q = query.toLowerCase();
+        List<Photo> matches = new ArrayList<>();
+
+        if (q.length() < GRAM) {
+            // Too short for a gram lookup, check every photo
+            for (Photo p : store) {
+                if (matches(p, q)) {
+                    matches.add(p);
+                }
+            }
+            return matches;
+        }
+
+        // Collect the posting lists of the query grams, smallest first
+        List<Set<Photo>> lists = new ArrayList<>();
+        for (int i = 0; i + GRAM <= q.length(); i++) {
+            Set<Photo> list = postings.get(gram(q, i));
+            if (list == null) {
+                return matches; // A gram that occurs nowhere cannot match
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+
+        // Intersect, then verify the candidates (grams may come from name and folder separately)
+        for (Photo candidate : lists.get(0)) {
+            boolean inAll = true;
+            for (int i = 1; i < lists.size() && inAll; i++) {
+                inAll = lists.get(i).contains(candidate);
+            }
+            if (inAll && matches(candidate, q)) {
+                matches.add(candidate);
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    public void photoAdded(Photo p) {
+        forEachGram(p, gram -> postings.computeIfAbsent(gram, k -> new HashSet<>()).add(p));
+    }
+
+    @Override
+    public void photoRemoved(Photo p) {
+        forEachGram(p, gram -> {
+            Set<Photo> list = postings.get(gram);
+            if (list != null) {
+                list.remove(p);
+                if (list.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void beforeUpdate(Photo p) {
+        photoRemoved(p); // Name or folder may change
+    }
+
+    @Override
+    public void afterUpdate(Photo p) {
+        photoAdded(p);
+    }
+
+    @Override
+    public void favouriteChanged(Photo p) {
+        // Only names and folders are indexed
+    }
+
+    /**
+     * Check a photo against a lower-cased query
+     *
+     * @param p Photo to check
+     * @param q Lower-cased query
+     * @return true if the name or folder contains the query
+     */
+    private static boolean matches(Photo p, String q) {
+        return p.name.toLowerCase().contains(q) || p.folder.toLowerCase().contains(q);
+    }
+
+    /**
+     * Run an action for every gram of a photo's lower-cased name and folder
+     *
+     * @param p      Photo to cut into grams
+     * @param action Action receiving each gram key
+     */
+    private static void forEachGram(Photo p, LongConsumer action) {
+        String name = p.name.toLowerCase();
+        for (int i = 0; i + GRAM <= name.length(); i++) {
+            action.accept(gram(name, i));
+        }
+        String folder = p.folder.toLowerCase();
+        for (int i = 0; i + GRAM <= folder.length(); i++) {
+            action.accept(gram(folder, i));
+        }
+    }
+
+    /**
+     * Pack three characters into one key without allocating a substring
+     *
+     * @param s   Lower-cased text
+     * @param pos Start of the gram
+     * @return Gram key
+     */
+    private static long gram(String s, int pos) {
+        return ((long) s.charAt(pos) << 32) | ((long) s.charAt(pos + 1) << 16) | s.charAt(pos + 2);
+    }
+}
@@ -0,0 +1,23 @@
+package com.memorise.gallery;
+
+/**
+ * User class representing system users with authentication credentials and role
+ */
+class User {
+    String username;
+    String password; // Salted password hash as stored in users.txt
+    String role; // "admin" or "user"
+
+    /**
+     * Constructor for creating a user with specified credentials and role
+     *
+     * @param username The user's unique identifier
+     * @param password The user's stored password hash
+     * @param role     The user's role ("admin" or "user")
+     */
+    public User(String username, String password, String role) {
+        this.username = username;
+        this.password = password;
+        this.role = role;
+    }
+}
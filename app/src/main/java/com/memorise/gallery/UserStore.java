@@ -0,0 +1,251 @@
+package com.memorise.gallery;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.util.*;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * UserStore class holding all registered users in memory
+ * users.txt (username,password,role per line) is read once into a hash map,
+ * so uniqueness and credential checks never touch the disk. Registrations are
+ * appended through one buffered writer. Passwords are stored as salted
+ * PBKDF2 hashes; a later line for the same username replaces an earlier one,
+ * which lets legacy plain-text entries be upgraded by appending. All methods
+ * are synchronized so that concurrent sessions can share one store.
+ */
+class UserStore {
+
+    private static final int MAX_HASH_COST = 4_000_000; // Bounds the time one verification may take
+    // PBKDF2 iterations for new hashes; each stored hash carries its own count
+    private static final int HASH_COST = hashCost();
+    private static final String HASH_PREFIX = "pbkdf2";
+    private static final String HASH_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private final File file;
+    private final Map<String, User> users = new HashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final MetricsRegistry metrics = MetricsRegistry.global();
+    private BufferedWriter writer = null;
+
+    // Hash verified for unknown usernames so that lookups take the same time
+    private final String dummyHash;
+
+    /**
+     * Read the PBKDF2 iteration count for new hashes from -Dgallery.passwordCost
+     * Counts that verification would reject are clamped to 1..MAX_HASH_COST
+     *
+     * @return Iteration count
+     */
+    private static int hashCost() {
+        int cost = Integer.getInteger("gallery.passwordCost", 65536);
+        int clamped = Math.max(1, Math.min(MAX_HASH_COST, cost));
+        if (clamped != cost) {
+            System.out.println("gallery.passwordCost " + cost + " is out of range (1-" + MAX_HASH_COST + "). Using " + clamped + ".");
+        }
+        return clamped;
+    }
+
+    /**
+     * Create a store backed by the given users file
+     *
+     * @param fileName Name of the users file
+     */
+    UserStore(String fileName) {
+        this.file = new File(fileName);
+        this.dummyHash = hash("dummy-password");
+    }
+
+    /**
+     * Read all users from file
+     * A missing file simply means no users are registered yet
+     */
+    synchronized void load() {
+        users.clear();
+        if (!file.exists()) {
+            return;
+        }
+
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] parts = line.split(",");
+                if (parts.length == 3) {
+                    users.put(parts[0], new User(parts[0], parts[1], parts[2]));
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading " + file.getName() + ": " + e.getMessage());
+        }
+        metrics.read(file.getName(), file.length());
+    }
+
+    /**
+     * Check whether a username is already registered
+     *
+     * @param username Username to check
+     * @return true if the username exists
+     */
+    synchronized boolean exists(String username) {
+        return users.containsKey(username);
+    }
+
+    /**
+     * Register a new user with a freshly salted password hash
+     *
+     * @param username Unique username
+     * @param password Plain-text password
+     * @param role     "admin" or "user"
+     * @return true if the user was saved, false otherwise
+     */
+    synchronized boolean register(String username, String password, String role) {
+        long start = System.nanoTime();
+        try {
+            User user = new User(username, hash(password), role);
+            if (!append(user)) {
+                return false;
+            }
+            users.put(username, user);
+            return true;
+        } finally {
+            metrics.record("register", start);
+        }
+    }
+
+    /**
+     * Check a username and password
+     * Legacy plain-text entries are upgraded to a hash on their first successful check
+     *
+     * @param username Username
+     * @param password Plain-text password
+     * @return The stored user if the password matches, null otherwise
+     */
+    synchronized User authenticate(String username, String password) {
+        long start = System.nanoTime();
+        try {
+            User user = users.get(username);
+            if (user == null) {
+                verify(password, dummyHash); // Same cost as a real check
+                return null;
+            }
+            if (!verify(password, user.password)) {
+                return null;
+            }
+
+            if (!user.password.startsWith(HASH_PREFIX + "$")) {
+                User upgraded = new User(username, hash(password), user.role);
+                if (append(upgraded)) {
+                    users.put(username, upgraded);
+                    user = upgraded;
+                }
+            }
+            return user;
+        } finally {
+            metrics.record("login", start);
+        }
+    }
+
+    /**
+     * Flush and close the append writer
+     */
+    synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.out.println("Error closing " + file.getName() + ": " + e.getMessage());
+        }
+        writer = null;
+    }
+
+    /**
+     * Append one user line to the users file
+     *
+     * @param user User to write
+     * @return true if the line was written, false otherwise
+     */
+    private boolean append(User user) {
+        try {
+            if (writer == null) {
+                writer = new BufferedWriter(new FileWriter(file, true));
+            }
+            String line = user.username + "," + user.password + "," + user.role;
+            writer.write(line);
+            writer.newLine();
+            writer.flush();
+            metrics.written(file.getName(), line.getBytes().length + System.lineSeparator().length());
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error saving user: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Hash a password with a new random salt
+     *
+     * @param password Plain-text password
+     * @return Encoded hash: pbkdf2$iterations$salt$hash (Base64)
+     */
+    private String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        byte[] hash = pbkdf2(password, salt, HASH_COST);
+        Base64.Encoder b64 = Base64.getEncoder();
+        return HASH_PREFIX + "$" + HASH_COST + "$" + b64.encodeToString(salt) + "$" + b64.encodeToString(hash);
+    }
+
+    /**
+     * Check a password against a stored value in constant time
+     *
+     * @param password Plain-text password
+     * @param stored   Encoded hash, or a legacy plain-text password
+     * @return true if the password matches
+     */
+    private static boolean verify(String password, String stored) {
+        String[] parts = stored.split("\\$");
+        if (parts.length == 4 && parts[0].equals(HASH_PREFIX)) {
+            try {
+                int cost = Integer.parseInt(parts[1]);
+                if (cost < 1 || cost > MAX_HASH_COST) {
+                    return false;
+                }
+                byte[] salt = Base64.getDecoder().decode(parts[2]);
+                byte[] expected = Base64.getDecoder().decode(parts[3]);
+                return MessageDigest.isEqual(expected, pbkdf2(password, salt, cost));
+            } catch (IllegalArgumentException e) {
+                return false; // Damaged entry
+            }
+        }
+        // Legacy plain-text entry
+        return MessageDigest.isEqual(stored.getBytes(StandardCharsets.UTF_8), password.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Derive a PBKDF2 hash
+     *
+     * @param password   Plain-text password
+     * @param salt       Salt bytes
+     * @param iterations Iteration count (cost)
+     * @return Derived key bytes
+     */
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(HASH_ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+            throw new IllegalStateException("Password hashing unavailable: " + e.getMessage(), e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.memorise.gallery;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * GalleryServiceConcurrencyTest class running several sessions against one GalleryService
+ * A small version of the ConcurrencyStress workload. Each session only adds,
+ * deletes and marks its own photos, so whatever the interleaving, its reads must
+ * show exactly its own history: findById, search and favourites are compared with
+ * the photos the session added, deleted and marked so far, right after each
+ * change and in full every few operations. All sessions also toggle one shared
+ * photo, whose final flag must follow from the number of successful toggles.
+ */
+class GalleryServiceConcurrencyTest {
+
+    private static final int SESSIONS = 4;
+    private static final int OPS_PER_SESSION = 400;
+    private static final int LIBRARY_SIZE = 300;
+    private static final long TIMEOUT_SECONDS = 60;
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    @TempDir
+    File dir;
+
+    private final Queue<String> errors = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Run the sessions in parallel, then check the final and the reloaded state
+     *
+     * @throws Exception If a session fails or does not finish in time
+     */
+    @Test
+    void sessionsSeeTheirOwnHistory() throws Exception {
+        GalleryService gallery = open();
+        int sharedId = gallery.addPhoto("library photo 0", "png", "library").id;
+        for (int i = 1; i < LIBRARY_SIZE; i++) {
+            gallery.addPhoto("library photo " + i, i % 2 == 0 ? "png" : "jpg", "library");
+        }
+        boolean sharedInitial = gallery.findById(sharedId).isFavourite;
+        AtomicLong sharedFlips = new AtomicLong();
+
+        List<Session> sessions = new ArrayList<>();
+        for (int s = 0; s < SESSIONS; s++) {
+            sessions.add(new Session(s, gallery));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(SESSIONS);
+        try {
+            CountDownLatch go = new CountDownLatch(1);
+            List<Future<?>> done = new ArrayList<>();
+            for (Session session : sessions) {
+                done.add(pool.submit(() -> {
+                    go.await();
+                    session.run(sharedId, sharedFlips);
+                    return null;
+                }));
+            }
+            go.countDown();
+            for (Future<?> f : done) {
+                f.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        boolean sharedFavourite = sharedInitial ^ (sharedFlips.get() % 2 == 1);
+        verify(gallery, sessions, sharedId, sharedFavourite, "after the run");
+        gallery.save();
+        gallery.close();
+
+        GalleryService reloaded = open();
+        verify(reloaded, sessions, sharedId, sharedFavourite, "after a reload");
+        reloaded.close();
+
+        List<String> reported = new ArrayList<>(errors);
+        assertTrue(reported.isEmpty(), reported.size() + " inconsistent reads, e.g.\n"
+                + String.join("\n", reported.subList(0, Math.min(reported.size(), MAX_REPORTED_ERRORS))));
+    }
+
+    /**
+     * Open a gallery on the test directory
+     *
+     * @return Loaded gallery
+     */
+    private GalleryService open() {
+        GalleryService gallery = new GalleryService(new TextSnapshotFormat(), dir);
+        gallery.load();
+        return gallery;
+    }
+
+    /**
+     * Check a gallery against the combined history of all sessions
+     *
+     * @param gallery         Gallery no session changes any more
+     * @param sessions        Sessions of the run
+     * @param sharedId        Id of the photo all sessions toggled
+     * @param sharedFavourite Flag the shared photo must have
+     * @param when            Moment of the check, for messages
+     */
+    private void verify(GalleryService gallery, List<Session> sessions, int sharedId, boolean sharedFavourite, String when) {
+        int expectedSize = LIBRARY_SIZE;
+        for (Session session : sessions) {
+            expectedSize += session.names.size();
+            session.checkAll(gallery, when);
+        }
+        if (gallery.size() != expectedSize) {
+            errors.add(when + ": " + gallery.size() + " photos, expected " + expectedSize);
+        }
+        Photo shared = gallery.findById(sharedId);
+        if (shared == null || shared.isFavourite != sharedFavourite) {
+            errors.add(when + ": shared favourite flag does not match the successful toggles");
+        }
+    }
+
+    /**
+     * Session class changing its own photos and checking every read against its history
+     */
+    private final class Session {
+        final int number;
+        final GalleryService gallery;
+        final String prefix; // Starts the names of this session's photos and of no other photo
+        final Map<Integer, String> names = new HashMap<>(); // Own photos still in the gallery
+        final Set<Integer> favourites = new HashSet<>(); // Own photos marked as favourite
+        final List<Integer> ids = new ArrayList<>(); // Keys of names, for random picks
+        final Random random;
+        int added;
+
+        /**
+         * Create a session
+         *
+         * @param number  Session number, used in photo names
+         * @param gallery Shared gallery
+         */
+        Session(int number, GalleryService gallery) {
+            this.number = number;
+            this.gallery = gallery;
+            this.prefix = "session-" + number + "-";
+            this.random = new Random(number);
+        }
+
+        /**
+         * Perform the mixed workload
+         *
+         * @param sharedId    Id of the photo all sessions toggle
+         * @param sharedFlips Count of successful toggles of the shared photo
+         */
+        void run(int sharedId, AtomicLong sharedFlips) {
+            for (int i = 0; i < OPS_PER_SESSION; i++) {
+                int op = random.nextInt(100);
+                if (op < 30 || ids.isEmpty()) {
+                    add();
+                } else if (op < 50) {
+                    toggle(ids.get(random.nextInt(ids.size())));
+                } else if (op < 60) {
+                    delete(ids.get(random.nextInt(ids.size())));
+                } else if (op < 70) {
+                    if (gallery.setFavourite(gallery.findById(sharedId), random.nextBoolean())) {
+                        sharedFlips.incrementAndGet();
+                    }
+                } else if (op < 90) {
+                    checkOne(ids.get(random.nextInt(ids.size())), "op " + i);
+                } else {
+                    checkAll(gallery, "op " + i);
+                }
+            }
+        }
+
+        /**
+         * Add a photo and check that it is visible at once
+         */
+        private void add() {
+            String name = prefix + added++;
+            int id = gallery.addPhoto(name, "jpg", "tests").id;
+            if (names.put(id, name) != null) {
+                errors.add("Session " + number + ": id " + id + " handed out twice");
+            }
+            ids.add(id);
+            checkOne(id, "after adding " + id);
+        }
+
+        /**
+         * Flip the favourite flag of an own photo and check the change
+         * A photo read before the change must keep showing the old flag
+         *
+         * @param id Own photo
+         */
+        private void toggle(int id) {
+            Photo before = gallery.findById(id);
+            boolean favourite = !favourites.contains(id);
+            if (!gallery.setFavourite(before, favourite)) {
+                errors.add("Session " + number + ": favourite flag of " + id + " was already " + favourite);
+            }
+            if (favourite) {
+                favourites.add(id);
+            } else {
+                favourites.remove(id);
+            }
+            if (before.isFavourite == favourite) {
+                errors.add("Session " + number + ": photo " + id + " read before the change shows the new flag");
+            }
+            checkOne(id, "after toggling " + id);
+        }
+
+        /**
+         * Delete an own photo and check that it is gone at once
+         *
+         * @param id Own photo
+         */
+        private void delete(int id) {
+            String name = names.remove(id);
+            favourites.remove(id);
+            ids.remove(Integer.valueOf(id));
+            if (!gallery.deletePhoto(gallery.findById(id))) {
+                errors.add("Session " + number + ": could not delete " + id);
+            }
+            if (gallery.findById(id) != null) {
+                errors.add("Session " + number + ": photo " + id + " found after deleting it");
+            }
+            for (Photo p : gallery.search(name)) {
+                if (p.id == id) {
+                    errors.add("Session " + number + ": photo " + id + " still found by search after deleting it");
+                }
+            }
+        }
+
+        /**
+         * Check one own photo through findById and search
+         *
+         * @param id   Own photo that is in the gallery
+         * @param when Moment of the check, for messages
+         */
+        private void checkOne(int id, String when) {
+            String name = names.get(id);
+            boolean favourite = favourites.contains(id);
+            Photo found = gallery.findById(id);
+            if (found == null || !found.name.equals(name) || found.isFavourite != favourite) {
+                errors.add("Session " + number + " " + when + ": findById(" + id + ") returned "
+                        + (found == null ? "nothing" : found.toRecord()) + ", expected " + name + " favourite " + favourite);
+            }
+            boolean searched = false;
+            for (Photo p : gallery.search(name)) {
+                searched |= p.id == id && p.isFavourite == favourite;
+            }
+            if (!searched) {
+                errors.add("Session " + number + " " + when + ": search(" + name + ") misses " + id + " or shows a stale flag");
+            }
+        }
+
+        /**
+         * Check all own photos through findById, search and favourites
+         *
+         * @param target Gallery to read, the shared one or a reloaded one
+         * @param when   Moment of the check, for messages
+         */
+        void checkAll(GalleryService target, String when) {
+            Set<Integer> searched = new HashSet<>();
+            for (Photo p : target.search(prefix)) {
+                searched.add(p.id);
+            }
+            if (!searched.equals(names.keySet())) {
+                errors.add("Session " + number + " " + when + ": search found " + searched.size()
+                        + " own photos, expected " + names.size());
+            }
+            Set<Integer> marked = new HashSet<>();
+            for (Photo p : target.favourites()) {
+                if (p.name.startsWith(prefix)) {
+                    marked.add(p.id);
+                }
+            }
+            if (!marked.equals(favourites)) {
+                errors.add("Session " + number + " " + when + ": favourites list " + marked.size()
+                        + " own photos, expected " + favourites.size());
+            }
+            for (Map.Entry<Integer, String> own : names.entrySet()) {
+                Photo found = target.findById(own.getKey());
+                if (found == null || !found.name.equals(own.getValue()) || found.isFavourite != favourites.contains(own.getKey())) {
+                    errors.add("Session " + number + " " + when + ": photo " + own.getKey() + " does not match its history");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.memorise.gallery;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PhotoJournalTest class checking recovery from a compaction that never installed its snapshot
+ * The crash is simulated by hand: the journal is moved to the first rotated
+ * generation and the Photos.txt.tmp marker is created, as steps 1 and 2 of the
+ * compaction protocol leave them.
+ */
+class PhotoJournalTest {
+
+    @TempDir
+    File dir;
+
+    /**
+     * Recovered changes survive a session that ends without a checkpoint
+     *
+     * @throws IOException If the crash cannot be simulated
+     */
+    @Test
+    void recoveredChangesSurviveCloseWithoutSave() throws IOException {
+        int id = addAndCrash("recovered photo");
+
+        GalleryService recovered = open();
+        assertNotNull(recovered.findById(id), "photo missing after recovery");
+        recovered.close(); // Script mode and a kill end like this, without a checkpoint
+
+        GalleryService next = open();
+        assertNotNull(next.findById(id), "recovered photo lost on the following start");
+        next.close();
+    }
+
+    /**
+     * Changes made after a recovery are replayed after the recovered ones
+     *
+     * @throws IOException If the crash cannot be simulated
+     */
+    @Test
+    void changesAfterRecoveryKeepTheirOrder() throws IOException {
+        int id = addAndCrash("renamed photo");
+
+        GalleryService recovered = open();
+        recovered.editPhoto(recovered.findById(id), "new name", null, null);
+        recovered.close();
+
+        GalleryService next = open();
+        assertEquals("new name", next.findById(id).name);
+        next.close();
+    }
+
+    /**
+     * A checkpoint after a recovery folds the rotated generations into the snapshot and removes them
+     *
+     * @throws IOException If the crash cannot be simulated or saving fails
+     */
+    @Test
+    void checkpointAfterRecoveryClearsTheMarker() throws IOException {
+        int id = addAndCrash("saved photo");
+
+        GalleryService recovered = open();
+        recovered.save();
+        recovered.close();
+        assertFalse(new File(dir, "Photos.txt.tmp").exists(), "marker left after the snapshot was installed");
+        assertFalse(new File(dir, "Photos.journal.1").exists(), "rotated journal left after the snapshot was installed");
+
+        GalleryService next = open();
+        assertNotNull(next.findById(id), "photo missing from the installed snapshot");
+        next.close();
+    }
+
+    /**
+     * Add a photo, then leave the files as a crash between rotation and install does
+     *
+     * @param name Name of the photo to add
+     * @return Id of the added photo
+     * @throws IOException If the journal cannot be moved or the marker created
+     */
+    private int addAndCrash(String name) throws IOException {
+        GalleryService gallery = open();
+        int id = gallery.addPhoto(name, "png", "trips").id;
+        gallery.close();
+
+        File journal = new File(dir, "Photos.journal");
+        assertTrue(journal.length() > 0, "the add was not journaled");
+        Files.move(journal.toPath(), new File(dir, "Photos.journal.1").toPath(), StandardCopyOption.ATOMIC_MOVE);
+        assertTrue(new File(dir, "Photos.txt.tmp").createNewFile());
+        return id;
+    }
+
+    /**
+     * Open a gallery on the test directory
+     *
+     * @return Loaded gallery
+     */
+    private GalleryService open() {
+        GalleryService gallery = new GalleryService(new TextSnapshotFormat(), dir);
+        gallery.load();
+        return gallery;
+    }
+}
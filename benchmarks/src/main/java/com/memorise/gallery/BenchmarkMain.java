@@ -0,0 +1,52 @@
+package com.memorise.gallery;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * BenchmarkMain class running the gallery benchmarks with the usual settings
+ * Adds the GC profiler (allocation rate per operation) and writes the results
+ * as JSON to jmh-result-yyyyMMdd-HHmmss.json so that runs can be compared.
+ * Any standard JMH command-line option overrides these defaults, e.g.
+ * java -jar benchmarks/target/benchmarks.jar QueryBenchmark -p size=1000,10000
+ */
+public class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    /**
+     * Run the benchmarks
+     *
+     * @param args JMH command-line options
+     * @throws RunnerException           If a benchmark fails
+     * @throws CommandLineOptionException If the options cannot be parsed
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd);
+        if (cmd.getIncludes().isEmpty()) {
+            options.include("com\\.memorise\\.gallery\\..*Benchmark");
+        }
+        if (cmd.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if (!cmd.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!cmd.getResult().hasValue()) {
+            options.result("jmh-result-" + stamp + ".json");
+        }
+        new Runner(options.build()).run();
+    }
+}
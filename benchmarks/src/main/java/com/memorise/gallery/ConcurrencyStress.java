@@ -0,0 +1,275 @@
+package com.memorise.gallery;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ConcurrencyStress class driving one GalleryService from many threads at once
+ * Runs a mixed workload (searches, lookups and listings next to adds, deletes and
+ * favourite toggles) with 1, 2, 4 ... N threads and reports the throughput of
+ * each step. Afterwards the outcome is checked against what some serial order of
+ * the same calls must produce:
+ * - every add got a distinct id, and the size matches the successful adds and deletes
+ * - each thread sees its own adds and deletes immediately
+ * - on the photo all threads toggle, successful setFavourite calls must alternate,
+ *   so the final flag is the initial one flipped once per successful call
+ * - a service reloaded from the saved files holds the same photos
+ *
+ * java -cp benchmarks/target/benchmarks.jar com.memorise.gallery.ConcurrencyStress [maxThreads] [opsPerThread] [size]
+ */
+public class ConcurrencyStress {
+
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    private final int opsPerThread;
+    private final int size;
+    private final String[] queries = SyntheticLibrary.queries(64);
+    private final Queue<String> errors = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Create a stress run
+     *
+     * @param opsPerThread Operations each thread performs per step
+     * @param size         Photos in the library at the start of each step
+     */
+    private ConcurrencyStress(int opsPerThread, int size) {
+        this.opsPerThread = opsPerThread;
+        this.size = size;
+    }
+
+    /**
+     * Run the stress test
+     *
+     * @param args Optional maximum thread count, operations per thread and library size
+     * @throws Exception If a step cannot be set up
+     */
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int opsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+
+        ConcurrencyStress stress = new ConcurrencyStress(opsPerThread, size);
+        stress.step(maxThreads); // Warm-up so that the single-thread step is not measured cold
+        stress.errors.clear();
+
+        System.out.printf("%,d photos, %,d operations per thread%n", size, opsPerThread);
+        System.out.printf("%8s %14s %10s%n", "Threads", "ops/s", "Speedup");
+        double base = 0;
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            double rate = stress.step(threads);
+            if (base == 0) {
+                base = rate;
+            }
+            System.out.printf("%8d %,14.0f %9.2fx%n", threads, rate, rate / base);
+            if (threads == maxThreads) {
+                break;
+            }
+        }
+
+        List<String> errors = new ArrayList<>(stress.errors);
+        for (int i = 0; i < errors.size() && i < MAX_REPORTED_ERRORS; i++) {
+            System.out.println(errors.get(i));
+        }
+        if (errors.isEmpty()) {
+            System.out.println("All results consistent with a serial execution.");
+        } else {
+            System.out.println(errors.size() + " consistency violations.");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Run the workload with a number of threads on a fresh library and check the outcome
+     *
+     * @param threads Number of concurrent sessions
+     * @return Operations per second over all threads
+     * @throws Exception If the library cannot be set up or a worker fails
+     */
+    private double step(int threads) throws Exception {
+        File dir = SyntheticLibrary.scratchDirectory();
+        SnapshotFormat format = new TextSnapshotFormat();
+        SyntheticLibrary.write(format, SyntheticLibrary.generate(size), new File(dir, format.fileName()));
+        GalleryService gallery = new GalleryService(format, dir);
+        quietly(gallery::load);
+
+        Photo shared = gallery.findById(1);
+        boolean sharedInitial = shared.isFavourite;
+        AtomicLong sharedFlips = new AtomicLong();
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        List<Worker> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(new Worker(t, gallery, shared, sharedFlips, ids));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<?>> done = new ArrayList<>();
+        for (Worker w : workers) {
+            done.add(pool.submit(() -> {
+                ready.countDown();
+                go.await();
+                w.run();
+                return null;
+            }));
+        }
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        for (Future<?> f : done) {
+            f.get();
+        }
+        long nanos = System.nanoTime() - start;
+        pool.shutdown();
+
+        boolean sharedFavourite = sharedInitial ^ (sharedFlips.get() % 2 == 1);
+        verify(gallery, workers, gallery.findById(shared.id), sharedFavourite, threads);
+        gallery.save();
+        gallery.close();
+
+        GalleryService reloaded = new GalleryService(format, dir);
+        quietly(reloaded::load);
+        verify(reloaded, workers, reloaded.findById(shared.id), sharedFavourite, threads);
+        reloaded.close();
+        SyntheticLibrary.delete(dir);
+
+        return (double) threads * opsPerThread * 1_000_000_000L / nanos;
+    }
+
+    /**
+     * Check the final state of a gallery against the workers' successful calls
+     *
+     * @param gallery           Gallery after all workers finished
+     * @param workers           Workers of the step
+     * @param shared            Photo toggled by all workers
+     * @param expectedFavourite Favourite flag the shared photo must have
+     * @param threads           Thread count, for messages
+     */
+    private void verify(GalleryService gallery, List<Worker> workers, Photo shared, boolean expectedFavourite, int threads) {
+        int expectedSize = size;
+        for (Worker w : workers) {
+            expectedSize += w.added - w.deleted;
+            for (Photo p : w.own) {
+                Photo found = gallery.findById(p.id);
+                if (found == null || !found.name.equals(p.name)) {
+                    errors.add(threads + " threads: photo " + p.id + " (" + p.name + ") missing after the run");
+                }
+            }
+        }
+        if (gallery.size() != expectedSize) {
+            errors.add(threads + " threads: " + gallery.size() + " photos, expected " + expectedSize);
+        }
+        if (shared == null || shared.isFavourite != expectedFavourite) {
+            errors.add(threads + " threads: shared favourite flag does not match the successful toggles");
+        }
+    }
+
+    /**
+     * Run an action with standard output discarded
+     * Loading prints diagnostics that would drown the results table
+     *
+     * @param action Action to run
+     */
+    private static void quietly(Runnable action) {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            action.run();
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    /**
+     * Worker class performing the operations of one session
+     */
+    private class Worker {
+        final int thread;
+        final GalleryService gallery;
+        final Photo shared;
+        final AtomicLong sharedFlips;
+        final Set<Integer> ids;
+        final Deque<Photo> own = new ArrayDeque<>(); // Added by this worker and not deleted yet
+        final Random random;
+        int added;
+        int deleted;
+
+        /**
+         * Create a worker
+         *
+         * @param thread      Worker number, used in photo names
+         * @param gallery     Shared gallery
+         * @param shared      Photo toggled by all workers
+         * @param sharedFlips Count of successful toggles of the shared photo
+         * @param ids         Ids handed out to any worker so far
+         */
+        Worker(int thread, GalleryService gallery, Photo shared, AtomicLong sharedFlips, Set<Integer> ids) {
+            this.thread = thread;
+            this.gallery = gallery;
+            this.shared = shared;
+            this.sharedFlips = sharedFlips;
+            this.ids = ids;
+            this.random = new Random(thread);
+        }
+
+        /**
+         * Perform the mixed workload
+         */
+        void run() {
+            for (int i = 0; i < opsPerThread; i++) {
+                int op = random.nextInt(100);
+                if (op < 40) {
+                    gallery.search(queries[random.nextInt(queries.length)]);
+                } else if (op < 68) {
+                    gallery.findById(1 + random.nextInt(size));
+                } else if (op < 70) {
+                    gallery.favourites();
+                } else if (op < 80) {
+                    if (gallery.setFavourite(shared, random.nextBoolean())) {
+                        sharedFlips.incrementAndGet();
+                    }
+                } else if (op < 90 || own.isEmpty()) {
+                    add(i);
+                } else {
+                    delete();
+                }
+            }
+        }
+
+        /**
+         * Add a photo and check that this session sees it at once
+         *
+         * @param i Operation number, makes the name unique
+         */
+        private void add(int i) {
+            String name = "stress " + thread + " op " + i;
+            Photo p = gallery.addPhoto(name, "jpg", "stress/" + thread);
+            added++;
+            own.add(p);
+            if (!ids.add(p.id)) {
+                errors.add("Id " + p.id + " handed out twice");
+            }
+            Photo found = gallery.findById(p.id); // Lookups and searches hand out catalog copies, so ids are compared
+            if (found == null || !found.name.equals(name) || gallery.search(name).stream().noneMatch(s -> s.id == p.id)) {
+                errors.add("Thread " + thread + " cannot see its own photo " + p.id + " after adding it");
+            }
+        }
+
+        /**
+         * Delete the oldest photo this session added and check that it is gone at once
+         */
+        private void delete() {
+            Photo p = own.poll();
+            if (!gallery.deletePhoto(p)) {
+                errors.add("Thread " + thread + " could not delete its own photo " + p.id);
+                return;
+            }
+            deleted++;
+            if (gallery.findById(p.id) != null) {
+                errors.add("Thread " + thread + " still sees photo " + p.id + " after deleting it");
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.memorise.gallery;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.util.concurrent.Callable;
+
+/**
+ * HeapFootprint class reporting the retained heap per photo of each in-memory form
+ * Writes a synthetic Photos.txt, builds one form at a time and measures the heap
+ * it keeps alive after a full collection:
+ * - the Photo objects as loaded from the file
+ * - a GalleryService loaded in full (store, indexes, sorted views, catalog)
+ * - the lazy file index (-Dgallery.lazy=true)
+ * - the columnar PhotoTable (-Dgallery.lazy=table)
+ * - the OffHeapPhotoTable (-Dgallery.lazy=offheap), when built and when mapped from its store
+ *
+ * java -cp benchmarks/target/benchmarks.jar com.memorise.gallery.HeapFootprint [size]
+ */
+public class HeapFootprint {
+
+    /**
+     * Run the report
+     *
+     * @param args Optional library size
+     * @throws Exception If the library cannot be written or loaded
+     */
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        File dir = SyntheticLibrary.scratchDirectory();
+        SnapshotFormat format = new TextSnapshotFormat();
+        File file = new File(dir, format.fileName());
+        SyntheticLibrary.write(format, SyntheticLibrary.generate(size), file);
+
+        System.out.printf("%,d photos, %,d bytes in %s%n", size, file.length(), file.getName());
+        System.out.printf("%-36s %14s %12s%n", "Form", "Heap bytes", "Per photo");
+        report("Photo objects", size, () -> format.load(file).photos);
+        report("GalleryService, full load", size, () -> {
+            GalleryService gallery = new GalleryService(format, dir);
+            quietly(gallery::load);
+            return gallery;
+        });
+        report("Lazy file index", size, () -> LazySnapshot.openText(file, new File(dir, "Photos.idx")));
+        report("PhotoTable (columnar)", size, () -> LazySnapshot.openTable(format, file));
+        File store = new File(dir, "Photos.records");
+        report("Off-heap table, built", size, () -> LazySnapshot.openOffHeap(format, file, store));
+        report("Off-heap table, mapped", size, () -> LazySnapshot.openOffHeap(format, file, store));
+        System.out.printf("Off-heap store: %,d bytes, %,.1f per photo%n", store.length(), (double) store.length() / size);
+        SyntheticLibrary.delete(dir);
+    }
+
+    /**
+     * Measure and print the heap retained by one form
+     *
+     * @param form  Name of the form
+     * @param size  Number of photos it holds
+     * @param build Builds the form
+     * @throws Exception If building fails
+     */
+    private static void report(String form, int size, Callable<Object> build) throws Exception {
+        long before = usedHeap();
+        Object built = build.call();
+        long after = usedHeap();
+        Reference.reachabilityFence(built);
+        if (built instanceof Closeable) {
+            ((Closeable) built).close();
+        } else if (built instanceof GalleryService) {
+            ((GalleryService) built).close();
+        }
+        System.out.printf("%-36s %,14d %,12.1f%n", form, after - before, (double) (after - before) / size);
+    }
+
+    /**
+     * Get the heap in use after collecting all garbage
+     *
+     * @return Used heap bytes
+     * @throws InterruptedException If interrupted while waiting for the collector
+     */
+    private static long usedHeap() throws InterruptedException {
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+            used = Math.min(used, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+    /**
+     * Run an action with standard output discarded
+     *
+     * @param action Action to run
+     */
+    private static void quietly(Runnable action) {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            action.run();
+        } finally {
+            System.setOut(out);
+        }
+    }
+}
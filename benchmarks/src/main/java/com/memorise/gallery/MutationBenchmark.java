@@ -0,0 +1,77 @@
+package com.memorise.gallery;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * MutationBenchmark class measuring in-memory changes to a fully indexed store
+ * Every change notifies the date index, the search index, the hidden index and
+ * the catalog, and ends by publishing a catalog version, as in the running
+ * application, so the copy-on-write cost is included. Journal writes are left
+ * out so that the numbers show the data structures rather than the disk.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MutationBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private PhotoStore store;
+    private PhotoCatalog catalog;
+    private int next;
+
+    /**
+     * Build a store with all indexes
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = new PhotoStore();
+        new SortedPhotoViews(store);
+        new TrigramIndex(store);
+        HiddenPhotoIndex hidden = new HiddenPhotoIndex("hidden_images.txt", store); // Never loaded, so nothing is read or written
+        SyntheticLibrary.fill(store, size);
+        catalog = new PhotoCatalog(store, hidden);
+    }
+
+    /**
+     * Flip the favourite flag of one photo
+     *
+     * @return New flag
+     */
+    @Benchmark
+    public boolean favouriteToggle() {
+        Photo p = store.findById(nextId());
+        store.setFavourite(p, !p.isFavourite);
+        catalog.publish();
+        return p.isFavourite;
+    }
+
+    /**
+     * Delete one photo and add it back so that the library keeps its size
+     *
+     * @return Size after the round trip
+     */
+    @Benchmark
+    public int deleteAndReinsert() {
+        Photo p = store.findById(nextId());
+        store.remove(p);
+        store.add(p);
+        catalog.publish();
+        return store.size();
+    }
+
+    /**
+     * Cycle through all ids
+     *
+     * @return Next photo id
+     */
+    private int nextId() {
+        next = next % size + 1;
+        return next;
+    }
+}
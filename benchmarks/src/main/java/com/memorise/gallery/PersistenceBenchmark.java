@@ -0,0 +1,96 @@
+package com.memorise.gallery;
+
+import java.io.*;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * PersistenceBenchmark class measuring snapshot load and save
+ * Load parses a snapshot file into photos (loadPhotos without the indexes);
+ * save writes a full snapshot as savePhotos and journal compaction do;
+ * saveOneChange saves again after one favourite toggle, which the segmented
+ * format turns into a rewrite of a single folder's segment.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PersistenceBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"text", "binary", "segments"})
+    public String format;
+
+    private SnapshotFormat snapshotFormat;
+    private List<Photo> photos;
+    private File dir;
+    private File snapshot;
+    private File target;
+
+    /**
+     * Generate the library and write the snapshot that load reads
+     *
+     * @throws IOException If the scratch files cannot be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        snapshotFormat = SnapshotFormat.forName(format);
+        photos = SyntheticLibrary.generate(size);
+        dir = SyntheticLibrary.scratchDirectory();
+        snapshot = new File(dir, snapshotFormat.fileName());
+        target = new File(dir, "save-" + snapshotFormat.fileName());
+        SyntheticLibrary.write(snapshotFormat, photos, snapshot);
+    }
+
+    /**
+     * Remove the scratch files
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SyntheticLibrary.delete(dir);
+    }
+
+    /**
+     * Load every photo of the snapshot
+     *
+     * @return Load result
+     * @throws IOException If the snapshot cannot be read
+     */
+    @Benchmark
+    public PhotoLoader.Result load() throws IOException {
+        return snapshotFormat.load(snapshot);
+    }
+
+    /**
+     * Write every photo as a new snapshot
+     *
+     * @param bh Blackhole consuming the written length
+     * @throws IOException If the snapshot cannot be written
+     */
+    @Benchmark
+    public void save(Blackhole bh) throws IOException {
+        SyntheticLibrary.write(snapshotFormat, photos, target);
+        bh.consume(target.length());
+    }
+
+    /**
+     * Toggle one favourite and save the snapshot again
+     *
+     * @param bh Blackhole consuming the written length
+     * @throws IOException If the snapshot cannot be written
+     */
+    @Benchmark
+    public void saveOneChange(Blackhole bh) throws IOException {
+        Photo p = photos.get(photos.size() / 2);
+        p.isFavourite = !p.isFavourite;
+        snapshotFormat.install(photos, Collections.singleton(p.folder), snapshot, new File(snapshot.getPath() + ".tmp"));
+        bh.consume(snapshot.length());
+    }
+}
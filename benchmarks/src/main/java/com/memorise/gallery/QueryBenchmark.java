@@ -0,0 +1,171 @@
+package com.memorise.gallery;
+
+import java.io.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * QueryBenchmark class measuring the read paths of a loaded gallery
+ * search (searchPhoto), sorted listings of the catalog (sortPhotos followed by
+ * a listing), hidden-photo filtering (viewAllPhotos) and the favourites and
+ * type/folder posting lists of the catalog (viewFavourites, "type:png folder:...")
+ * over the maintained indexes. favouritesScan is the full scan the posting list
+ * replaces. sortAfterChange lists by name right after a change was published,
+ * so it includes carrying the sorted order over to the new catalog version.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class QueryBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private PhotoStore store;
+    private TrigramIndex searchIndex;
+    private HiddenPhotoIndex hidden;
+    private PhotoCatalog catalog;
+    private String[] queries;
+    private int next;
+    private int changed;
+    private File dir;
+
+    /**
+     * Build a store with all indexes and hide every tenth name
+     *
+     * @throws IOException If the hidden list cannot be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<Photo> photos = SyntheticLibrary.generate(size);
+        dir = SyntheticLibrary.scratchDirectory();
+        File hiddenFile = new File(dir, "hidden_images.txt");
+        SyntheticLibrary.writeHiddenList(photos, hiddenFile);
+
+        store = new PhotoStore();
+        searchIndex = new TrigramIndex(store);
+        hidden = new HiddenPhotoIndex(hiddenFile.getPath(), store);
+        hidden.load();
+        for (Photo p : photos) {
+            store.add(p);
+        }
+        catalog = new PhotoCatalog(store, hidden);
+        queries = SyntheticLibrary.queries(256);
+    }
+
+    /**
+     * Remove the scratch files
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SyntheticLibrary.delete(dir);
+    }
+
+    /**
+     * Substring search over names and folders, cycling through the queries
+     *
+     * @return Matches of one query
+     */
+    @Benchmark
+    public int search() {
+        String query = queries[next++ & (queries.length - 1)];
+        return searchIndex.search(query).size();
+    }
+
+    /**
+     * List all photos ordered by name
+     *
+     * @param bh Blackhole consuming each photo
+     */
+    @Benchmark
+    public void sortByName(Blackhole bh) {
+        for (Photo p : catalog.current().sorted(SortedPhotoViews.Order.NAME)) {
+            bh.consume(p);
+        }
+    }
+
+    /**
+     * List all photos ordered by date
+     *
+     * @param bh Blackhole consuming each photo
+     */
+    @Benchmark
+    public void sortByDate(Blackhole bh) {
+        for (Photo p : catalog.current().sorted(SortedPhotoViews.Order.DATE_TIME)) {
+            bh.consume(p);
+        }
+    }
+
+    /**
+     * Flip the favourite flag of one photo, publish the change and list all photos by name
+     *
+     * @param bh Blackhole consuming each photo
+     */
+    @Benchmark
+    public void sortAfterChange(Blackhole bh) {
+        changed = changed % size + 1;
+        Photo p = store.findById(changed);
+        store.setFavourite(p, !p.isFavourite);
+        catalog.publish();
+        for (Photo q : catalog.current().sorted(SortedPhotoViews.Order.NAME)) {
+            bh.consume(q);
+        }
+    }
+
+    /**
+     * List the favourites through the catalog's posting list
+     *
+     * @return Number of favourites
+     */
+    @Benchmark
+    public int favourites() {
+        return catalog.current().select(null, null, true).size();
+    }
+
+    /**
+     * List the favourites by checking every photo of the catalog
+     *
+     * @return Number of favourites
+     */
+    @Benchmark
+    public int favouritesScan() {
+        int favourites = 0;
+        for (Photo p : catalog.current()) {
+            if (p.isFavourite) {
+                favourites++;
+            }
+        }
+        return favourites;
+    }
+
+    /**
+     * List the png photos of one folder through the type and folder posting lists
+     *
+     * @return Number of matches
+     */
+    @Benchmark
+    public int typeInFolder() {
+        return catalog.current().select("png", "trips/2010", false).size();
+    }
+
+    /**
+     * Count the visible photos
+     *
+     * @return Number of photos that are not hidden
+     */
+    @Benchmark
+    public int hiddenFilter() {
+        int visible = 0;
+        for (Photo p : store) {
+            if (!hidden.isHidden(p)) {
+                visible++;
+            }
+        }
+        return visible;
+    }
+}
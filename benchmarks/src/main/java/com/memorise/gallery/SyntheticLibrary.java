@@ -0,0 +1,134 @@
+package com.memorise.gallery;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * SyntheticLibrary class generating reproducible photo libraries for benchmarks
+ * Names and folders are built from small word lists so that substring search
+ * and name sorting see realistic overlap; dates spread over 25 years.
+ */
+class SyntheticLibrary {
+
+    private static final String[] WORDS = {
+            "sunset", "beach", "mountain", "river", "forest", "city", "night", "snow",
+            "family", "birthday", "wedding", "garden", "street", "harbour", "market", "desert",
+            "lake", "bridge", "castle", "festival", "portrait", "sky", "storm", "autumn",
+            "spring", "summer", "winter", "train", "road", "island", "temple", "museum"
+    };
+
+    private static final String[] FOLDERS = {
+            "trips", "family", "work", "events", "nature", "city", "archive", "phone"
+    };
+
+    private static final long SEED = 42L;
+
+    private SyntheticLibrary() {
+    }
+
+    /**
+     * Generate a library with ids 1..size
+     *
+     * @param size Number of photos
+     * @return Photos in id order
+     */
+    static List<Photo> generate(int size) {
+        Random random = new Random(SEED);
+        List<Photo> photos = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            String folder = FOLDERS[random.nextInt(FOLDERS.length)] + "/" + (2000 + random.nextInt(25));
+            String type = random.nextInt(3) == 0 ? "png" : "jpg";
+            String dateTime = String.format("%04d-%02d-%02d %02d:%02d:%02d",
+                    2000 + random.nextInt(25), 1 + random.nextInt(12), 1 + random.nextInt(28),
+                    random.nextInt(24), random.nextInt(60), random.nextInt(60));
+            photos.add(new Photo(i, name, type, folder, dateTime, random.nextInt(10) == 0));
+        }
+        return photos;
+    }
+
+    /**
+     * Fill a store with a generated library
+     *
+     * @param store Empty store
+     * @param size  Number of photos
+     */
+    static void fill(PhotoStore store, int size) {
+        for (Photo p : generate(size)) {
+            store.add(p);
+        }
+    }
+
+    /**
+     * Pick search queries that occur in generated names or folders
+     *
+     * @param count Number of queries
+     * @return Queries of three to six characters
+     */
+    static String[] queries(int count) {
+        Random random = new Random(SEED + 1);
+        String[] queries = new String[count];
+        for (int i = 0; i < count; i++) {
+            String word = random.nextBoolean() ? WORDS[random.nextInt(WORDS.length)] : FOLDERS[random.nextInt(FOLDERS.length)];
+            int length = Math.min(word.length(), 3 + random.nextInt(4));
+            int start = random.nextInt(word.length() - length + 1);
+            queries[i] = word.substring(start, start + length);
+        }
+        return queries;
+    }
+
+    /**
+     * Write photos as a snapshot file
+     *
+     * @param format Snapshot format
+     * @param photos Photos to write
+     * @param file   Target file
+     * @throws IOException If writing fails
+     */
+    static void write(SnapshotFormat format, List<Photo> photos, File file) throws IOException {
+        format.install(photos, null, file, new File(file.getPath() + ".tmp"));
+    }
+
+    /**
+     * Write a hidden photo list that hides every tenth name
+     *
+     * @param photos Photos whose names may be hidden
+     * @param file   Target file
+     * @throws IOException If writing fails
+     */
+    static void writeHiddenList(List<Photo> photos, File file) throws IOException {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < photos.size(); i += 10) {
+            names.add(photos.get(i).name.toLowerCase());
+        }
+        Files.write(file.toPath(), names);
+    }
+
+    /**
+     * Create an empty scratch directory that is removed when the JVM exits
+     *
+     * @return New directory
+     * @throws IOException If the directory cannot be created
+     */
+    static File scratchDirectory() throws IOException {
+        File dir = Files.createTempDirectory("gallery-bench").toFile();
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    /**
+     * Delete a scratch directory and its files
+     *
+     * @param dir Directory to delete
+     */
+    static void delete(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+}